@@ -129,6 +129,9 @@ public class MainApp extends Application  {
 	@FXML
 	private MenuItem r_px4log;
 
+	@FXML
+	private MenuItem r_px4all;
+
 	@FXML
 	private MenuItem r_dellog;
 
@@ -582,11 +585,12 @@ public class MainApp extends Application  {
 
 			});
 
+			final MavlinkLogReader log = new MavlinkLogReader(control);
+
 			r_px4log.disableProperty().bind(StateProperties.getInstance().getArmedProperty());
 			r_px4log.setOnAction(new EventHandler<ActionEvent>() {
 
 				String m_text = r_px4log.getText();
-				MavlinkLogReader log = new MavlinkLogReader(control);
 
 				@Override
 				public void handle(ActionEvent event) {
@@ -617,6 +621,29 @@ public class MainApp extends Application  {
 				}
 			});
 
+			r_px4all.disableProperty().bind(StateProperties.getInstance().getArmedProperty());
+			r_px4all.setOnAction(new EventHandler<ActionEvent>() {
+
+				String m_text = r_px4all.getText();
+
+				{
+					log.isCollecting().addListener((observable, oldvalue, newvalue) -> {
+						Platform.runLater(() -> {
+							r_px4all.setText(newvalue.booleanValue() ? "Cancel download from device..." : m_text);
+						});
+					});
+				}
+
+				@Override
+				public void handle(ActionEvent event) {
+					AnalysisModelService.getInstance().stop();
+					if(log.isCollecting().get())
+						log.abortReadingLog();
+					else
+						log.requestAllLogs();
+				}
+			});
+
 			m_export.setOnAction(event -> {
 				AnalysisModelService.getInstance().stop();
 				if(AnalysisModelService.getInstance().getModelList().size()>0)
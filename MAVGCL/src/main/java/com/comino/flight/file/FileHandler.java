@@ -41,7 +41,6 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.Writer;
@@ -59,9 +58,7 @@ import java.util.prefs.Preferences;
 
 import org.mavlink.messages.MAV_SEVERITY;
 
-import com.comino.flight.log.ProgressInputStream;
 import com.comino.flight.log.ulog.UlogtoModelConverter;
-import com.comino.flight.model.AnalysisDataModel;
 import com.comino.flight.model.AnalysisDataModelMetaData;
 import com.comino.flight.model.service.AnalysisModelService;
 import com.comino.flight.observables.StateProperties;
@@ -72,7 +69,6 @@ import com.comino.mavcom.log.MSPLogger;
 import com.comino.mavcom.model.DataModel;
 import com.comino.mavcom.model.segment.LogMessage;
 import com.comino.mavcom.param.ParameterAttributes;
-import com.comino.mavcom.struct.MapPoint3D_F32;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
@@ -231,59 +227,36 @@ public class FileHandler {
 			new Thread(new Task<Void>() {
 				@Override protected Void call() throws Exception {
 
-					Type listType = null;
-
-
 					if(file.getName().endsWith("ulg")) {
 						modelService.setCollectorInterval(AnalysisModelService.HISPEED_INTERVAL_US);
 						ULogReader reader = new ULogReader(file.getAbsolutePath());
 						MAVGCLPX4Parameters.getInstance().setParametersFromLog(reader.getParameters());	
-						converter = new UlogtoModelConverter(reader,modelService.getModelList());		
+						converter = new UlogtoModelConverter(reader,modelService.getDataStore());		
 						converter.doConversion();	
 						ulogFields = reader.getFieldList();
 						state.getLogLoadedProperty().set(true);
 					}
 
 					if(file.getName().endsWith("mgc")) {
-						listType = new TypeToken<FileData>() {}.getType();
-
-						ProgressInputStream raw = new ProgressInputStream(new FileInputStream(file));
-						raw.addListener(new ProgressInputStream.Listener() {
-							@Override
-							public void onProgressChanged(float percentage) {
-								state.getProgressProperty().set(percentage);
-							}
-						});
-						Reader reader = new BufferedReader(new InputStreamReader(raw));
-						Gson gson = new GsonBuilder().create();
+						modelService.clearModelList();
 						try {
-							FileData data = gson.fromJson(reader,listType);
-							data.update(modelService,paramService,currentModel);
-						} catch(Exception e) {
-							reader.close();
-							MAVGCLPX4Parameters.getInstance().clear();
-							raw = new ProgressInputStream(new FileInputStream(file));
-							raw.addListener(new ProgressInputStream.Listener() {
-								@Override
-								public void onProgressChanged(float percentage) {
-									state.getProgressProperty().set(percentage);
-								}
+							MGCFile.Header header = MGCFile.read(file, modelService.getDataStore(), (p) -> {
+								state.getProgressProperty().set(p);
 							});
-							reader = new BufferedReader(new InputStreamReader(raw));
-							listType = new TypeToken<ArrayList<AnalysisDataModel>>() {}.getType();
-							try {
-								modelService.clearModelList();
-								modelService.setModelList(gson.fromJson(reader,listType));
-							} catch(Exception e1) {
-								logger.writeLocalMsg("[mgc] Wrong file format",MAV_SEVERITY.MAV_SEVERITY_ERROR);
-								reader.close();
-								name = "";
-								state.getProgressProperty().set(StateProperties.NO_PROGRESS);
-								state.getLogLoadedProperty().set(false);
-								return null;
-							}
+							if(header.params!=null)
+								paramService.set(header.params);
+							if(header.interval_ms != 0)
+								modelService.setCollectorInterval(header.interval_ms * 1000);
+							else
+								modelService.setCollectorInterval(AnalysisModelService.DEFAULT_INTERVAL_US);
+							modelService.setCurrent(0);
+						} catch(Exception e) {
+							logger.writeLocalMsg("[mgc] Wrong file format",MAV_SEVERITY.MAV_SEVERITY_ERROR);
+							name = "";
+							state.getProgressProperty().set(StateProperties.NO_PROGRESS);
+							state.getLogLoadedProperty().set(false);
+							return null;
 						}
-						reader.close();
 						state.getProgressProperty().set(StateProperties.NO_PROGRESS);
 					}
 
@@ -321,12 +294,8 @@ public class FileHandler {
 					if(file.getName().endsWith("mgc")) {
 						try {
 							System.out.println(file.getName()+" saved..");
-							Writer writer = new FileWriter(file);
-							FileData data = new FileData(); data.prepareData(modelService,paramService, currentModel);
-							Gson gson = new GsonBuilder().serializeSpecialFloatingPointValues().create();
 							stage.getScene().setCursor(Cursor.WAIT);
-							gson.toJson(data, writer);
-							writer.close();
+							MGCFile.write(file, modelService.getDataStore(), createHeader());
 							stage.getScene().setCursor(Cursor.DEFAULT);
 							StateProperties.getInstance().getLogLoadedProperty().set(true);
 							name = file.getName();
@@ -433,7 +402,7 @@ public class FileHandler {
 							Writer writer = new FileWriter(file);
 							for(int x=0; x<service.getModelList().size();x++) {
 								value = service.getModelList().get(x).getValue(kf);
-								writer.append(String.format("%#.3f; %#.7f",(x*service.getCollectorInterval_ms()/1000f),(float)value).trim());
+								writer.append(String.format("%#.3f; %#.7f",service.getTimeByIndex(x),(float)value).trim());
 								writer.append("\n");
 							}
 							writer.close();
@@ -606,12 +575,14 @@ public class FileHandler {
 		if(f.exists())
 			f.delete();
 		f.createNewFile();
-		Writer writer = new FileWriter(f);
-		FileData data = new FileData(); data.prepareData(modelService,paramService, currentModel);
-		Gson gson = new GsonBuilder().serializeSpecialFloatingPointValues().create();
-		gson.toJson(data, writer);
-		writer.flush();
-		writer.close();
+		MGCFile.write(f, modelService.getDataStore(), createHeader());
+	}
+
+	private MGCFile.Header createHeader() {
+		MGCFile.Header header = new MGCFile.Header();
+		header.params      = paramService.get();
+		header.interval_ms = modelService.getCollectorInterval_ms();
+		return header;
 	}
 
 	private FileChooser getFileDialog(String title, String initDir, ExtensionFilter...filter) {
@@ -623,31 +594,4 @@ public class FileHandler {
 		return fileChooser;
 	}
 
-	private class FileData {
-
-		private Map<String,ParameterAttributes>		params = null;
-		private List<AnalysisDataModel> 			data   = null;
-		private Map<Integer,MapPoint3D_F32>         grid   = null;
-		private int conversion_rate  = 0;
-
-		public void prepareData(AnalysisModelService service, MAVGCLPX4Parameters param, DataModel model) {
-			data   = service.getModelList();
-			params = param.get();
-			conversion_rate = service.getCollectorInterval_ms();
-		}
-
-		public void update(AnalysisModelService service, MAVGCLPX4Parameters param, DataModel model ) {
-			if(data!=null)
-				service.setModelList(data);
-			if(params!=null)
-				param.set(params);
-			if(conversion_rate != 0)
-				service.setCollectorInterval(conversion_rate * 1000);
-			else
-				service.setCollectorInterval(AnalysisModelService.DEFAULT_INTERVAL_US);
-
-
-		}
-	}
-
 }
@@ -0,0 +1,570 @@
+/****************************************************************************
+ *
+ *   Copyright (c) 2017,2021 Eike Mansfeld ecm@gmx.de. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ ****************************************************************************/
+
+package com.comino.flight.file;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import com.comino.flight.log.ProgressInputStream;
+import com.comino.flight.model.AnalysisDataModel;
+import com.comino.flight.model.AnalysisDataModelMetaData;
+import com.comino.flight.model.AnalysisDataModelTypeAdapterFactory;
+import com.comino.flight.model.AnalysisDataStore;
+import com.comino.mavcom.model.segment.LogMessage;
+import com.comino.mavcom.model.segment.Status;
+import com.comino.mavcom.param.ParameterAttributes;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/*
+ * MAVGCL model file (.mgc). Legacy files are JSON, version 2 files are a binary container:
+ *
+ *   "MGC2", format version (int), metadata version, collector interval ms, sample count,
+ *   parameters (JSON), key figure table (hash, key, block length), timestamp block length,
+ *   timestamp block, one block per key figure column, events (index, type, JSON)
+ *
+ * Timestamps are delta encoded, column values are stored as XOR of consecutive double bits, both
+ * deflated. Integers and strings are big endian as written by DataOutputStream. The block lengths
+ * in the key figure table allow mapped files to decode the columns in parallel, streamed files
+ * are decoded block by block.
+ *
+ * Usage as converter: MGCFile <from.mgc> <to.mgc> converts JSON to binary and vice versa.
+ */
+
+public class MGCFile {
+
+	public static final int FORMAT_JSON   = 1;
+	public static final int FORMAT_BINARY = 2;
+
+	private static final byte[] MAGIC = { 'M', 'G', 'C', '2' };
+
+	private static final Type PARAMS_TYPE = new TypeToken<Map<String,ParameterAttributes>>() {}.getType();
+
+	private static final int EVENT_MESSAGE = 0;
+	private static final int EVENT_STATUS  = 1;
+
+	public static class Header {
+		public int                               format      = FORMAT_BINARY;
+		public String                            metaVersion = null;
+		public int                               interval_ms = 0;
+		public int                               samples     = 0;
+		public Map<String,ParameterAttributes>   params      = null;
+	}
+
+	private static final AnalysisDataModelMetaData meta = AnalysisDataModelMetaData.getInstance();
+
+	public static boolean isBinary(File file) throws IOException {
+		try(InputStream in = new FileInputStream(file)) {
+			final byte[] b = new byte[MAGIC.length];
+			if(in.read(b) != b.length)
+				return false;
+			for(int i=0; i < b.length; i++)
+				if(b[i] != MAGIC[i])
+					return false;
+			return true;
+		}
+	}
+
+	/*
+	 * Loads a binary or JSON model file into the store. Binary files are mapped if possible.
+	 */
+	public static Header read(File file, AnalysisDataStore store, ProgressInputStream.Listener listener) throws IOException {
+		if(!isBinary(file))
+			return readJson(file, store, listener);
+		// a single mapping is limited to Integer.MAX_VALUE bytes
+		if(file.length() > Integer.MAX_VALUE) {
+			try(InputStream in = progress(file, listener)) {
+				return readBinary(in, store);
+			}
+		}
+		final ByteBuffer buf;
+		try {
+			buf = map(file);
+		} catch(IOException | UnsupportedOperationException e) {
+			System.err.println("Mapping "+file.getName()+" failed, using stream: "+e.getMessage());
+			try(InputStream in = progress(file, listener)) {
+				return readBinary(in, store);
+			}
+		}
+		try {
+			return readMapped(buf, store, listener);
+		} catch(EOFException e) {
+			throw new IOException("Truncated file "+file.getName(), e);
+		}
+	}
+
+	public static void write(File file, AnalysisDataStore store, Header header) throws IOException {
+		if(header.format == FORMAT_JSON) {
+			try(Writer writer = new FileWriter(file)) {
+				writeJson(writer, store, header);
+			}
+		} else {
+			try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+				writeBinary(out, store, header);
+			}
+		}
+	}
+
+	// Binary format ----------------------------------------------------------------------------
+
+	public static void writeBinary(DataOutputStream out, AnalysisDataStore store, Header header) throws IOException {
+		final Gson gson = new Gson();
+		final long[] tms = store.getTimestamps();
+
+		final List<Integer> ordinals = new ArrayList<Integer>();
+		for(int i=0; i < meta.getOrdinalCount(); i++)
+			if(store.hasColumn(i))
+				ordinals.add(i);
+
+		final byte[][] blocks = new byte[ordinals.size()][];
+		IntStream.range(0, blocks.length).parallel().forEach((i) -> {
+			blocks[i] = encodeColumn(store.getColumn(ordinals.get(i)), tms.length);
+		});
+		final byte[] tmsBlock = encodeTimestamps(tms);
+
+		out.write(MAGIC);
+		out.writeInt(FORMAT_BINARY);
+		writeString(out, header.metaVersion != null ? header.metaVersion : meta.getVersion());
+		out.writeInt(header.interval_ms);
+		out.writeInt(tms.length);
+		writeString(out, header.params != null ? gson.toJson(header.params) : null);
+
+		out.writeInt(blocks.length);
+		for(int i=0; i < blocks.length; i++) {
+			final int hash = meta.getHash(ordinals.get(i));
+			out.writeInt(hash);
+			writeString(out, meta.getKeyFigureMap().containsKey(hash) ? meta.getKeyFigureMap().get(hash).getKey() : null);
+			out.writeInt(blocks[i].length);
+		}
+		out.writeInt(tmsBlock.length);
+
+		out.write(tmsBlock);
+		for(byte[] block : blocks)
+			out.write(block);
+
+		final Map<Integer,LogMessage> messages = store.getMessageMap();
+		final Map<Integer,Status>     status   = store.getStatusMap();
+		out.writeInt(messages.size() + status.size());
+		for(Map.Entry<Integer,LogMessage> e : messages.entrySet()) {
+			out.writeInt(e.getKey()); out.writeByte(EVENT_MESSAGE); writeString(out, gson.toJson(e.getValue()));
+		}
+		for(Map.Entry<Integer,Status> e : status.entrySet()) {
+			out.writeInt(e.getKey()); out.writeByte(EVENT_STATUS); writeString(out, gson.toJson(e.getValue()));
+		}
+		out.flush();
+	}
+
+	public static Header readBinary(InputStream stream, AnalysisDataStore store) throws IOException {
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+		final Header header = readHeader(in);
+
+		final int columns = in.readInt();
+		if(columns < 0)
+			throw new IOException("Corrupt column count "+columns);
+		final int[]    ordinals = new int[columns];
+		final String[] names    = new String[columns];
+		final int[]    lengths  = new int[columns];
+		for(int i=0; i < columns; i++) {
+			final int hash = in.readInt();
+			ordinals[i] = meta.getOrdinal(hash);
+			names[i]    = columnName(hash, readString(in));
+			lengths[i]  = in.readInt();
+		}
+
+		store.setTimestamps(decodeTimestamps(readBlock(in, in.readInt()), header.samples));
+		for(int i=0; i < columns; i++)
+			store.setColumn(ordinals[i], decodeColumn(readBlock(in, lengths[i]), header.samples, names[i]));
+
+		readEvents(in, store);
+		return header;
+	}
+
+	// the mapping stays valid after the channel is closed
+	private static ByteBuffer map(File file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	private static Header readMapped(ByteBuffer buf, AnalysisDataStore store, ProgressInputStream.Listener listener) throws IOException {
+		final long size = buf.limit();
+		final DataInputStream in = new DataInputStream(new ByteBufferInputStream(buf));
+		final Header header = readHeader(in);
+
+		final int columns = in.readInt();
+		if(columns < 0)
+			throw new IOException("Corrupt column count "+columns);
+		final int[]    ordinals = new int[columns];
+		final String[] names    = new String[columns];
+		final long[]   offsets  = new long[columns + 1];
+		for(int i=0; i < columns; i++) {
+			final int hash = in.readInt();
+			ordinals[i] = meta.getOrdinal(hash);
+			names[i]    = columnName(hash, readString(in));
+			final int length = in.readInt();
+			if(length < 0)
+				throw new IOException("Corrupt column "+names[i]+": negative length");
+			offsets[i+1] = offsets[i] + length;
+		}
+		final int tmsLength = in.readInt();
+		if(tmsLength < 0 || buf.position() + (long)tmsLength > size)
+			throw new IOException("Corrupt timestamps: length "+tmsLength+" exceeds file size");
+
+		store.setTimestamps(decodeTimestamps(readBlock(in, tmsLength), header.samples));
+
+		final int body = buf.position();
+		for(int i=0; i < columns; i++)
+			if(body + offsets[i+1] > size)
+				throw new IOException("Corrupt column "+names[i]+": exceeds file size");
+
+		// failures in the workers are reported for the first column affected
+		final IOException[] errors = new IOException[columns];
+		final AtomicInteger decoded = new AtomicInteger();
+		IntStream.range(0, columns).parallel().forEach((i) -> {
+			final ByteBuffer block = buf.duplicate();
+			block.position(body + (int)offsets[i]);
+			final byte[] b = new byte[(int)(offsets[i+1] - offsets[i])];
+			block.get(b);
+			try {
+				store.setColumn(ordinals[i], decodeColumn(b, header.samples, names[i]));
+			} catch(IOException e) {
+				errors[i] = e;
+			}
+			if(listener != null)
+				listener.onProgressChanged((float)decoded.incrementAndGet() / columns);
+		});
+		for(IOException e : errors)
+			if(e != null)
+				throw e;
+
+		buf.position(body + (int)offsets[columns]);
+		readEvents(in, store);
+		return header;
+	}
+
+	private static Header readHeader(DataInputStream in) throws IOException {
+		final byte[] magic = new byte[MAGIC.length];
+		in.readFully(magic);
+		final Header header = new Header();
+		header.format = in.readInt();
+		if(header.format != FORMAT_BINARY)
+			throw new IOException("Unsupported .mgc format version "+header.format);
+		header.metaVersion = readString(in);
+		header.interval_ms = in.readInt();
+		header.samples     = in.readInt();
+		if(header.samples < 0)
+			throw new IOException("Corrupt sample count "+header.samples);
+		final String params = readString(in);
+		if(params != null) {
+			header.params = new Gson().fromJson(params, PARAMS_TYPE);
+		}
+		if(header.metaVersion != null && !header.metaVersion.equals(meta.getVersion()))
+			System.out.println("Model file metadata version "+header.metaVersion+", loaded "+meta.getVersion());
+		return header;
+	}
+
+	private static void readEvents(DataInputStream in, AnalysisDataStore store) throws IOException {
+		final Gson gson = new Gson();
+		final int count = in.readInt();
+		for(int i=0; i < count; i++) {
+			final int index = in.readInt();
+			final int type  = in.readByte();
+			final String json = readString(in);
+			if(index < 0 || index >= store.size())
+				continue;
+			if(type == EVENT_MESSAGE)
+				store.setMessage(index, gson.fromJson(json, LogMessage.class));
+			else if(type == EVENT_STATUS)
+				store.setStatus(index, gson.fromJson(json, Status.class));
+		}
+	}
+
+	private static byte[] encodeTimestamps(long[] tms) {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try(DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater, 1 << 16))) {
+			long last = 0;
+			for(long t : tms) {
+				out.writeLong(t - last);
+				last = t;
+			}
+		} catch(IOException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			deflater.end();
+		}
+		return bytes.toByteArray();
+	}
+
+	private static long[] decodeTimestamps(byte[] block, int samples) throws IOException {
+		final long[] tms = new long[samples];
+		final Inflater inflater = new Inflater();
+		try(DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(block), inflater, 1 << 16))) {
+			long last = 0;
+			for(int i=0; i < samples; i++)
+				tms[i] = last = last + in.readLong();
+		} finally {
+			inflater.end();
+		}
+		return tms;
+	}
+
+	private static byte[] encodeColumn(double[] values, int samples) {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try(DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater, 1 << 16))) {
+			long last = 0;
+			for(int i=0; i < samples; i++) {
+				final long bits = Double.doubleToRawLongBits(values[i]);
+				out.writeLong(bits ^ last);
+				last = bits;
+			}
+		} catch(IOException e) {
+			throw new IllegalStateException(e);
+		} finally {
+			deflater.end();
+		}
+		return bytes.toByteArray();
+	}
+
+	private static double[] decodeColumn(byte[] block, int samples, String name) throws IOException {
+		final double[] values = new double[samples];
+		final Inflater inflater = new Inflater();
+		try(DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(block), inflater, 1 << 16))) {
+			long last = 0;
+			for(int i=0; i < samples; i++) {
+				last ^= in.readLong();
+				values[i] = Double.longBitsToDouble(last);
+			}
+		} catch(IOException e) {
+			throw new IOException("Corrupt column "+name+": "+e.getMessage(), e);
+		} finally {
+			inflater.end();
+		}
+		return values;
+	}
+
+	private static String columnName(int hash, String key) {
+		return key != null ? key : "#"+Integer.toHexString(hash);
+	}
+
+	private static byte[] readBlock(DataInputStream in, int length) throws IOException {
+		if(length < 0)
+			throw new IOException("Corrupt block length "+length);
+		final byte[] b = new byte[length];
+		in.readFully(b);
+		return b;
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if(s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		final byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(b.length);
+		out.write(b);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		final int length = in.readInt();
+		if(length < 0)
+			return null;
+		return new String(readBlock(in, length), StandardCharsets.UTF_8);
+	}
+
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buf;
+
+		public ByteBufferInputStream(ByteBuffer buf) {
+			this.buf = buf;
+		}
+
+		@Override
+		public int read() {
+			return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if(!buf.hasRemaining())
+				return -1;
+			len = Math.min(len, buf.remaining());
+			buf.get(b, off, len);
+			return len;
+		}
+	}
+
+	// Legacy JSON format -----------------------------------------------------------------------
+
+	/*
+	 * Streams the samples into the store and calculates the virtual key figures on the way, so
+	 * the document is never materialized. Accepts the file layout and the plain sample list.
+	 */
+	public static Header readJson(File file, AnalysisDataStore store, ProgressInputStream.Listener listener) throws IOException {
+		final Gson gson = new GsonBuilder().registerTypeAdapterFactory(new AnalysisDataModelTypeAdapterFactory()).create();
+		final TypeAdapter<AnalysisDataModel> adapter = gson.getAdapter(AnalysisDataModel.class);
+		final Header header = new Header();
+		header.format = FORMAT_JSON;
+
+		store.clear();
+		try(JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(progress(file, listener)), 1 << 16))) {
+			reader.setLenient(true);
+			if(reader.peek() == JsonToken.BEGIN_ARRAY) {
+				// very old files contain the plain sample list
+				readSamples(reader, adapter, store);
+			} else {
+				reader.beginObject();
+				while(reader.hasNext()) {
+					switch(reader.nextName()) {
+					case "params":
+						header.params = gson.fromJson(reader, PARAMS_TYPE); break;
+					case "data":
+						readSamples(reader, adapter, store); break;
+					case "conversion_rate":
+						header.interval_ms = reader.nextInt(); break;
+					default:
+						reader.skipValue();
+					}
+				}
+				reader.endObject();
+			}
+		} catch(IllegalStateException | JsonParseException e) {
+			throw new IOException("Wrong file format", e);
+		}
+		header.samples = store.size();
+		return header;
+	}
+
+	public static void writeJson(Writer out, AnalysisDataStore store, Header header) throws IOException {
+		final Gson gson = new GsonBuilder().registerTypeAdapterFactory(new AnalysisDataModelTypeAdapterFactory())
+				.serializeSpecialFloatingPointValues().create();
+		final TypeAdapter<AnalysisDataModel> adapter = gson.getAdapter(AnalysisDataModel.class);
+		final List<AnalysisDataModel> list = store.getModelList();
+
+		final JsonWriter writer = new JsonWriter(new BufferedWriter(out, 1 << 16));
+		writer.setLenient(true);
+		writer.beginObject();
+		if(header.params != null) {
+			writer.name("params");
+			gson.toJson(header.params, PARAMS_TYPE, writer);
+		}
+		writer.name("data").beginArray();
+		for(int i = 0; i < list.size(); i++)
+			adapter.write(writer, list.get(i));
+		writer.endArray();
+		writer.name("conversion_rate").value(header.interval_ms);
+		writer.endObject();
+		writer.flush();
+	}
+
+	private static void readSamples(JsonReader reader, TypeAdapter<AnalysisDataModel> adapter, AnalysisDataStore store) throws IOException {
+		reader.beginArray();
+		while(reader.hasNext()) {
+			final AnalysisDataModel m = adapter.read(reader);
+			if(m == null)
+				continue;
+			m.calculateVirtualKeyFigures(meta);
+			store.add(m);
+		}
+		reader.endArray();
+	}
+
+	private static InputStream progress(File file, ProgressInputStream.Listener listener) throws IOException {
+		final ProgressInputStream in = new ProgressInputStream(new FileInputStream(file));
+		if(listener != null)
+			in.addListener(listener);
+		return in;
+	}
+
+	// Converter --------------------------------------------------------------------------------
+
+	public static void main(String[] args) throws IOException {
+
+		if(args.length < 2) {
+			System.out.println("Usage: MGCFile <from.mgc> <to.mgc>");
+			return;
+		}
+
+		final File from = new File(args[0]);
+		final File to   = new File(args[1]);
+		final AnalysisDataStore store = new AnalysisDataStore();
+
+		long tms = System.currentTimeMillis();
+		final Header header = read(from, store, null);
+		System.out.println(from.getName()+": "+store.size()+" samples read in "+(System.currentTimeMillis()-tms)+" ms");
+
+		header.format = header.format == FORMAT_JSON ? FORMAT_BINARY : FORMAT_JSON;
+		tms = System.currentTimeMillis();
+		write(to, store, header);
+		System.out.println(to.getName()+": written as "+(header.format == FORMAT_JSON ? "JSON" : "binary")
+				+" in "+(System.currentTimeMillis()-tms)+" ms, "+(to.length() >> 10)+" kB");
+	}
+}
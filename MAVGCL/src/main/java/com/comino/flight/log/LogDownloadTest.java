@@ -0,0 +1,166 @@
+/****************************************************************************
+ *
+ *   Copyright (c) 2017,2021 Eike Mansfeld ecm@gmx.de. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ ****************************************************************************/
+
+package com.comino.flight.log;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+
+/*
+ * Downloads a random log from a simulated vehicle with a limited link rate, latency and packet loss
+ * in both directions and compares the result. Time is simulated in steps of 1 ms. The download fails
+ * if it requests data twice or uses less of the link than expected for the loss. A download
+ * interrupted by a link loss is resumed from the saved bitmap.
+ */
+
+public class LogDownloadTest {
+
+	public static void main(String[] args) throws Exception {
+		System.out.println("   loss   time[s]  link usage  result");
+		boolean ok = true;
+		final double[] losses = { 0, 0.01, 0.05, 0.2, 0.5 };
+		final double[] usage  = { 0.9, 0.85, 0.5, 0.15, 0.02 };      // minimum link usage for each loss
+		for(int i = 0; i < losses.length; i++)
+			ok &= run(2 * 1024 * 1024 + 17, 60 * 1024, 80, losses[i], usage[i], -1);
+		System.out.println("Resumed after link loss:");
+		ok &= run(2 * 1024 * 1024 + 17, 60 * 1024, 80, 0, 0.9, 20000);
+		ok &= run(2 * 1024 * 1024 + 17, 60 * 1024, 80, 0.05, 0.5, 20000);
+		System.out.println(ok ? "All downloads complete" : "Download FAILED");
+	}
+
+	private static boolean run(int size, int link_rate, int latency_ms, double loss, double min_usage, long interrupt_ms) throws Exception {
+
+		final byte[] log = new byte[size];
+		final Random random = new Random(42);
+		random.nextBytes(log);
+
+		final File file = File.createTempFile("download", ".ulg");
+		file.deleteOnExit();
+
+		final SimulatedVehicle vehicle = new SimulatedVehicle(log, link_rate, latency_ms, loss, random);
+		LogDownloader download = new LogDownloader(file.toPath(), size,
+				(ofs, count) -> vehicle.request(ofs, count));
+
+		long now = 0;
+		while(!download.isComplete() && now < 7200000) {
+			if(now == interrupt_ms) {
+				// link lost: data on its way is gone, the download continues with a new downloader
+				download.close();
+				vehicle.reset();
+				download = new LogDownloader(file.toPath(), size, (ofs, count) -> vehicle.request(ofs, count));
+				if(download.getResumedBytes() == 0) {
+					LogDownloader.discard(file.toPath());
+					return false;
+				}
+			}
+			if(now % 20 == 0 && !download.tick(now))
+				break;
+			vehicle.step(now, download);
+			now++;
+		}
+		download.close();
+
+		final boolean equal = download.isComplete() && Arrays.equals(log, Files.readAllBytes(file.toPath()));
+		LogDownloader.discard(file.toPath());
+		final double usage  = (double)size / link_rate / (now / 1000.0);
+		// data already received must not be requested again
+		final boolean efficient = usage >= min_usage && download.getDuplicateChunks() <= size / LogDownloader.CHUNK_SIZE / 20;
+		System.out.printf("%6.0f%% %9.1f %10.0f%%  %s%n   %s%n", loss * 100, now / 1000.0, usage * 100,
+				!equal ? "FAILED" : efficient ? "ok" : "INEFFICIENT", download);
+		return equal && efficient;
+	}
+
+	/*
+	 * Serves one request at a time, a new request replaces the running one like on PX4
+	 */
+	private static class SimulatedVehicle {
+
+		private final byte[] log;
+		private final double chunks_per_ms;
+		private final int    latency_ms;
+		private final double loss;
+		private final Random random;
+
+		private final ArrayDeque<long[]> requests = new ArrayDeque<long[]>();   // { arrival, ofs, count }
+		private final ArrayDeque<long[]> packets  = new ArrayDeque<long[]>();   // { arrival, ofs }
+
+		private long   ofs = 0, end = 0;
+		private double credit = 0;
+
+		void reset() {
+			requests.clear(); packets.clear();
+			ofs = end = 0;
+		}
+
+		SimulatedVehicle(byte[] log, int link_rate, int latency_ms, double loss, Random random) {
+			this.log = log;
+			this.chunks_per_ms = link_rate / 1000.0 / LogDownloader.CHUNK_SIZE;
+			this.latency_ms = latency_ms;
+			this.loss = loss;
+			this.random = random;
+		}
+
+		void request(long ofs, long count) {
+			if(random.nextDouble() >= loss)
+				requests.add(new long[] { now + latency_ms, ofs, count });
+		}
+
+		private long now = 0;
+
+		void step(long now, LogDownloader download) {
+			this.now = now;
+			while(!requests.isEmpty() && requests.peek()[0] <= now) {
+				final long[] r = requests.poll();
+				ofs = r[1]; end = Math.min(log.length, r[1] + r[2]);
+			}
+			credit = Math.min(credit + chunks_per_ms, 4);
+			while(credit >= 1 && ofs < end) {
+				credit -= 1;
+				if(random.nextDouble() >= loss)
+					packets.add(new long[] { now + latency_ms, ofs });
+				ofs += LogDownloader.CHUNK_SIZE;
+			}
+			while(!packets.isEmpty() && packets.peek()[0] <= now) {
+				final long p = packets.poll()[1];
+				final int count = (int)Math.min(LogDownloader.CHUNK_SIZE, log.length - p);
+				final int[] data = new int[LogDownloader.CHUNK_SIZE];
+				for(int i = 0; i < count; i++)
+					data[i] = log[(int)p + i] & 0xFF;
+				download.received(p, count, data, now);
+			}
+		}
+	}
+}
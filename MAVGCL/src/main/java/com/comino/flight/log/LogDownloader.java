@@ -0,0 +1,461 @@
+/****************************************************************************
+ *
+ *   Copyright (c) 2017,2021 Eike Mansfeld ecm@gmx.de. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ ****************************************************************************/
+
+package com.comino.flight.log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/*
+ * Download of one log via LOG_REQUEST_DATA. Received chunks are tracked in a bitmap. A request
+ * replaces the running one on the vehicle, so the next request is sent when the vehicle has sent
+ * the running one (paced by the link rate measured while busy) and its rest is already on its way
+ * (link rate x round trip time). It continues behind the running one; the link does not fall idle
+ * and nothing is requested twice. Missing chunks are requested in further passes, gaps are merged
+ * into one request only where few chunks in between are already received. The request size follows
+ * the measured throughput and is reduced on loss and stalls. Data is written in batches.
+ * The bitmap is saved next to the file (<file>.map) while the download is incomplete, a new
+ * downloader for the same file and size resumes from it.
+ * All times in ms, provided by the caller.
+ */
+
+public class LogDownloader {
+
+	public static final int CHUNK_SIZE = 90;
+
+	private static final int    MIN_WINDOW  = 16;          // chunks per request
+	private static final int    MAX_WINDOW  = 16384;
+	private static final long   HORIZON_MS  = 1000;        // a request covers this transfer time
+	private static final long   MIN_STALL_MS = 200;        // no data for a request
+	private static final int    MAX_STALLS  = 50;          // consecutive stalls before giving up
+	private static final double MAX_LOSS    = 0.05;
+	private static final double MAX_MERGE   = 0.25;        // share of received chunks in a merged request
+	private static final long   SAVE_MS     = 2000;        // bitmap saved in this interval
+	private static final long   BUSY_MS     = 20;          // link busy while chunks arrive closer than this
+
+	public interface IRequestHandler {
+		void request(long offset, long count);
+	}
+
+	private final long            size;
+	private final int             chunks;
+	private final BitSet          received;
+	private final FileChannel     channel;
+	private final IRequestHandler handler;
+	private final Path            map;
+
+	private final ByteBuffer batch     = ByteBuffer.allocate(64 * 1024);
+	private long             batch_ofs = 0;
+
+	private int  received_count = 0;
+	private long received_bytes = 0;
+	private long arrived        = 0;    // chunks sent by the vehicle: received, duplicate or lost
+
+	// running request in chunks [req_start, req_end), cursor is the next expected chunk
+	private int     req_start = 0;
+	private int     req_end   = 0;
+	private int     prev_start = 0;
+	private int     prev_end   = 0;
+	private long    req_ms    = 0;
+	private boolean req_first = false;
+	private int     cursor    = 0;
+	private int     window    = 64;
+
+	private long last_data_ms = 0;
+	private long save_ms      = 0;
+	private long resumed      = 0;
+
+	private long   rate_ms     = -1;
+	private long   rate_bytes  = 0;
+	private long   rate_chunks = 0;
+	private long   rate_lost   = 0;
+	private long   busy_ms     = 0;
+	private long   busy_chunks = 0;
+	private double rate        = 0;     // received bytes/s
+	private double link_rate   = 0;     // chunks/s sent by the vehicle while busy
+	private double rtt         = 300;
+
+	private int  requests   = 0;
+	private int  retries    = 0;
+	private int  stalls     = 0;
+	private long lost       = 0;
+	private long duplicates = 0;
+
+	public LogDownloader(Path file, long size, IRequestHandler handler) throws IOException {
+		this.size     = size;
+		this.chunks   = (int)((size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+		this.received = new BitSet(chunks);
+		this.handler  = handler;
+		this.map      = file.resolveSibling(file.getFileName()+".map");
+
+		if(Files.exists(map) && Files.exists(file))
+			load();
+		else
+			Files.deleteIfExists(map);
+		this.channel  = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+	}
+
+	/*
+	 * Removes a partial download and its bitmap
+	 */
+	public static void discard(Path file) {
+		try {
+			Files.deleteIfExists(file.resolveSibling(file.getFileName()+".map"));
+			Files.deleteIfExists(file);
+		} catch(IOException e) {
+			System.err.println("Log download: "+e.getMessage());
+		}
+	}
+
+	public synchronized void received(long offset, int count, int[] data, long now_ms) {
+		if(offset % CHUNK_SIZE != 0 || offset >= size || count <= 0)
+			return;
+		final int c = (int)(offset / CHUNK_SIZE);
+
+		final boolean busy = now_ms - last_data_ms <= BUSY_MS;
+		if(busy) {
+			busy_ms += now_ms - last_data_ms; busy_chunks++;
+		}
+		last_data_ms = now_ms; stalls = 0;
+		arrived++;
+
+		// chunks of the previous request still on their way do not answer this one
+		if(c >= req_start && c < req_end && (c < prev_start || c >= prev_end) && !req_first) {
+			rtt = rtt * 0.7 + (now_ms - req_ms) * 0.3;
+			req_first = true;
+		}
+
+		// chunks skipped within the running request are lost
+		if(c > cursor && cursor >= req_start && c < req_end) {
+			final int skipped = (c - cursor) - received.get(cursor, c).cardinality();
+			lost += skipped; arrived += skipped;
+			if(busy)
+				busy_chunks += skipped;
+		}
+		if(c >= cursor && c < req_end)
+			cursor = c + 1;
+
+		if(received.get(c)) {
+			duplicates++;
+		} else {
+			try {
+				write(offset, data, (int)Math.min(count, size - offset));
+			} catch(IOException e) {
+				System.err.println("Log download: "+e.getMessage());
+				return;
+			}
+			received.set(c);
+			received_count++;
+			received_bytes += count;
+		}
+		schedule(now_ms);
+	}
+
+	/*
+	 * Called periodically (about every 20 ms, short gap requests are sent from here): measures the
+	 * throughput and detects stalls. Returns false if the vehicle stopped responding.
+	 */
+	public synchronized boolean tick(long now_ms) {
+
+		if(rate_ms < 0) {
+			rate_ms = now_ms; rate_bytes = received_bytes; rate_chunks = arrived; rate_lost = lost;
+		} else if(now_ms - rate_ms >= 250) {
+			final double r = (received_bytes - rate_bytes) * 1000.0 / (now_ms - rate_ms);
+			rate      = rate == 0 ? r : rate * 0.7 + r * 0.3;
+			// link rate from the time the link was busy only, requests are paced by it
+			if(busy_ms >= 50) {
+				final double l = busy_chunks * 1000.0 / busy_ms;
+				link_rate = link_rate == 0 ? l : link_rate * 0.7 + l * 0.3;
+				busy_ms = 0; busy_chunks = 0;
+			}
+			adapt(lost - rate_lost, arrived - rate_chunks);
+			rate_ms = now_ms; rate_bytes = received_bytes; rate_chunks = arrived; rate_lost = lost;
+		}
+
+		flushQuietly();
+
+		if(isComplete())
+			return true;
+
+		if(now_ms - save_ms >= SAVE_MS) {
+			save_ms = now_ms;
+			try {
+				save();
+			} catch(IOException e) {
+				System.err.println("Log download: "+e.getMessage());
+			}
+		}
+
+		if(req_end > req_start && now_ms - Math.max(last_data_ms, req_ms) > Math.max(MIN_STALL_MS, (long)(2 * rtt) + 100)) {
+			retries++;
+			window = Math.max(MIN_WINDOW, window / 2);
+			if(++stalls > MAX_STALLS)
+				return false;
+			request(now_ms, received.nextClearBit(Math.min(cursor, chunks)));
+			return true;
+		}
+
+		schedule(now_ms);
+		return true;
+	}
+
+	public synchronized boolean isComplete() {
+		return received_count == chunks;
+	}
+
+	/*
+	 * Closes the file. An incomplete download keeps its bitmap for resuming.
+	 */
+	public synchronized void close() throws IOException {
+		if(!channel.isOpen())
+			return;
+		flush();
+		if(isComplete()) {
+			channel.close();
+			Files.deleteIfExists(map);
+			return;
+		}
+		save();
+		channel.close();
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	public synchronized float getProgress() {
+		return chunks == 0 ? 1 : (float)received_count / chunks;
+	}
+
+	/*
+	 * Throughput in bytes per second
+	 */
+	public synchronized double getThroughput() {
+		return rate;
+	}
+
+	public synchronized long getReceivedBytes() {
+		return received_bytes;
+	}
+
+	/*
+	 * Bytes already available from a previous download of the file
+	 */
+	public synchronized long getResumedBytes() {
+		return resumed;
+	}
+
+	public synchronized int getRequests() {
+		return requests;
+	}
+
+	public synchronized int getRetries() {
+		return retries;
+	}
+
+	public synchronized long getLostChunks() {
+		return lost;
+	}
+
+	public synchronized long getDuplicateChunks() {
+		return duplicates;
+	}
+
+	public synchronized int getMissingChunks() {
+		return chunks - received_count;
+	}
+
+	/*
+	 * Number of contiguous ranges still missing
+	 */
+	public synchronized int getGaps() {
+		int gaps = 0;
+		int c = received.nextClearBit(0);
+		while(c < chunks) {
+			gaps++;
+			final int next = received.nextSetBit(c);
+			if(next < 0 || next >= chunks)
+				break;
+			c = received.nextClearBit(next);
+		}
+		return gaps;
+	}
+
+	public synchronized int getWindowBytes() {
+		return window * CHUNK_SIZE;
+	}
+
+	public synchronized String toString() {
+		return String.format("%d/%d kB, %.1f kB/s, rtt %d ms, %d requests, %d retries, %d lost, %d duplicates, %d gaps, window %d B",
+				received_bytes / 1024, size / 1024, rate / 1024, (int)rtt, requests, retries, lost, duplicates, getGaps(), getWindowBytes());
+	}
+
+	// chunks the vehicle sends during one round trip
+	private int inflight() {
+		return (int)Math.ceil(link_rate * rtt / 1000);
+	}
+
+	/*
+	 * Sends the next request when the vehicle has sent the running one (request time + its transfer
+	 * time) and its rest is already on its way. The next request continues behind the running one;
+	 * the next pass from the start waits until the running one is complete or its data is overdue,
+	 * so that chunks on their way are not requested again.
+	 */
+	private void schedule(long now_ms) {
+		if(isComplete())
+			return;
+		if(req_end <= req_start) {
+			request(now_ms, received.nextClearBit(0));
+			return;
+		}
+		final long due_ms = req_ms + (link_rate > 0 ? (long)((req_end - req_start) * 1000 / link_rate) : 0);
+		final int next = received.nextClearBit(req_end);
+		if(next < chunks) {
+			if(now_ms >= due_ms && req_end - Math.max(cursor, req_start) <= inflight())
+				request(now_ms, next);
+			return;
+		}
+		if(cursor >= req_end || now_ms > due_ms + (long)(1.5 * rtt))
+			request(now_ms, received.nextClearBit(0));
+	}
+
+	// window of the next requests from the loss of the last measurement interval
+	private void adapt(long lost, long arrived) {
+		final int floor  = Math.max(MIN_WINDOW, 2 * inflight());
+		if(arrived < MIN_WINDOW)
+			return;
+		if(lost > arrived * MAX_LOSS)
+			window = Math.max(floor, window / 2);
+		else
+			window = (int)Math.max(floor, Math.min(MAX_WINDOW, Math.max(window + window / 2, link_rate * HORIZON_MS / 1000)));
+	}
+
+	/*
+	 * Request from start. Gaps are merged only while the chunks already received stay a small part of
+	 * the requested range, otherwise the gap is requested exactly. As long as the link rate is not
+	 * known (resumed download) the whole window is requested to measure it.
+	 */
+	private void request(long now_ms, int start) {
+		if(start >= chunks)
+			return;
+		final int limit = (int)Math.min(chunks, (long)start + window);
+		int end = link_rate > 0 ? received.nextSetBit(start) : limit;
+		if(end < 0 || end > limit)
+			end = limit;
+		int have = 0;
+		while(end < limit) {
+			final int next = received.nextClearBit(end);
+			if(next >= limit || (have + next - end) > (next - start) * MAX_MERGE)
+				break;
+			have += next - end;
+			end = received.nextSetBit(next);
+			if(end < 0 || end > limit)
+				end = limit;
+		}
+
+		prev_start = req_start; prev_end = req_end;
+		req_start = start; req_end = end;
+		req_ms = now_ms; req_first = false;
+		cursor = start;
+		requests++;
+
+		handler.request((long)start * CHUNK_SIZE, Math.min(size, (long)end * CHUNK_SIZE) - (long)start * CHUNK_SIZE);
+	}
+
+	private void write(long offset, int[] data, int count) throws IOException {
+		if(batch.position() > 0 && (offset != batch_ofs + batch.position() || batch.remaining() < count))
+			flush();
+		if(batch.position() == 0)
+			batch_ofs = offset;
+		for(int i = 0; i < count; i++)
+			batch.put((byte)data[i]);
+	}
+
+	private void flush() throws IOException {
+		batch.flip();
+		long ofs = batch_ofs;
+		while(batch.hasRemaining())
+			ofs += channel.write(batch, ofs);
+		batch.clear();
+	}
+
+	private void save() throws IOException {
+		flush();
+		channel.force(false);
+		final Path tmp = map.resolveSibling(map.getFileName()+".tmp");
+		try(DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp))) {
+			final byte[] bits = received.toByteArray();
+			out.writeLong(size);
+			out.writeInt(bits.length);
+			out.write(bits);
+		}
+		Files.move(tmp, map, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	// bitmap of a previous download of the same size
+	private void load() {
+		try(DataInputStream in = new DataInputStream(Files.newInputStream(map))) {
+			if(in.readLong() != size)
+				return;
+			final byte[] bits = new byte[in.readInt()];
+			in.readFully(bits);
+			final BitSet loaded = BitSet.valueOf(bits);
+			if(loaded.length() > chunks)
+				return;
+			received.or(loaded);
+			received_count = received.cardinality();
+			received_bytes = (long)received_count * CHUNK_SIZE;
+			if(chunks > 0 && received.get(chunks - 1))
+				received_bytes -= (long)chunks * CHUNK_SIZE - size;
+			resumed = received_bytes;
+		} catch(IOException e) {
+			System.err.println("Log download: bitmap not used: "+e.getMessage());
+		}
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch(IOException e) {
+			System.err.println("Log download: "+e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,114 @@
+/****************************************************************************
+ *
+ *   Copyright (c) 2017,2021 Eike Mansfeld ecm@gmx.de. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ ****************************************************************************/
+
+package com.comino.flight.log;
+
+import java.io.EOFException;
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import me.drton.jmavlib.log.px4.PX4LogReader;
+import me.drton.jmavlib.log.ulog.ULogReader;
+
+/*
+ * Import throughput of the streaming and the memory mapped log reader backend.
+ * Usage: LogImportBenchmark <file.ulg|file.px4log> [runs]
+ */
+
+public class LogImportBenchmark {
+
+	public static void main(String[] args) throws Exception {
+
+		if(args.length < 1) {
+			System.out.println("Usage: LogImportBenchmark <file.ulg|file.px4log> [runs]");
+			return;
+		}
+
+		File file = new File(args[0]);
+		int runs  = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		boolean ulog = file.getName().endsWith(".ulg");
+
+		System.out.println(file.getName()+": "+(file.length() >> 10)+" kB");
+
+		for(int i=0;i<runs;i++) {
+			for(boolean mapped : new boolean[] { false, true }) {
+				long tms = System.nanoTime();
+				long count = ulog ? importULog(file, mapped) : importPX4Log(file, mapped);
+				long ns = System.nanoTime() - tms;
+				System.out.printf("%-10s %8d updates %7.1f ms (open %6.1f ms) %8.1f MB/s%n", mapped ? "mapped" : "streaming",
+						count, ns / 1e6, open_ns / 1e6, file.length() / (ns / 1e9) / (1 << 20));
+			}
+		}
+	}
+
+	private static long open_ns;
+
+	private static long importULog(File file, boolean mapped) throws Exception {
+		long tms = System.nanoTime();
+		ULogReader reader = new ULogReader(file.getAbsolutePath(), mapped);
+		open_ns = System.nanoTime() - tms;
+		Map<String,Integer> slots = new HashMap<String,Integer>();
+		for(String field : reader.getFields().keySet())
+			slots.put(field, slots.size());
+		reader.bind(slots);
+		double[] values = new double[slots.size()];
+		Arrays.fill(values, Double.NaN);
+		long count = 0;
+		try {
+			while(true) {
+				reader.readUpdate(values);
+				count++;
+			}
+		} catch(EOFException e) { }
+		reader.close();
+		return count;
+	}
+
+	private static long importPX4Log(File file, boolean mapped) throws Exception {
+		long tms = System.nanoTime();
+		PX4LogReader reader = new PX4LogReader(file.getAbsolutePath(), mapped);
+		open_ns = System.nanoTime() - tms;
+		Map<String,Object> data = new HashMap<String,Object>();
+		long count = 0;
+		try {
+			while(true) {
+				reader.readUpdate(data);
+				count++;
+			}
+		} catch(EOFException e) { }
+		reader.close();
+		return count;
+	}
+}
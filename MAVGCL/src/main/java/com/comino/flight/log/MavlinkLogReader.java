@@ -33,21 +33,23 @@
 
 package com.comino.flight.log;
 
-import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.LockSupport;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.prefs.Preferences;
+import java.util.zip.CRC32;
 
 import org.mavlink.messages.lquac.msg_log_data;
 import org.mavlink.messages.lquac.msg_log_entry;
@@ -74,16 +76,26 @@ import javafx.beans.property.SimpleBooleanProperty;
 import me.drton.jmavlib.log.px4.PX4LogReader;
 import me.drton.jmavlib.log.ulog.ULogReader;
 
+/*
+ * Downloads the last log or all logs of the vehicle. Each log is downloaded into a partial file
+ * named after its time and size in the base path; a download stopped by a link loss or an abort
+ * resumes from there with the next request. A batch fetches all listed logs back to back into
+ * Downloads, the last log is imported into the model.
+ */
+
 public class MavlinkLogReader implements IMAVLinkListener {
 
-	private static final int LOG_PACKAG_DATA_LENGTH = 90;
 	private static final int GET_LAST_LOG_ID = 99999;
+	private static final int MAX_LOG_ID      = 0xFFFF;
 
-	private static final int IDLE = 0;
+	private static final int IDLE  = 0;
 	private static final int ENTRY = 1;
-	private static final int DATA = 2;
+	private static final int DATA  = 2;
+	private static final int WAIT  = 3;          // link lost, continued after reconnect
+
+	private static final byte[] ULOG_MAGIC = { 'U', 'L', 'o', 'g', 0x01, 0x12, 0x35 };
 
-	private int state = 0;
+	private volatile int state = 0;
 
 	private IMAVController control = null;
 
@@ -92,21 +104,25 @@ public class MavlinkLogReader implements IMAVLinkListener {
 	private long start = 0;
 	private long time_utc = 0;
 
-	private int total_package_count = 0;
-
-	private volatile int chunk_offset = 0;
-	private volatile int chunk_size = 0;
-
-	private int read_count = 0;
-
-	private RandomAccessFile file = null;
+	private volatile LogDownloader downloader = null;
 
 	private BooleanProperty isCollecting = null;
-	private List<Long> unread_packages = null;
 	private int timeout;
 
 	private String path = null;
 
+	// batch of logs: listed entries by id, logs still to download and the ones done. The state of the
+	// batch is changed by the receive thread, the work queue and the FX thread, always locked on the reader.
+	private boolean batch = false;
+	private int num_logs = -1;
+	private final Map<Integer,msg_log_entry> entries = new TreeMap<Integer,msg_log_entry>();
+	private final Deque<msg_log_entry> pending = new ArrayDeque<msg_log_entry>();
+	private final Set<String> done = new HashSet<String>();
+	private msg_log_entry current = null;
+	private long batch_bytes = 0;
+	private long batch_done = 0;
+	private int failed = 0;
+
 	private final StateProperties props;
 	private final MSPLogger logger;
 	private final AnalysisModelService modelService;
@@ -129,70 +145,78 @@ public class MavlinkLogReader implements IMAVLinkListener {
 		props.getRecordingProperty().addListener((o,ov,nv) -> {
 			if(nv.intValue() != AnalysisModelService.STOPPED && isCollecting.get())
 				abortReadingLog();
-		});	
+		});
+
+		props.getConnectedProperty().addListener((o,ov,nv) -> {
+			synchronized(this) {
+				if(!isCollecting.get())
+					return;
+				if(!nv.booleanValue() && state == DATA)
+					pause();
+				if(nv.booleanValue() && state == WAIT)
+					listEntries();
+			}
+		});
 	}
 
 	public void requestLastLog() {
+		requestLogs(false);
+	}
 
-		if(props.getRecordingProperty().intValue()!=AnalysisModelService.STOPPED)
-			return;
+	public void requestAllLogs() {
+		requestLogs(true);
+	}
 
-		try {
-			this.path = fh.getTempFile().getPath();
-			this.file = new RandomAccessFile(path, "rw");
-		} catch (IOException e) {
-			e.printStackTrace();
+	private synchronized void requestLogs(boolean all) {
+
+		if(props.getRecordingProperty().intValue()!=AnalysisModelService.STOPPED || isCollecting.get())
 			return;
-		}
 
 		ParameterAttributes pp = MAVGCLPX4Parameters.getInstance().get("SDLOG_PROFILE");
-		if(pp!=null) {
+		if(pp!=null && !all) {
 			if(pp.value != 1  && pp.value < 17 ) {
 				logger.writeLocalMsg("[mgc] No import of extended logs. Use profile to '1' or '17'.");
 				return;
 			}
 		}
 
-
+		batch = all;
+		done.clear();
+		batch_bytes = 0; batch_done = 0; failed = 0;
 
 		isCollecting.set(true);
-		state = ENTRY;
-		retry = 0;
-		read_count = 0;
-
 
 		props.getProgressProperty().set(0);
 		props.getLogLoadedProperty().set(false);
 
-		timeout = wq.addCyclicTask("LP",100,() -> {
-
-			switch (state) {
-			case IDLE:
-				wq.removeTask("LP",timeout);
-				retry=0;
-				read_count = 0;
-				break;
-			case ENTRY:
-				if (++retry > 500) {
-					abortReadingLog();
-					return;
+		timeout = wq.addCyclicTask("LP",20,() -> {
+			synchronized(this) {
+				switch (state) {
+				case IDLE:
+					wq.removeTask("LP",timeout);
+					retry=0;
+					break;
+				case ENTRY:
+					if (++retry > 2500) {
+						abortReadingLog();
+						return;
+					}
+					if (retry % 50 == 0)
+						requestEntries();
+					break;
+				case DATA:
+					final LogDownloader d = downloader;
+					if (d != null && !d.tick(System.currentTimeMillis())) {
+						abortReadingLog();
+						return;
+					}
+					break;
 				}
-				requestLogList(GET_LAST_LOG_ID);
-				break;
-			case DATA:
-				if (++retry > 200) {
-					abortReadingLog();
-					return;
-				}
-				int c = 0;
-				while(searchForNextUnreadPackage() && c++ < 7) 
-					requestDataPackages(chunk_offset * LOG_PACKAG_DATA_LENGTH, chunk_size  * LOG_PACKAG_DATA_LENGTH);
-				break;
 			}
 		});
 
 		start = System.currentTimeMillis();
-		requestLogList(GET_LAST_LOG_ID);
+		listEntries();
 	}
 
 	public BooleanProperty isCollecting() {
@@ -203,7 +227,14 @@ public class MavlinkLogReader implements IMAVLinkListener {
 		return speed;
 	}
 
-	public void abortReadingLog() {
+	public LogDownloader getDownloader() {
+		return downloader;
+	}
+
+	/*
+	 * Stops the download, the partial log is kept and resumed with the next request
+	 */
+	public synchronized void abortReadingLog() {
 		if(!isCollecting.get())
 			return;
 		stop();
@@ -225,163 +256,273 @@ public class MavlinkLogReader implements IMAVLinkListener {
 			handleLogData((msg_log_data) o);
 	}
 
-	private void handleLogEntry(msg_log_entry entry) {
+	private synchronized void listEntries() {
+		entries.clear();
+		pending.clear();
+		num_logs = -1;
+		retry = 0;
+		state = ENTRY;
+		requestEntries();
+	}
+
+	private void requestEntries() {
+		if (num_logs < 0)
+			requestLogList(batch ? 0 : GET_LAST_LOG_ID, batch ? MAX_LOG_ID : GET_LAST_LOG_ID);
+		else if (!batch)
+			requestLogList(num_logs - 1);
+		else {
+			int id = 0;
+			while (entries.containsKey(id))
+				id++;
+			requestLogList(id, num_logs - 1);
+		}
+	}
 
-		last_log_id = entry.num_logs - 1;
-		if (last_log_id > -1) {
-			if (entry.id != last_log_id)
-				requestLogList(last_log_id);
-			else {
+	private synchronized void handleLogEntry(msg_log_entry entry) {
 
-				if (entry.size == 0) {
-					stop();
-					return;
-				}
-				time_utc = entry.time_utc*1000L;
-				total_package_count = prepareUnreadPackageList(entry.size);
-				System.out.println("Expected packages: " + unread_packages.size()+"/"+entry.size);
-				logger.writeLocalMsg("[mgc] Importing Log (" + last_log_id + ") - " + (entry.size / 1024) + " kb");
-				try {
-					file.setLength(entry.size);
-				} catch (IOException e) {
-					System.err.println(e.getLocalizedMessage());
-					stop();
-					return;
-				}
-				retry = 0;
-				state = DATA;
-				if(searchForNextUnreadPackage())
-				  requestDataPackages(0, chunk_size * LOG_PACKAG_DATA_LENGTH );
+		if (state != ENTRY)
+			return;
 
-			}
-		} else {
+		num_logs = entry.num_logs;
+		if (num_logs == 0) {
 			stop();
 			props.getLogLoadedProperty().set(false);
 			props.getProgressProperty().set(StateProperties.NO_PROGRESS);
-			wq.removeTask("LP",timeout);
 			logger.writeLocalMsg("[mgc] No log available.");
+			return;
 		}
-	}
 
-	private void handleLogData(msg_log_data data) {
+		if (!batch && entry.id != num_logs - 1) {
+			requestLogList(num_logs - 1);
+			return;
+		}
 
-		retry = 0;
+		entries.put(entry.id, entry);
+		if (batch && entries.size() < num_logs)
+			return;
 
-		int p = getPackageNumber(data.ofs);
+		batch_bytes = 0;
+		for (msg_log_entry e : entries.values()) {
+			if (e.size == 0)
+				continue;
+			batch_bytes += e.size;
+			if (!done.contains(key(e)))
+				pending.add(e);
+		}
+		if (batch)
+			logger.writeLocalMsg("[mgc] Downloading " + pending.size() + " of " + num_logs + " logs - " + (batch_bytes / 1024) + " kb");
+		next();
+	}
+
+	private void next() {
 
-		if( unread_packages == null || p >= unread_packages.size() || unread_packages.get(p) == -1)
+		current = pending.poll();
+		if (current == null) {
+			finish();
 			return;
+		}
+
+		last_log_id = current.id;
+		time_utc = current.time_utc*1000L;
+		path = partFile(current).toString();
 
 		try {
-			file.seek(data.ofs);
-			for (int i = 0; i < data.count; i++)
-				file.writeByte((byte) (data.data[i] & 0x000000FF));
+			downloader = new LogDownloader(Paths.get(path), current.size, this::requestDataPackages);
 		} catch (IOException e) {
 			System.err.println(e.getLocalizedMessage());
+			stop();
 			return;
 		}
+		if (downloader.getResumedBytes() > 0)
+			logger.writeLocalMsg("[mgc] Resuming Log (" + last_log_id + ") at " + (downloader.getResumedBytes() / 1024) + " of "
+					+ (current.size / 1024) + " kb");
+		else
+			logger.writeLocalMsg("[mgc] Importing Log (" + last_log_id + ") - " + (current.size / 1024) + " kb");
 
-		//	props.getLogLoadedProperty().set(true);
+		retry = 0;
+		state = DATA;
+		downloader.tick(System.currentTimeMillis());
+	}
 
-		unread_packages.set(p, (long) -1);
-		read_count++;
+	private synchronized void handleLogData(msg_log_data data) {
 
-		speed = (int)(data.ofs * 1000 / (1024 * (System.currentTimeMillis() - start)));
+		final LogDownloader d = downloader;
+		if (state != DATA || d == null || data.id != last_log_id)
+			return;
 
-		fh.setName("in progress ("+speed+"kb/s)");
+		d.received(data.ofs, data.count, data.data, System.currentTimeMillis());
 
-		int unread_count = unread_packages.size()-read_count; //getUnreadPackageCount();
-		//	 System.out.println("Package: "+p +" -> "+unread_packages.get(p)+"-> "+unread_count+" -> "+(unread_packages.size()-read_count));
-		props.getProgressProperty().set(1.0f - (float) unread_count / total_package_count);
-		if (unread_count == 0) {
-			stop();
-			sendEndNotice();
-			try {
-				modelService.getModelList().clear();
-				ParameterAttributes pa = MAVGCLPX4Parameters.getInstance().get("SYS_LOGGER");
-				if (pa == null || pa.value != 0) {
-
-					ULogReader reader = new ULogReader(path);
-					UlogtoModelConverter converter = new UlogtoModelConverter(reader, modelService.getModelList());
-					converter.doConversion();
-					reader.close();
-				} else {
-					PX4LogReader reader = new PX4LogReader(path);
-					MAVGCLPX4Parameters.getInstance().setParametersFromLog(reader.getParameters());
-					PX4toModelConverter converter = new PX4toModelConverter(reader, modelService.getModelList());
-					converter.doConversion();
-				}
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
-			logger.writeLocalMsg("[mgc] Import completed (" + speed + " kb/sec)");
-			props.getLogLoadedProperty().set(true);
-			DateFormat formatter = new SimpleDateFormat("YYYYMMdd-HHmmss");
-			String name = "Log-" + last_log_id + "-" + formatter.format(time_utc);
-			copyFileToLogDir(path, name);
-			fh.setName(name);
-			props.getProgressProperty().set(StateProperties.NO_PROGRESS);
-		} 		
-	}
+		speed = (int)(d.getThroughput() / 1024);
 
-	private void stop() {
-		wq.removeTask("LP",timeout);
-		sendEndNotice();
+		if (batch)
+			fh.setName("in progress (" + (done.size() + 1) + "/" + num_logs + ", " + speed + "kb/s)");
+		else
+			fh.setName("in progress ("+speed+"kb/s)");
+
+		props.getProgressProperty().set(batch_bytes > 0 ? (float)(batch_done + d.getReceivedBytes()) / batch_bytes : d.getProgress());
+		if (!d.isComplete())
+			return;
+
+		System.out.println("Log download: "+d);
 		state = IDLE;
-		isCollecting.set(false);
 		try {
-			file.close();
+			d.close();
 		} catch (IOException e) {
+			System.err.println(e.getLocalizedMessage());
 		}
-	}
 
-	private void copyFileToLogDir(String path, String targetname) {
-		Path src  = Paths.get(path);
+		done.add(key(current));
+		batch_done += current.size;
+
+		DateFormat formatter = new SimpleDateFormat("yyyyMMdd-HHmmss");
+		String name = "Log-" + last_log_id + "-" + formatter.format(time_utc);
 
-		String dir = System.getProperty("user.home")+"/Downloads";
-		File f = new File(dir);
+		if (!verify(current)) {
+			failed++;
+			LogDownloader.discard(Paths.get(path));
+			next();
+			return;
+		}
 
-		if(!f.exists() || !userPrefs.getBoolean(MAVPreferences.DOWNLOAD, true)) {
+		if (!pending.isEmpty()) {
+			keepOrDiscard(copyFileToLogDir(path, name, true), name);
+			next();
 			return;
 		}
-		Path dest = Paths.get(dir+"/"+targetname+".ulg");
+
+		speed = (int)(batch_done * 1000 / (1024 * Math.max(1, System.currentTimeMillis() - start)));
+		stop();
 		try {
-			Files.copy(src, dest, StandardCopyOption.REPLACE_EXISTING);
+			modelService.getModelList().clear();
+			ParameterAttributes pa = MAVGCLPX4Parameters.getInstance().get("SYS_LOGGER");
+			if (pa == null || pa.value != 0) {
+
+				ULogReader reader = new ULogReader(path);
+				UlogtoModelConverter converter = new UlogtoModelConverter(reader, modelService.getDataStore());
+				converter.doConversion();
+				reader.close();
+			} else {
+				PX4LogReader reader = new PX4LogReader(path);
+				MAVGCLPX4Parameters.getInstance().setParametersFromLog(reader.getParameters());
+				PX4toModelConverter converter = new PX4toModelConverter(reader, modelService.getModelList());
+				converter.doConversion();
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		logger.writeLocalMsg("[mgc] Import completed (" + speed + " kb/sec)");
+		props.getLogLoadedProperty().set(true);
+		keepOrDiscard(copyFileToLogDir(path, name, batch), name);
+		if (batch)
+			logger.writeLocalMsg("[mgc] " + (done.size() - failed) + " logs downloaded" + (failed > 0 ? ", " + failed + " failed" : ""));
+		fh.setName(name);
+		props.getProgressProperty().set(StateProperties.NO_PROGRESS);
+	}
+
+	// no log left to download after a failed check or a reconnect
+	private void finish() {
+		stop();
+		logger.writeLocalMsg("[mgc] " + (done.size() - failed) + " logs downloaded" + (failed > 0 ? ", " + failed + " failed" : ""));
+		props.getProgressProperty().set(StateProperties.NO_PROGRESS);
+	}
+
+	/*
+	 * Checks the size of the downloaded log and the ULog header, the CRC32 is reported
+	 */
+	private boolean verify(msg_log_entry entry) {
+		final ParameterAttributes pa = MAVGCLPX4Parameters.getInstance().get("SYS_LOGGER");
+		final CRC32 crc = new CRC32();
+		final byte[] header = new byte[ULOG_MAGIC.length];
+		long length = 0;
+		try (InputStream in = Files.newInputStream(Paths.get(path))) {
+			final byte[] buffer = new byte[64 * 1024];
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				if (length < header.length)
+					System.arraycopy(buffer, 0, header, (int)length, (int)Math.min(n, header.length - length));
+				crc.update(buffer, 0, n);
+				length += n;
+			}
 		} catch (IOException e) {
-			return;
+			logger.writeLocalMsg("[mgc] Log (" + entry.id + ") not readable: " + e.getMessage());
+			return false;
 		}
-		logger.writeLocalMsg("[mgc] Imported file copied to Downloads");
+		if (length != entry.size) {
+			logger.writeLocalMsg("[mgc] Log (" + entry.id + ") size mismatch: " + length + " of " + entry.size + " bytes");
+			return false;
+		}
+		if ((pa == null || pa.value != 0) && !Arrays.equals(header, ULOG_MAGIC)) {
+			logger.writeLocalMsg("[mgc] Log (" + entry.id + ") is no valid ULog file");
+			return false;
+		}
+		System.out.println("Log (" + entry.id + "): " + length + " bytes, CRC32 " + Long.toHexString(crc.getValue()));
+		return true;
 	}
 
-	private boolean searchForNextUnreadPackage() {
-		chunk_offset = -1;
-		for (int i = 0; i < unread_packages.size() && chunk_offset == -1; i++) {
-			if (unread_packages.get(i) != -1) {
-				chunk_offset = i;
-				chunk_size = unread_packages.size();
+	// link lost: the partial log is kept and continued after reconnect
+	private synchronized void pause() {
+		state = WAIT;
+		if (downloader != null) {
+			try {
+				downloader.close();
+			} catch (IOException e) {
 			}
 		}
+		logger.writeLocalMsg("[mgc] Link lost, log download continues after reconnect");
+	}
 
-		if (chunk_offset == -1)
-			return false;
+	private void stop() {
+		wq.removeTask("LP",timeout);
+		sendEndNotice();
+		state = IDLE;
+		isCollecting.set(false);
+		if(downloader != null) {
+			try {
+				downloader.close();
+			} catch (IOException e) {
+			}
+		}
+	}
 
-		chunk_size = 0;
-		for (int i = chunk_offset; i < unread_packages.size() && unread_packages.get(i) != -1; i++)
-			chunk_size++;
+	// logs are identified by their time and size, ids change when logs are removed
+	private String key(msg_log_entry entry) {
+		return entry.time_utc + "-" + entry.size;
+	}
 
-		return true;
+	private Path partFile(msg_log_entry entry) {
+		return Paths.get(fh.getBasePath(), "log-" + key(entry) + ".part");
 	}
 
-	private int prepareUnreadPackageList(long size) {
-		int count = getPackageNumber(size);
-		unread_packages = new ArrayList<Long>(count);
-		for (long i = 0; i < count + 1; i++)
-			unread_packages.add(i * LOG_PACKAG_DATA_LENGTH);
-		return count;
+	// a downloaded log is only removed when its copy exists or none is wanted
+	private void keepOrDiscard(boolean copied, String name) {
+		if (copied) {
+			LogDownloader.discard(Paths.get(path));
+			return;
+		}
+		failed++;
+		logger.writeLocalMsg("[mgc] " + name + " not copied to Downloads, kept as " + path);
 	}
 
-	private int getPackageNumber(long offset) {
-		return (int) (offset / LOG_PACKAG_DATA_LENGTH);
+	/*
+	 * Copies the log to Downloads if forced or enabled in the preferences. Returns false if the copy
+	 * failed.
+	 */
+	private boolean copyFileToLogDir(String path, String targetname, boolean force) {
+		Path src  = Paths.get(path);
+
+		if(!force && !userPrefs.getBoolean(MAVPreferences.DOWNLOAD, true)) {
+			return true;
+		}
+		Path dest = Paths.get(System.getProperty("user.home"), "Downloads", targetname+".ulg");
+		try {
+			Files.createDirectories(dest.getParent());
+			Files.copy(src, dest, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			System.err.println(e.getLocalizedMessage());
+			return false;
+		}
+		logger.writeLocalMsg("[mgc] "+targetname+" copied to Downloads");
+		return true;
 	}
 
 	private void requestDataPackages(long offset, long len) {
@@ -396,11 +537,15 @@ public class MavlinkLogReader implements IMAVLinkListener {
 	}
 
 	private void requestLogList(int id) {
+		requestLogList(id, id);
+	}
+
+	private void requestLogList(int start, int end) {
 		msg_log_request_list msg = new msg_log_request_list(255, 1);
 		msg.target_component = 1;
 		msg.target_system = 1;
-		msg.start = id;
-		msg.end = id;
+		msg.start = start;
+		msg.end = end;
 		control.sendMAVLinkMessage(msg);
 	}
 
@@ -33,16 +33,28 @@
 
 package com.comino.flight.log.ulog;
 
+import java.io.File;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 import org.mavlink.messages.MAV_CMD;
+import org.mavlink.messages.MAV_RESULT;
 import org.mavlink.messages.MAV_SEVERITY;
+import org.mavlink.messages.lquac.msg_command_ack;
 import org.mavlink.messages.lquac.msg_logging_ack;
 import org.mavlink.messages.lquac.msg_logging_data;
 import org.mavlink.messages.lquac.msg_logging_data_acked;
 
-import com.comino.flight.model.service.AnalysisModelService;
+import com.comino.flight.model.AnalysisDataModelMetaData;
 import com.comino.flight.prefs.MAVPreferences;
+import com.comino.jmavlib.extensions.SPSCQueue;
+import com.comino.jmavlib.extensions.UlogFileWriter;
 import com.comino.jmavlib.extensions.UlogMAVLinkParser;
 import com.comino.mavcom.control.IMAVController;
 import com.comino.mavcom.log.MSPLogger;
@@ -58,15 +70,30 @@ public class ULogFromMAVLinkReader implements IMAVLinkListener {
 	private final int STATE_DATA            			= 2;
 
 	private IMAVController control   = null;
-	private int state = STATE_HEADER_IDLE;
+	private volatile int state = STATE_HEADER_IDLE;
 	private UlogMAVLinkParser parser = null;
 
 	private int header_processed = 0;
-	private int data_processed = 0;
-	private int package_lost=0;
+	private volatile int data_processed = 0;
+	private volatile int package_lost=0;
+
+	// data packets are handed over from the MAVLink receive thread to the parser thread
+	private final SPSCQueue<msg_logging_data> queue = new SPSCQueue<msg_logging_data>(1024);
+	private Thread           parser_thread = null;
+	private volatile boolean parser_stop   = false;
+	private volatile boolean parser_waiting = false;
+	private volatile long    queue_overflows = 0;
 
 	private boolean debug = false;
-	private AnalysisModelService service = null;
+
+	private long start_timeout_ms = 12000;
+	private long stop_timeout_ms  = 2000;
+
+	// pending start/stop requests, completed by the incoming messages or by timeout
+	private volatile CompletableFuture<Boolean> start_request = null;
+	private volatile CompletableFuture<Boolean> stop_request  = null;
+
+	private UlogFileWriter writer = null;
 
 
 	private MSPLogger logger = null;
@@ -86,73 +113,138 @@ public class ULogFromMAVLinkReader implements IMAVLinkListener {
 		this(control, false);
 	}
 
-	public Map<String, Object> getData() {
+	public double[] getData() {
 		return parser.getDataBuffer();
 	}
 
+	public double getValue(String field) {
+		final Integer slot = AnalysisDataModelMetaData.getInstance().getULogFieldSlots().get(field);
+		final double[] data = parser.getDataBuffer();
+		if(slot == null || slot >= data.length)
+			return Double.NaN;
+		return data[slot];
+	}
+
 	public Map<String,String> getFieldList() {
 		return parser.getFieldList();
 	}
 
-	public boolean enableLogging(boolean enable) {
-		
-		this.service = AnalysisModelService.getInstance();
+	/*
+	 * Timeouts for the header to complete after LOGGING_START and for the acknowledge of LOGGING_STOP
+	 */
+	public void setTimeouts(long start_timeout_ms, long stop_timeout_ms) {
+		this.start_timeout_ms = start_timeout_ms;
+		this.stop_timeout_ms  = stop_timeout_ms;
+	}
 
-	//	new Thread(() -> {
+	/*
+	 * Requests ULog streaming without blocking. Completes with true as soon as the header is read and
+	 * data is streamed, with false if ULog streaming is disabled, denied by the vehicle or the header
+	 * is not complete within the timeout. Data is collected via MAVLink streaming meanwhile.
+	 */
+	public CompletableFuture<Boolean> startLogging() {
 
-			state=STATE_HEADER_IDLE;
+		if(state==STATE_DATA)
+			return CompletableFuture.completedFuture(true);
 
-			if(!control.isConnected())
-				return false;
-			
+		final CompletableFuture<Boolean> pending = start_request;
+		if(pending!=null && !pending.isDone())
+			return pending;
 
-			if(!MAVPreferences.getInstance().getBoolean(MAVPreferences.ULOGGER, false) && !debug) {
-				if(enable) {
-					service.setCollectorInterval(AnalysisModelService.DEFAULT_INTERVAL_US);
-					logger.writeLocalMsg("[mgc] Logging via MAVLink streaming",MAV_SEVERITY.MAV_SEVERITY_NOTICE);
-				}
-				return false;
-			}
+		if(!control.isConnected())
+			return CompletableFuture.completedFuture(false);
 
-			if(enable)  {
-				service.setCollectorInterval(AnalysisModelService.MAVHIRES_INTERVAL_US);
-				long tms = System.currentTimeMillis();
-				parser.reset(); header_processed = 0; package_lost = 0;
-				logger.writeLocalMsg("[mgc] Try to start ULog streaming",MAV_SEVERITY.MAV_SEVERITY_DEBUG);
-				control.sendMAVLinkCmd(MAV_CMD.MAV_CMD_LOGGING_START,0);
-
-				while(state!=STATE_DATA ) {
-					// TODO: This is blocking the UI Thread -> resolve
-					try {
-						Thread.sleep(100);
-					} catch (InterruptedException e) {	}
-
-					if((System.currentTimeMillis()-tms)>12000) {
-						service.setCollectorInterval(AnalysisModelService.DEFAULT_INTERVAL_US);
-						control.sendMAVLinkCmd(MAV_CMD.MAV_CMD_LOGGING_STOP);
-						logger.writeLocalMsg("[mgc] Logging via MAVLink streaming",MAV_SEVERITY.MAV_SEVERITY_NOTICE);
-						state=STATE_HEADER_IDLE;
-						return false;
-					}
-				}
+		if(!MAVPreferences.getInstance().getBoolean(MAVPreferences.ULOGGER, false) && !debug) {
+			logger.writeLocalMsg("[mgc] Logging via MAVLink streaming",MAV_SEVERITY.MAV_SEVERITY_NOTICE);
+			return CompletableFuture.completedFuture(false);
+		}
+
+		final CompletableFuture<Boolean> request = new CompletableFuture<Boolean>();
+		state = STATE_HEADER_IDLE;
+		parser.reset(); header_processed = 0; package_lost = 0; queue_overflows = 0;
+		openWriter();
+		start_request = request;
 
+		request.completeOnTimeout(false, start_timeout_ms, TimeUnit.MILLISECONDS).thenAccept((ok) -> {
+			if(start_request != request)
+				return;
+			start_request = null;
+			if(ok) {
 				wq.addSingleTask("LP",5000,() -> {
 					if(state==STATE_DATA && lostPackageRatio() > 0.02f)
 						logger.writeLocalMsg("[mgc] ULog lost package ratio: "+(int)(lostPackageRatio()*100f)+"%",
 								MAV_SEVERITY.MAV_SEVERITY_NOTICE);
 				});
-
-	
 				logger.writeLocalMsg("[mgc] Logging via ULog streaming",MAV_SEVERITY.MAV_SEVERITY_NOTICE);
 			} else {
+				state = STATE_HEADER_IDLE;
+				closeWriter();
 				control.sendMAVLinkCmd(MAV_CMD.MAV_CMD_LOGGING_STOP);
-				if(state==STATE_DATA) {
-					state=STATE_HEADER_IDLE;
-				}
-				return false;
+				logger.writeLocalMsg("[mgc] Logging via MAVLink streaming",MAV_SEVERITY.MAV_SEVERITY_NOTICE);
 			}
-			return true;
-//		}).start();
+		});
+
+		logger.writeLocalMsg("[mgc] Try to start ULog streaming",MAV_SEVERITY.MAV_SEVERITY_DEBUG);
+		control.sendMAVLinkCmd(MAV_CMD.MAV_CMD_LOGGING_START,0);
+		return request;
+	}
+
+	/*
+	 * Stops ULog streaming without blocking, a pending start is cancelled. Completes with true when
+	 * the vehicle acknowledges LOGGING_STOP, with false on timeout.
+	 */
+	public CompletableFuture<Boolean> stopLogging() {
+
+		final CompletableFuture<Boolean> pending = start_request;
+		start_request = null;
+		if(pending!=null)
+			pending.complete(false);
+
+		if(state==STATE_DATA)
+			reportLosses();
+		state = STATE_HEADER_IDLE;
+		stopParser();
+		closeWriter();
+
+		if(!control.isConnected())
+			return CompletableFuture.completedFuture(false);
+
+		final CompletableFuture<Boolean> request = new CompletableFuture<Boolean>();
+		stop_request = request;
+		request.completeOnTimeout(false, stop_timeout_ms, TimeUnit.MILLISECONDS);
+		control.sendMAVLinkCmd(MAV_CMD.MAV_CMD_LOGGING_STOP);
+		return request;
+	}
+
+	/*
+	 * The streamed log is written to Downloads, only if enabled by its own preference
+	 */
+	private void openWriter() {
+		closeWriter();
+		final File dir = new File(System.getProperty("user.home")+"/Downloads");
+		if(!dir.exists() || !MAVPreferences.getInstance().getBoolean(MAVPreferences.ULOG_STREAM_FILE, false))
+			return;
+		final DateFormat formatter = new SimpleDateFormat("yyyyMMdd-HHmmss");
+		try {
+			writer = new UlogFileWriter(new File(dir, "Stream-"+formatter.format(new Date())+".ulg"));
+			parser.setWriter(writer);
+		} catch(IOException e) {
+			System.err.println("ULog stream not written: "+e.getMessage());
+		}
+	}
+
+	private void closeWriter() {
+		final UlogFileWriter w = writer;
+		if(w==null)
+			return;
+		writer = null;
+		parser.setWriter(null);
+		w.close().thenAccept((file) -> {
+			if(file!=null)
+				logger.writeLocalMsg("[mgc] ULog stream written to "+file.getName()+
+						(w.getDropouts() > 0 ? " ("+w.getDropouts()+" dropouts, "+w.getBytesDropped()/1024+"kB lost)" : ""),
+						MAV_SEVERITY.MAV_SEVERITY_INFO);
+		});
 	}
 
 	public boolean isReadingHeader() {
@@ -166,6 +258,20 @@ public class ULogFromMAVLinkReader implements IMAVLinkListener {
 	@Override
 	public  void received(Object o) {
 
+		if( o instanceof msg_command_ack) {
+			final msg_command_ack ack = (msg_command_ack)o;
+			final CompletableFuture<Boolean> start = start_request;
+			final CompletableFuture<Boolean> stop  = stop_request;
+			if(ack.command==MAV_CMD.MAV_CMD_LOGGING_START && start!=null && ack.result!=MAV_RESULT.MAV_RESULT_ACCEPTED
+					&& ack.result!=MAV_RESULT.MAV_RESULT_IN_PROGRESS)
+				start.complete(false);
+			if(ack.command==MAV_CMD.MAV_CMD_LOGGING_STOP && stop!=null) {
+				stop_request = null;
+				stop.complete(ack.result==MAV_RESULT.MAV_RESULT_ACCEPTED);
+			}
+			return;
+		}
+
 		if( o instanceof msg_logging_data_acked) {
 
 			msg_logging_data_acked log = (msg_logging_data_acked)o;
@@ -182,6 +288,10 @@ public class ULogFromMAVLinkReader implements IMAVLinkListener {
 				return;
 			}
 
+			// header not requested or request timed out
+			if(state==STATE_HEADER_IDLE && start_request==null && !debug)
+				return;
+
 			if(header_processed != log.sequence) {
 				return;
 			}
@@ -220,27 +330,85 @@ public class ULogFromMAVLinkReader implements IMAVLinkListener {
 
 			if(state==STATE_HEADER_WAIT) {
 				System.out.println("ULOG build subscriptions");
-				parser.buildSubscriptions();
+				parser.buildSubscriptions(AnalysisDataModelMetaData.getInstance().getULogFieldSlots());
 				data_processed = header_processed;
 				parser.clearBuffer();
+				startParser();
 				state = STATE_DATA;
+				final CompletableFuture<Boolean> start = start_request;
+				if(start!=null)
+					start.complete(true);
 			}
 
 			if(state==STATE_DATA) {
-				if(data_processed != log.sequence) {
-					data_processed = log.sequence;
-					package_lost++;
-					parser.addToBuffer(log, false);
-				} else {
-					parser.addToBuffer(log, true);
-				}
-				parser.parseData(debug);
+				// a dropped packet is detected as lost sequence by the parser thread
+				if(!queue.offer(log))
+					queue_overflows++;
+				if(parser_waiting)
+					LockSupport.unpark(parser_thread);
 			}
+		}
+	}
 
-			if(++data_processed > 65535) {
-				data_processed = 0;
-				package_lost = 0;
+	private void startParser() {
+		final Thread previous = parser_thread;
+		if(previous!=null) {
+			if(!parser_stop)
+				return;
+			// the previous session's thread must not touch the ring anymore
+			try { previous.join(); } catch(InterruptedException e) { }
+		}
+		while(queue.poll()!=null);
+		parser_stop = false;
+		parser_thread = new Thread(() -> {
+			msg_logging_data log;
+			while(!parser_stop) {
+				if((log = queue.poll()) == null) {
+					parser_waiting = true;
+					if(queue.isEmpty() && !parser_stop)
+						LockSupport.park(this);
+					parser_waiting = false;
+					continue;
+				}
+				// packets still queued after logging was stopped are dropped
+				if(state==STATE_DATA)
+					parse(log);
 			}
+		});
+		parser_thread.setName("ULog parser");
+		parser_thread.setDaemon(true);
+		parser_thread.start();
+	}
+
+	private void stopParser() {
+		final Thread t = parser_thread;
+		if(t==null)
+			return;
+		parser_stop = true;
+		LockSupport.unpark(t);
+	}
+
+	private void reportLosses() {
+		final long overflows = getQueueOverflows() + getParserOverflows();
+		if(overflows > 0 || parser.getResyncCount() > 0 || package_lost > 0)
+			logger.writeLocalMsg("[mgc] ULog stream: "+package_lost+" packets lost, "+overflows+" overflows, "
+					+parser.getResyncCount()+" resyncs, "+parser.getDroppedBytes()/1024+"kB dropped",
+					MAV_SEVERITY.MAV_SEVERITY_NOTICE);
+	}
+
+	private void parse(msg_logging_data log) {
+		if(data_processed != log.sequence) {
+			data_processed = log.sequence;
+			package_lost++;
+			parser.addToBuffer(log, false);
+		} else {
+			parser.addToBuffer(log, true);
+		}
+		parser.parseData(debug);
+
+		if(++data_processed > 65535) {
+			data_processed = 0;
+			package_lost = 0;
 		}
 	}
 
@@ -252,6 +420,17 @@ public class ULogFromMAVLinkReader implements IMAVLinkListener {
 		return data_processed;
 	}
 
+	/*
+	 * Packets not handed over because the parser thread did not keep up
+	 */
+	public long getQueueOverflows() {
+		return queue_overflows;
+	}
+
+	public long getParserOverflows() {
+		return parser.getOverflowCount();
+	}
+
 	public float lostPackageRatio() {
 		if(data_processed == 0)
 			return Float.NaN;
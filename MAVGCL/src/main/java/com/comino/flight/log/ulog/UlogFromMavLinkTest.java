@@ -47,13 +47,13 @@ public class UlogFromMavLinkTest implements Runnable {
 		} catch (InterruptedException e1) {
 
 		}
-		 logger.enableLogging(true);
+		 logger.startLogging().join();
 		 float val = 0;
 		while(true) {
 			try {
 				Thread.sleep(10);
 				if(control.isConnected()) {
-        val = (float)logger.getData().get("sensor_combined_0.accelerometer_m_s2[2]");
+        val = (float)logger.getValue("sensor_combined_0.accelerometer_m_s2[2]");
 			//	  System.out.println((int)(logger.lostPackageRatio()*100f)+"%");
                  if(val > -8 || val < -10)
 					System.out.println(val);
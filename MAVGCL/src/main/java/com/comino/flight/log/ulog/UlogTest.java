@@ -70,7 +70,7 @@ public class UlogTest {
 
 		//System.out.println(list.size()+" keyfigures found in log");
 
-		  UlogtoModelConverter converter = new UlogtoModelConverter(reader,modelService.getModelList());
+		  UlogtoModelConverter converter = new UlogtoModelConverter(reader,modelService.getDataStore());
 		  converter.doConversion();
 
 		  reader.close();
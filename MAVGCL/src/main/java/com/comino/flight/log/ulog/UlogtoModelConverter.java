@@ -34,89 +34,229 @@
 package com.comino.flight.log.ulog;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.comino.flight.model.AnalysisDataModel;
 import com.comino.flight.model.AnalysisDataModelMetaData;
+import com.comino.flight.model.AnalysisDataStore;
 import com.comino.flight.model.KeyFigureMetaData;
 import com.comino.flight.model.service.AnalysisModelService;
 import com.comino.flight.observables.StateProperties;
+import com.comino.flight.prefs.MAVPreferences;
 import com.comino.mavcom.model.segment.LogMessage;
 
 import me.drton.jmavlib.log.FormatErrorException;
+import me.drton.jmavlib.log.ulog.DecodedRange;
+import me.drton.jmavlib.log.ulog.FieldBinding;
 import me.drton.jmavlib.log.ulog.ULogReader;
 
 public class UlogtoModelConverter {
 
+	// parallel import for larger logs: messages per decoded range
+	private static final int PARALLEL_MIN_MESSAGES = 200000;
+	private static final int RANGE_MESSAGES        = 50000;
+
 	private ULogReader reader;
-	private List<AnalysisDataModel> list;
+	private AnalysisDataStore store;
 
 	private AnalysisDataModelMetaData meta = AnalysisDataModelMetaData.getInstance();
 	private StateProperties state;
 	
 	private LogMessage msg_old;
 
+	private AnalysisDataModel model;
+	private double[] data;
+	private long tms_slot;
+	private int interval_us;
+
+	// native rate storage: key figures affected by a value slot
+	private KeyFigureMetaData[][] slot_kfs;
+	private long[] kf_stamp;
+	private long   msg_count;
+
 
-	public UlogtoModelConverter(ULogReader reader, List<AnalysisDataModel> list) {
+	public UlogtoModelConverter(ULogReader reader, AnalysisDataStore store) {
 		this.reader = reader;
-		this.list = list;
+		this.store = store;
 		this.state = StateProperties.getInstance();
 	}
 
 
 	public void doConversion() throws FormatErrorException {
+		final int workers = Runtime.getRuntime().availableProcessors() - 1;
+		doConversion(workers > 1 && reader.getDataMessageCount() > PARALLEL_MIN_MESSAGES ? workers : 0);
+	}
+
+	/*
+	 * workers = 0: Decode sequentially in this thread
+	 * workers > 0: Decode ranges of the message index concurrently and merge them in file order
+	 */
+	public void doConversion(int workers) throws FormatErrorException {
 
-		long tms_slot = 0; long tms = 0; boolean errorFlag = false;
+		long tms = 0; boolean errorFlag = false;
 		
+		data = new double[meta.getULogSlotCount()];
+		Arrays.fill(data, Double.NaN);
+		model = new AnalysisDataModel();
+		tms_slot = 0;
+
+		reader.bind(meta.getULogFieldSlots());
 
-		Map<String,Object> data = new HashMap<String,Object>();
+		store.clear();
 
-		list.clear();
+		if(MAVPreferences.getInstance().getBoolean(MAVPreferences.ULOG_NATIVE, true))
+			prepareNative();
+		else
+			slot_kfs = null;
 		
-		int interval_us = AnalysisModelService.getInstance().setCollectorInterval(AnalysisModelService.HISPEED_INTERVAL_US);
+		interval_us = AnalysisModelService.getInstance().setCollectorInterval(AnalysisModelService.HISPEED_INTERVAL_US);
 		
 		try {
 
 			System.out.println(reader.getStartMicroseconds()+"/"+interval_us);
 
-			while(tms < reader.getSizeMicroseconds()) {
-				tms = reader.readUpdate(data) - reader.getStartMicroseconds();
-				if(tms > tms_slot) {
-					state.getProgressProperty().set(tms*1.0f/reader.getSizeMicroseconds());
-					AnalysisDataModel model = new AnalysisDataModel();
-					model.tms = tms;
-					tms_slot += interval_us;
-					model.setValues(KeyFigureMetaData.ULG_SOURCE, data, meta);
-					model.calculateVirtualKeyFigures(meta);
-					list.add(model);
+			if(workers > 0) {
+				System.out.println("ULog import of "+reader.getDataMessageCount()+" messages with "+workers+" workers");
+				convertParallel(workers);
+			} else {
+				while(tms < reader.getSizeMicroseconds()) {
+					tms = reader.readUpdate(data) - reader.getStartMicroseconds();
+					appendNative(reader.getLastBinding(), tms);
+					update(tms);
 				}
 			}
 
 			reader.loggedMessages.forEach(s -> {
 				LogMessage msg = new LogMessage(s.message,s.logLevel & 0x00FF - 56);
 				msg.tms = s.timestamp - reader.getStartMicroseconds();
-				int i = (int)((s.timestamp - reader.getStartMicroseconds())/interval_us);
-				if(i > 0 && (msg_old == null || ( !msg.text.equals(msg_old.text) && (msg.tms - msg_old.tms) > 5 ))) {
-					AnalysisDataModel model = list.get(i);
-					model.msg = msg;
+				// samples are not on a fixed grid, messages are placed at the sample recorded before them
+				int i = store.indexOfTime(msg.tms / 1e6, Math.max(1, interval_us / 1000));
+				if(i > 0 && i < store.size() && (msg_old == null || ( !msg.text.equals(msg_old.text) && (msg.tms - msg_old.tms) > 5 ))) {
+					store.setMessage(i, msg);
 					msg_old = msg;
 				}
 			});
 
 			state.getLogULOGProperty().set(true);
 			state.getProgressProperty().set(StateProperties.NO_PROGRESS);
-			System.out.println(list.size()+" entries read. Timespan is "+tms_slot/1e6f+" sec");
+			System.out.println(store.size()+" entries read. Timespan is "+tms_slot/1e6f+" sec");
+			if(slot_kfs!=null)
+				System.out.println(store.getNativeCount()+" values at native rate instead of "+
+						(long)store.size() * store.getNativeTopicCount()+" per sample");
 
 		} catch(IOException e) {
 			if(errorFlag)
 				System.out.println("WARNING: Some of the key-figures were not available.");
-			System.out.println(list.size()+" entries read. Timespan is "+tms_slot/1e6f+" sec");
+			System.out.println(store.size()+" entries read. Timespan is "+tms_slot/1e6f+" sec");
+
+		}
+	}
+
+	private void convertParallel(int workers) throws IOException {
+		final int count  = reader.getDataMessageCount();
+		final int ranges = (count + RANGE_MESSAGES - 1) / RANGE_MESSAGES;
+		final ExecutorService pool = Executors.newFixedThreadPool(workers, r -> {
+			Thread t = new Thread(r);
+			t.setName("ULog import worker");
+			t.setDaemon(true);
+			return t;
+		});
+
+		// at most two ranges per worker are held in memory
+		final Deque<Future<DecodedRange>> pending = new ArrayDeque<Future<DecodedRange>>();
+		int next = 0; long tms = 0;
+
+		try {
+			for(int i = 0; i < ranges && tms < reader.getSizeMicroseconds(); i++) {
+				while(next < ranges && pending.size() < workers * 2) {
+					final int from = next * RANGE_MESSAGES;
+					final int to   = Math.min(count, from + RANGE_MESSAGES);
+					pending.add(pool.submit(() -> reader.decodeRange(from, to)));
+					next++;
+				}
+				final DecodedRange range = pending.poll().get();
+				while(tms < reader.getSizeMicroseconds() && range.next(data)) {
+					tms = range.timestamp() - reader.getStartMicroseconds();
+					appendNative(range.binding(), tms);
+					update(tms);
+				}
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof IOException)
+				throw (IOException)e.getCause();
+			throw new IOException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
 
+	/*
+	 * Key figures with a ULog source are stored at the rate of their topic. Each one is registered
+	 * with its value before the first message, the sample rows then only carry the timestamps, the
+	 * virtual key figures and the events.
+	 */
+	@SuppressWarnings("unchecked")
+	private void prepareNative() {
+		final List<KeyFigureMetaData>[] map = new List[data.length];
+		for(KeyFigureMetaData kf : meta.getKeyFigures()) {
+			if(kf.isVirtual || !kf.hasSource(KeyFigureMetaData.ULG_SOURCE))
+				continue;
+			final int[] slots = kf.sources.get(KeyFigureMetaData.ULG_SOURCE).slots;
+			if(slots==null)
+				continue;
+			for(int slot : slots) {
+				if(slot >= map.length)
+					continue;
+				if(map[slot]==null)
+					map[slot] = new ArrayList<KeyFigureMetaData>();
+				if(!map[slot].contains(kf))
+					map[slot].add(kf);
+			}
+			store.appendNative(kf.ordinal, Long.MIN_VALUE, kf.getValueFromULogModel(data));
 		}
+		slot_kfs = new KeyFigureMetaData[map.length][];
+		for(int i = 0; i < map.length; i++)
+			if(map[i]!=null)
+				slot_kfs[i] = map[i].toArray(new KeyFigureMetaData[map[i].size()]);
+		kf_stamp  = new long[meta.getOrdinalCount()];
+		msg_count = 0;
 	}
 
+	private void appendNative(FieldBinding binding, long tms) {
+		if(slot_kfs==null || binding==null)
+			return;
+		msg_count++;
+		for(int slot : binding.getSlots()) {
+			if(slot >= slot_kfs.length || slot_kfs[slot]==null)
+				continue;
+			for(KeyFigureMetaData kf : slot_kfs[slot]) {
+				if(kf_stamp[kf.ordinal] == msg_count)
+					continue;
+				kf_stamp[kf.ordinal] = msg_count;
+				store.appendNative(kf.ordinal, tms, kf.getValueFromULogModel(data));
+			}
+		}
+	}
 
+	private void update(long tms) {
+		if(tms > tms_slot) {
+			state.getProgressProperty().set(tms*1.0f/reader.getSizeMicroseconds());
+			model.tms = tms;
+			tms_slot += interval_us;
+			model.setValues(KeyFigureMetaData.ULG_SOURCE, data, meta);
+			model.calculateVirtualKeyFigures(meta);
+			store.add(model);
+		}
+	}
 
 }
@@ -34,9 +34,8 @@
 package com.comino.flight.model;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 import com.comino.mavcom.model.DataModel;
 import com.comino.mavcom.model.segment.LogMessage;
@@ -44,30 +43,32 @@ import com.comino.mavcom.model.segment.Status;
 
 public class AnalysisDataModel implements Cloneable {
 
+	private static final AnalysisDataModelMetaData meta = AnalysisDataModelMetaData.getInstance();
+
 	public long             tms  = 0;
 	public LogMessage       msg  = null;
 	public Status         status = null;
 
 	public float    dt_sec = 0;
 
-	private volatile Map<Integer,Double> data = null;
+	// Values indexed by key figure ordinal, NaN means not available
+	private volatile double[] data = null;
 	private static List<Long> grid = new ArrayList<Long>();
 
 	public AnalysisDataModel() {
-		this.data = new HashMap<Integer,Double>();
+		this.data = createSlots(meta.getOrdinalCount());
 //		this.grid = new ArrayList<Long>();
 	}
 
-	private AnalysisDataModel(Map<Integer,Double> d, List<Long> grid) {
-		this.data = new HashMap<Integer,Double>();
-		this.data.putAll(d);
-//		this.grid = new ArrayList<Long>();
-//		this.grid.addAll(grid);
+	// Used by views which provide their own slots
+	AnalysisDataModel(double[] data) {
+		this.data = data;
 	}
 
 
 	public Object clone() {
-	   AnalysisDataModel d = new AnalysisDataModel(data, grid);
+	   AnalysisDataModel d = new AnalysisDataModel(createSlots(size()));
+		d.set(this);
 		d.tms = tms;
 		if(msg!=null)
 			d.msg = msg.clone();
@@ -77,106 +78,130 @@ public class AnalysisDataModel implements Cloneable {
 	}
 
 	public void set(AnalysisDataModel model) {
-		this.data.clear();
-		this.data.putAll(model.data);
+		final int size = Math.max(size(), model.size());
+		for(int i = 0; i < size; i++)
+			put(i, model.get(i));
 //		this.grid.clear();
 //		this.grid.addAll(model.grid);
 	}
 
 	public void clear()  {
-		data.clear();
+		for(int i = 0; i < size(); i++)
+			put(i, Double.NaN);
 		grid.clear();
 		tms = 0;
 		msg = null;
 		status = null;
 	}
-	
+
 	public List<Long> getGrid() {
 		return grid;
 	}
 
 	public double getValue(String kf) {
-		int hash = kf.toLowerCase().hashCode();
-		if(data!=null && data.containsKey(hash) && data.get(hash)!=null)
-			return data.get(hash);
-		else
-			return 0;
+		return get(meta.getOrdinal(kf));
+	}
+
+	/*
+	 * Value of the key figure or fallback if it is not available, e.g. for transforms
+	 */
+	public double getValue(String kf, double fallback) {
+		final double v = getValue(kf);
+		return Double.isNaN(v) ? fallback : v;
 	}
 
 	public double getValue(KeyFigureMetaData m) {
-		if(data != null && m!=null && data.containsKey(m.hash) && data.get(m.hash)!=null)
-			return data.get(m.hash);
-		else
-			return Float.NaN;
+		if(m==null)
+			return Double.NaN;
+		return get(meta.getOrdinal(m));
 	}
-	
+
 	public boolean isValid(KeyFigureMetaData m) {
-		if(data != null && m!=null && data.containsKey(m.hash) && data.get(m.hash)!=null) {
-			return Double.isFinite(data.get(m.hash));
-		}
-		else
-			return false;
+		return Double.isFinite(getValue(m));
 	}
 
 	public void setValue(String kf,double value) {
-		if(data!=null)
-		  data.put(kf.toLowerCase().hashCode(), value);
+		put(meta.getOrdinal(kf),value);
 	}
 
 	public void reset(AnalysisDataModelMetaData md) {
-		if(data==null)
-			return;
-		md.getKeyFigureMap().forEach((i,e) -> {
-			data.put(e.hash,Double.valueOf(0));
-		});
+		final List<KeyFigureMetaData> kfs = md.getKeyFigures();
+		for(int i = 0; i < kfs.size(); i++)
+			put(kfs.get(i).ordinal, 0);
 	}
 
-	private Double val = null;
-
-	
-
 	public  void  setValues(int type, Object source, AnalysisDataModelMetaData md ) {
+		double val; KeyFigureMetaData e;
 
 		synchronized(this) {
-			md.getKeyFigureMap().forEach((i,e) -> {
-				val = Double.NaN;
+			final List<KeyFigureMetaData> kfs = md.getKeyFigures();
+			for(int i = 0; i < kfs.size(); i++) {
+				e = kfs.get(i);
 				try {
-					if(!e.isVirtual) {
+					if(e.isVirtual || !e.hasSource(type))
+						continue;
 
-						if(!e.hasSource(type))
-							return;
+					val = Double.NaN;
+					if( type == KeyFigureMetaData.MSP_SOURCE)
+						val = e.getValueFromMSPModel((DataModel)source);
+//					if( type == KeyFigureMetaData.PX4_SOURCE)
+//						val = e.getValueFromPX4Model((Map<String,Object>)source);
+					if( type == KeyFigureMetaData.ULG_SOURCE)
+						val = e.getValueFromULogModel((double[])source);
+//					if( type == KeyFigureMetaData.MAV_SOURCE)
+//						val = e.getValueFromMAVLinkMessage(source);
 
+					put(e.ordinal,val);
 
-						if( type == KeyFigureMetaData.MSP_SOURCE)
-							val = e.getValueFromMSPModel((DataModel)source);
-//						if( type == KeyFigureMetaData.PX4_SOURCE)
-//							val = e.getValueFromPX4Model((Map<String,Object>)source);
-						if( type == KeyFigureMetaData.ULG_SOURCE)
-							val = e.getValueFromULogModel((Map<String,Object>)source);
-//						if( type == KeyFigureMetaData.MAV_SOURCE)
-//							val = e.getValueFromMAVLinkMessage(source);
-
-						if(val!=null)
-							data.put(e.hash,val);
-					}
 				} catch (Exception e1) {
 					e1.printStackTrace();
-					//				data.put(e.hash, Double.NaN);
 				}
-			});
+			}
 		}
 	}
 
 	public void calculateVirtualKeyFigures(AnalysisDataModelMetaData md) {
-		md.getVirtualKeyFigureMap().forEach((i,e) -> {
+		final List<KeyFigureMetaData> kfs = md.getVirtualKeyFigures();
+		for(int i = 0; i < kfs.size(); i++) {
+			final KeyFigureMetaData e = kfs.get(i);
 			try {
-				if(e.isVirtual) {
-					data.put(e.hash,e.calculateVirtualValue(this));
-				}
+				put(e.ordinal,e.calculateVirtualValue(this));
 			} catch (Exception e1) {
-				data.put(e.hash, Double.NaN);
+				put(e.ordinal, Double.NaN);
 			}
-		});
+		}
+	}
+
+	/*
+	 * Slot access by key figure ordinal; overridden by views on other storage
+	 */
+
+	protected int size() {
+		return data.length;
+	}
+
+	protected double get(int ordinal) {
+		final double[] d = data;
+		if(ordinal < 0 || ordinal >= d.length)
+			return Double.NaN;
+		return d[ordinal];
+	}
+
+	protected void put(int ordinal, double value) {
+		if(ordinal < 0)
+			return;
+		if(ordinal >= data.length) {
+			final int length = data.length;
+			data = Arrays.copyOf(data, Math.max(ordinal+1, meta.getOrdinalCount()));
+			Arrays.fill(data, length, data.length, Double.NaN);
+		}
+		data[ordinal] = value;
+	}
+
+	private static double[] createSlots(int size) {
+		final double[] d = new double[size];
+		Arrays.fill(d, Double.NaN);
+		return d;
 	}
 
 }
@@ -35,12 +35,14 @@ package com.comino.flight.model;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -50,6 +52,8 @@ import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+import com.comino.flight.model.KeyFigureMetaData.DataSource;
+
 public class AnalysisDataModelMetaData extends Observable {
 
 	private static AnalysisDataModelMetaData instance = null;
@@ -58,6 +62,15 @@ public class AnalysisDataModelMetaData extends Observable {
 	private Map<Integer,KeyFigureMetaData>        virt   = null;
 	private Map<String,List<KeyFigureMetaData>> groups   = null;
 	private List<KeyFigureMetaData>     sortedMetaList   = null;
+	private List<KeyFigureMetaData>        virtualList   = null;
+
+	// Ordinals are never released, so they remain stable across reloads
+	private final Map<Integer,Integer>         ordinals  = new ConcurrentHashMap<Integer,Integer>(500);
+	private final Map<String,Integer>           handles  = new ConcurrentHashMap<String,Integer>(500);
+	private volatile int[]                  ordinalHash  = new int[0];
+
+	// ULog fields used by key figures and their value slot, never released as well
+	private final Map<String,Integer>          ulogSlots = new ConcurrentHashMap<String,Integer>(300);
 
 	private int count = 0;
 	private String version = "0.0";
@@ -73,6 +86,7 @@ public class AnalysisDataModelMetaData extends Observable {
 		this.meta       = new HashMap<Integer,KeyFigureMetaData>(500);
 		this.virt       = new HashMap<Integer,KeyFigureMetaData>(500);
 		this.groups     = new HashMap<String,List<KeyFigureMetaData>>(500);
+		this.virtualList = new ArrayList<KeyFigureMetaData>();
 
 		loadModelMetaData(null);
 	}
@@ -81,6 +95,7 @@ public class AnalysisDataModelMetaData extends Observable {
 
 		InputStream is = stream;
 		meta.clear(); groups.clear(); virt.clear();
+		virtualList = new ArrayList<KeyFigureMetaData>();
 
 		if(is!=null) {
 			buildDocument(is);
@@ -122,12 +137,79 @@ public class AnalysisDataModelMetaData extends Observable {
 		return virt;
 	}
 
+	public List<KeyFigureMetaData> getVirtualKeyFigures() {
+		return virtualList;
+	}
+
+	public int getOrdinalCount() {
+		return ordinalHash.length;
+	}
+
+	public int getHash(int ordinal) {
+		final int[] h = ordinalHash;
+		if(ordinal < 0 || ordinal >= h.length)
+			return 0;
+		return h[ordinal];
+	}
+
+	public int getOrdinal(KeyFigureMetaData m) {
+		if(m.ordinal < 0 && m.hash != 0)
+			m.ordinal = getOrdinal(m.hash);
+		return m.ordinal;
+	}
+
+	public int getOrdinal(String kf) {
+		Integer ordinal = handles.get(kf);
+		if(ordinal == null) {
+			ordinal = getOrdinal(kf.toLowerCase().hashCode());
+			handles.put(kf, ordinal);
+		}
+		return ordinal;
+	}
+
+	public int getOrdinal(int hash) {
+		final Integer ordinal = ordinals.get(hash);
+		if(ordinal != null)
+			return ordinal;
+		return register(hash);
+	}
+
+	private synchronized int register(int hash) {
+		Integer ordinal = ordinals.get(hash);
+		if(ordinal == null) {
+			final int[] h = Arrays.copyOf(ordinalHash, ordinalHash.length+1);
+			ordinal = h.length - 1;
+			h[ordinal] = hash;
+			ordinalHash = h;
+			ordinals.put(hash, ordinal);
+		}
+		return ordinal;
+	}
+
+	public Map<String,Integer> getULogFieldSlots() {
+		return ulogSlots;
+	}
+
+	public int getULogSlotCount() {
+		return ulogSlots.size();
+	}
+
+	public synchronized int getULogSlot(String field) {
+		Integer slot = ulogSlots.get(field);
+		if(slot == null) {
+			slot = ulogSlots.size();
+			ulogSlots.put(field, slot);
+		}
+		return slot;
+	}
+
 	public Map<String,List<KeyFigureMetaData>> getGroupMap() {
 		return groups;
 	}
 
 
 	public void add(KeyFigureMetaData m) {
+		m.ordinal = getOrdinal(m.hash);
 		this.meta.put(m.hash, m);
 	}
 
@@ -199,13 +281,31 @@ public class AnalysisDataModelMetaData extends Observable {
 	private void buildKeyFigureList(NodeList keyfigures) {
 		for (count = 0; count < keyfigures.getLength(); count++) {
 			KeyFigureMetaData keyfigure = buildKeyFigure(keyfigures.item(count));
+			keyfigure.ordinal = getOrdinal(keyfigure.hash);
+			bindULogSource(keyfigure);
 			meta.put(keyfigure.hash,keyfigure);
-			if(keyfigure.isVirtual)
+			if(keyfigure.isVirtual) {
 				virt.put(keyfigure.hash,keyfigure);
+				virtualList.add(keyfigure);
+			}
 		}
 		System.out.println(description+" (version "+version+") with "+count+" keyfigures ");
 	}
 
+	private void bindULogSource(KeyFigureMetaData keyfigure) {
+		DataSource source = keyfigure.sources.get(KeyFigureMetaData.ULG_SOURCE);
+		if(source==null)
+			return;
+		if(source.field!=null) {
+			source.slots = new int[] { getULogSlot(source.field) };
+		} else if(source.converter!=null && source.converter.getULogFields()!=null) {
+			String[] fields = source.converter.getULogFields();
+			source.slots = new int[fields.length];
+			for(int i=0;i<fields.length;i++)
+				source.slots[i] = getULogSlot(fields[i]);
+		}
+	}
+
 	private KeyFigureMetaData buildKeyFigure(Node kf_node) {
 		KeyFigureMetaData keyfigure = new KeyFigureMetaData(
 				kf_node.getAttributes().getNamedItem("key" ).getTextContent(),
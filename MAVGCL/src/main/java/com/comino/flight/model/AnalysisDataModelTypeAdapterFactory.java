@@ -0,0 +1,137 @@
+/****************************************************************************
+ *
+ *   Copyright (c) 2017,2021 Eike Mansfeld ecm@gmx.de. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ ****************************************************************************/
+
+package com.comino.flight.model;
+
+import java.io.IOException;
+
+import com.comino.mavcom.model.segment.LogMessage;
+import com.comino.mavcom.model.segment.Status;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/*
+ * Keeps the .mgc JSON layout of AnalysisDataModel: values are written as a map keyed by
+ * key figure hash and mapped to ordinals when read.
+ */
+
+public class AnalysisDataModelTypeAdapterFactory implements TypeAdapterFactory {
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+		if(!AnalysisDataModel.class.isAssignableFrom(type.getRawType()))
+			return null;
+		return (TypeAdapter<T>) new ModelAdapter(gson);
+	}
+
+	private static class ModelAdapter extends TypeAdapter<AnalysisDataModel> {
+
+		private final AnalysisDataModelMetaData meta = AnalysisDataModelMetaData.getInstance();
+
+		private final TypeAdapter<LogMessage> msgAdapter;
+		private final TypeAdapter<Status>  statusAdapter;
+
+		public ModelAdapter(Gson gson) {
+			this.msgAdapter    = gson.getAdapter(LogMessage.class);
+			this.statusAdapter = gson.getAdapter(Status.class);
+		}
+
+		@Override
+		public void write(JsonWriter out, AnalysisDataModel m) throws IOException {
+			if(m==null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			out.name("tms").value(m.tms);
+			if(m.msg!=null) {
+				out.name("msg"); msgAdapter.write(out, m.msg);
+			}
+			if(m.status!=null) {
+				out.name("status"); statusAdapter.write(out, m.status);
+			}
+			out.name("dt_sec").value(m.dt_sec);
+			out.name("data").beginObject();
+			for(int i = 0; i < m.size(); i++) {
+				final double v = m.get(i);
+				if(!Double.isNaN(v))
+					out.name(String.valueOf(meta.getHash(i))).value(v);
+			}
+			out.endObject();
+			out.endObject();
+		}
+
+		@Override
+		public AnalysisDataModel read(JsonReader in) throws IOException {
+			if(in.peek()==JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+			final AnalysisDataModel m = new AnalysisDataModel();
+			in.beginObject();
+			while(in.hasNext()) {
+				switch(in.nextName()) {
+				case "tms":
+					m.tms = in.nextLong(); break;
+				case "msg":
+					m.msg = msgAdapter.read(in); break;
+				case "status":
+					m.status = statusAdapter.read(in); break;
+				case "dt_sec":
+					m.dt_sec = (float)in.nextDouble(); break;
+				case "data":
+					in.beginObject();
+					while(in.hasNext()) {
+						final int ordinal = meta.getOrdinal(Integer.parseInt(in.nextName()));
+						if(in.peek()==JsonToken.NULL) {
+							in.nextNull(); continue;
+						}
+						m.put(ordinal, in.nextDouble());
+					}
+					in.endObject();
+					break;
+				default:
+					in.skipValue();
+				}
+			}
+			in.endObject();
+			return m;
+		}
+	}
+}
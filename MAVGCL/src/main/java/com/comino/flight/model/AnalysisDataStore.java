@@ -0,0 +1,613 @@
+/****************************************************************************
+ *
+ *   Copyright (c) 2017,2021 Eike Mansfeld ecm@gmx.de. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ ****************************************************************************/
+
+package com.comino.flight.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+import java.util.function.ObjIntConsumer;
+
+import com.comino.mavcom.model.segment.LogMessage;
+import com.comino.mavcom.model.segment.Status;
+
+/*
+ * Columnar sample store: one chunked double column per key figure ordinal plus a timestamp column,
+ * indexed by sample number. Columns are allocated when a key figure is first written with a value.
+ * Key figures imported at the native rate of their source topic are kept in a TopicColumn instead and
+ * sampled at the timestamp of the requested row.
+ * Log messages, status and changes of the mode key figures are kept in a sparse event track.
+ * getModelList() provides a List<AnalysisDataModel> view on the samples for existing consumers.
+ */
+
+public class AnalysisDataStore {
+
+	private static final int CHUNK_SHIFT = 12;
+	private static final int CHUNK_SIZE  = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK  = CHUNK_SIZE - 1;
+
+	private final AnalysisDataModelMetaData meta = AnalysisDataModelMetaData.getInstance();
+
+	// key figures used for mode annotations, a change of value is recorded as MODE event
+	private static final String[] MODE_KEYFIGURES = { "NAVSTATE", "EKFFLG", "RGPSFIX", "FLAGLPOS", "FLAGGPOS",
+			"SLAMFLG", "VISIONFLAGS", "CTLFLGH_BARO", "CTLFLGH_GPS", "CTLFLGH_RNG", "CTLFLGH_EV" };
+
+	private final EventTrack                 events      = new EventTrack();
+	private final int[]                      modeOrdinals;
+	private final double[]                   modeValues;
+	private LogMessage                       lastMessage = null;
+
+	private volatile double[][][]            columns     = new double[0][][];
+	private volatile long[][]                tms         = new long[0][];
+	private volatile TopicColumn[]           topics      = new TopicColumn[0];
+
+	// built on the first range query of a key figure, then updated with each sample
+	private LODPyramid[]                     pyramids    = new LODPyramid[0];
+
+	private volatile int size = 0;
+
+	private final List<AnalysisDataModel> view = new ModelListView();
+
+	public AnalysisDataStore() {
+		modeOrdinals = new int[MODE_KEYFIGURES.length];
+		for(int i = 0; i < modeOrdinals.length; i++)
+			modeOrdinals[i] = meta.getOrdinal(MODE_KEYFIGURES[i]);
+		modeValues = new double[modeOrdinals.length];
+		Arrays.fill(modeValues, Double.NaN);
+	}
+
+	public EventTrack getEvents() {
+		return events;
+	}
+
+	public List<AnalysisDataModel> getModelList() {
+		return view;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public long getTms(int index) {
+		checkIndex(index);
+		return tms[index >> CHUNK_SHIFT][index & CHUNK_MASK];
+	}
+
+	/*
+	 * True if the samples carry increasing timestamps. Stores without (e.g. old files) are mapped on
+	 * the nominal collector grid.
+	 */
+	public boolean hasTimeIndex() {
+		final int n = size;
+		return n > 1 && tmsAt(n-1) > tmsAt(0);
+	}
+
+	/*
+	 * Time of a sample in seconds. Outside of the recorded range the time is extended on the nominal
+	 * grid of interval_ms.
+	 */
+	public double getTime(int index, int interval_ms) {
+		final int n = size;
+		if(n < 2 || tmsAt(n-1) <= tmsAt(0))
+			return index * interval_ms / 1000.0;
+		if(index < 0)
+			return tmsAt(0) / 1e6 + index * interval_ms / 1000.0;
+		if(index >= n)
+			return tmsAt(n-1) / 1e6 + (index - n + 1) * interval_ms / 1000.0;
+		return tmsAt(index) / 1e6;
+	}
+
+	/*
+	 * Index of the last sample at or before time (seconds), extended on the nominal grid outside of
+	 * the recorded range. Interpolation search on the timestamps, alternating with bisection steps to
+	 * stay O(log n) for irregular spacing.
+	 */
+	public int indexOfTime(double time, int interval_ms) {
+		final int n = size;
+		if(n < 2 || tmsAt(n-1) <= tmsAt(0))
+			return (int)Math.floor(time * 1000.0 / interval_ms + 1e-9);
+
+		final long t = Math.round(time * 1e6);
+		long t_lo = tmsAt(0), t_hi = tmsAt(n-1);
+		if(t < t_lo)
+			return (int)Math.floor((t - t_lo) / (interval_ms * 1000.0));
+		if(t >= t_hi)
+			return n - 1 + (int)((t - t_hi) / (interval_ms * 1000L));
+
+		// tms[lo] <= t < tms[hi]
+		int lo = 0, hi = n - 1; boolean bisect = false;
+		while(hi - lo > 1) {
+			int mid = bisect ? (lo + hi) >>> 1 : lo + (int)((double)(t - t_lo) / (t_hi - t_lo) * (hi - lo));
+			mid = Math.max(lo + 1, Math.min(hi - 1, mid));
+			final long t_mid = tmsAt(mid);
+			if(t_mid <= t) {
+				lo = mid; t_lo = t_mid;
+			} else {
+				hi = mid; t_hi = t_mid;
+			}
+			bisect = !bisect;
+		}
+		return lo;
+	}
+
+	public double getValue(int index, KeyFigureMetaData kf) {
+		if(kf==null)
+			return Double.NaN;
+		checkIndex(index);
+		return get(index, meta.getOrdinal(kf));
+	}
+
+	/*
+	 * Min, max, mean, count and std of the key figure in the sample range [from, to) into a result
+	 * of LODPyramid.RESULT_SIZE, false if there are no valid values
+	 */
+	public boolean aggregate(KeyFigureMetaData kf, int from, int to, double[] result) {
+		return aggregate(kf == null ? -1 : meta.getOrdinal(kf), from, to, result);
+	}
+
+	public synchronized boolean aggregate(int ordinal, int from, int to, double[] result) {
+		if(!hasColumn(ordinal)) {
+			Arrays.fill(result, Double.NaN);
+			result[LODPyramid.COUNT] = 0;
+			return false;
+		}
+		if(ordinal >= pyramids.length)
+			pyramids = Arrays.copyOf(pyramids, Math.max(ordinal + 1, meta.getOrdinalCount()));
+		LODPyramid pyramid = pyramids[ordinal];
+		if(pyramid == null) {
+			pyramid = new LODPyramid();
+			for(int i = 0; i < size; i++)
+				pyramid.append(get(i, ordinal));
+			pyramids[ordinal] = pyramid;
+		}
+		return pyramid.aggregate((i) -> get(i, ordinal), from, to, result);
+	}
+
+	public boolean hasColumn(int ordinal) {
+		final double[][][] cols = columns;
+		if(ordinal >= 0 && ordinal < cols.length && cols[ordinal] != null)
+			return true;
+		final TopicColumn topic = getTopic(ordinal);
+		return topic != null && topic.hasValues();
+	}
+
+	/*
+	 * Native rate column of a key figure ordinal, null if the key figure is stored per sample
+	 */
+	public TopicColumn getTopic(int ordinal) {
+		final TopicColumn[] t = topics;
+		return ordinal >= 0 && ordinal < t.length ? t[ordinal] : null;
+	}
+
+	/*
+	 * Appends a value of a key figure at the native rate of its source. From then on, values of
+	 * this ordinal passed with add() are ignored.
+	 */
+	public synchronized void appendNative(int ordinal, long tms_us, double value) {
+		if(ordinal < 0)
+			return;
+		TopicColumn topic = getTopic(ordinal);
+		boolean changed = false;
+		if(topic == null) {
+			final TopicColumn[] t = Arrays.copyOf(topics, Math.max(topics.length, Math.max(ordinal+1, meta.getOrdinalCount())));
+			topic = t[ordinal] = new TopicColumn();
+			topics = t;
+			changed = true;
+		}
+		topic.append(tms_us, value);
+		// samples at or after tms_us now read the new value, a pyramid built over them is stale
+		if((changed || (size > 0 && tmsAt(size-1) >= tms_us)) && ordinal < pyramids.length)
+			pyramids[ordinal] = null;
+	}
+
+	/*
+	 * Value of a key figure at tms_us, linear interpolation between native rate samples. Key figures
+	 * stored per sample return the value of the last sample at or before tms_us.
+	 */
+	public double interpolate(KeyFigureMetaData kf, long tms_us) {
+		if(kf==null)
+			return Double.NaN;
+		final int ordinal = meta.getOrdinal(kf);
+		final TopicColumn topic = getTopic(ordinal);
+		if(topic != null)
+			return topic.interpolate(tms_us);
+		if(!hasTimeIndex())
+			return Double.NaN;
+		final int index = indexOfTime(tms_us / 1e6, 1);
+		return index < 0 || index >= size ? Double.NaN : get(index, ordinal);
+	}
+
+	public int getNativeTopicCount() {
+		int count = 0;
+		for(TopicColumn topic : topics)
+			if(topic != null)
+				count++;
+		return count;
+	}
+
+	/*
+	 * Number of stored native rate values
+	 */
+	public long getNativeCount() {
+		long count = 0;
+		for(TopicColumn topic : topics)
+			if(topic != null)
+				count += topic.size();
+		return count;
+	}
+
+	public LogMessage getMessage(int index) {
+		return (LogMessage)events.get(index, EventTrack.MESSAGE);
+	}
+
+	public void setMessage(int index, LogMessage msg) {
+		checkIndex(index);
+		events.set(index, EventTrack.MESSAGE, msg);
+	}
+
+	/*
+	 * Last message in [from, to), null if none
+	 */
+	public LogMessage getLastMessage(int from, int to) {
+		return (LogMessage)events.last(EventTrack.MESSAGE, from, to);
+	}
+
+	public void forEachMessage(int from, int to, ObjIntConsumer<LogMessage> consumer) {
+		events.forEach(EventTrack.MESSAGE, from, to, consumer);
+	}
+
+	/*
+	 * Sample indices in [from, to) at which a mode key figure changed
+	 */
+	public void forEachModeChange(int from, int to, IntConsumer consumer) {
+		events.forEach(EventTrack.MODE, from, to, (o,i) -> consumer.accept(i));
+	}
+
+	public Map<Integer,LogMessage> getMessageMap() {
+		final Map<Integer,LogMessage> m = new TreeMap<Integer,LogMessage>();
+		events.forEach(EventTrack.MESSAGE, 0, Integer.MAX_VALUE, (LogMessage e, int i) -> m.put(i, e));
+		return m;
+	}
+
+	public Status getStatus(int index) {
+		return (Status)events.get(index, EventTrack.STATUS);
+	}
+
+	public void setStatus(int index, Status s) {
+		checkIndex(index);
+		events.set(index, EventTrack.STATUS, s);
+	}
+
+	public Map<Integer,Status> getStatusMap() {
+		final Map<Integer,Status> m = new TreeMap<Integer,Status>();
+		events.forEach(EventTrack.STATUS, 0, Integer.MAX_VALUE, (Status e, int i) -> m.put(i, e));
+		return m;
+	}
+
+	/*
+	 * Copy of all timestamps
+	 */
+	public synchronized long[] getTimestamps() {
+		final long[] t = new long[size];
+		for(int c = 0; c << CHUNK_SHIFT < size; c++)
+			System.arraycopy(tms[c], 0, t, c << CHUNK_SHIFT, Math.min(CHUNK_SIZE, size - (c << CHUNK_SHIFT)));
+		return t;
+	}
+
+	/*
+	 * Copy of the column of a key figure ordinal, null if no value was written to it
+	 */
+	public synchronized double[] getColumn(int ordinal) {
+		if(!hasColumn(ordinal))
+			return null;
+		final double[] values = new double[size];
+		final TopicColumn topic = getTopic(ordinal);
+		if(topic != null) {
+			for(int i = 0; i < size; i++)
+				values[i] = topic.sample(tmsAt(i));
+			return values;
+		}
+		final double[][] column = columns[ordinal];
+		for(int c = 0; c << CHUNK_SHIFT < size; c++) {
+			final int len = Math.min(CHUNK_SIZE, size - (c << CHUNK_SHIFT));
+			if(column[c]==null)
+				Arrays.fill(values, c << CHUNK_SHIFT, (c << CHUNK_SHIFT) + len, Double.NaN);
+			else
+				System.arraycopy(column[c], 0, values, c << CHUNK_SHIFT, len);
+		}
+		return values;
+	}
+
+	/*
+	 * Replaces the content by samples with the given timestamps, columns are set afterwards with setColumn
+	 */
+	public synchronized void setTimestamps(long[] t) {
+		clear();
+		if(t.length == 0)
+			return;
+		ensureCapacity(t.length - 1);
+		for(int c = 0; c << CHUNK_SHIFT < t.length; c++) {
+			if(tms[c]==null)
+				tms[c] = new long[CHUNK_SIZE];
+			System.arraycopy(t, c << CHUNK_SHIFT, tms[c], 0, Math.min(CHUNK_SIZE, t.length - (c << CHUNK_SHIFT)));
+		}
+		for(int i = 1; i < t.length; i++)
+			tms[i >> CHUNK_SHIFT][i & CHUNK_MASK] = monotonic(i, t[i]);
+		size = t.length;
+	}
+
+	public synchronized void setColumn(int ordinal, double[] values) {
+		dropTopic(ordinal);
+		final int len = Math.min(values.length, size);
+		for(int c = 0; c << CHUNK_SHIFT < len; c++) {
+			final int start = c << CHUNK_SHIFT;
+			final int end   = Math.min(start + CHUNK_SIZE, len);
+			for(int i = start; i < end; i++)
+				put(i, ordinal, values[i]);
+		}
+		if(ordinal < pyramids.length)
+			pyramids[ordinal] = null;
+		for(int k = 0; k < modeOrdinals.length; k++) {
+			if(modeOrdinals[k] != ordinal)
+				continue;
+			double last = Double.NaN;
+			for(int i = 0; i < len; i++) {
+				if(i == 0 || Double.compare(values[i], last) != 0)
+					events.add(i, EventTrack.MODE, null);
+				last = values[i];
+			}
+		}
+	}
+
+	public synchronized int add(AnalysisDataModel m) {
+		return add(m, m.tms);
+	}
+
+	public synchronized int add(AnalysisDataModel m, long tms_us) {
+		final int index = size;
+		ensureCapacity(index);
+		tms[index >> CHUNK_SHIFT][index & CHUNK_MASK] = monotonic(index, tms_us);
+		final int slots = m.size();
+		final TopicColumn[] t = topics;
+		for(int ordinal = 0; ordinal < slots; ordinal++)
+			if(ordinal >= t.length || t[ordinal] == null)
+				put(index, ordinal, m.get(ordinal));
+		size = index + 1;
+		for(int ordinal = 0; ordinal < pyramids.length; ordinal++)
+			if(pyramids[ordinal] != null)
+				pyramids[ordinal].append(get(index, ordinal));
+		// the collector passes the current message on every tick until a new one arrives
+		if(m.msg!=null && m.msg.text!=null && (lastMessage == null ||
+				lastMessage.tms != m.msg.tms || !m.msg.text.equals(lastMessage.text))) {
+			lastMessage = m.msg.clone();
+			events.add(index, EventTrack.MESSAGE, lastMessage);
+		}
+		if(m.status!=null)
+			events.add(index, EventTrack.STATUS, m.status.clone());
+		boolean changed = false;
+		for(int k = 0; k < modeOrdinals.length; k++) {
+			final double v = m.get(modeOrdinals[k]);
+			if(Double.compare(v, modeValues[k]) != 0 || index == 0) {
+				modeValues[k] = v;
+				changed = true;
+			}
+		}
+		if(changed)
+			events.add(index, EventTrack.MODE, null);
+		return index;
+	}
+
+	/*
+	 * Appends a row without values, e.g. for a skipped collector tick.
+	 */
+	public synchronized int addGap(long tms_us) {
+		final int index = size;
+		ensureCapacity(index);
+		tms[index >> CHUNK_SHIFT][index & CHUNK_MASK] = monotonic(index, tms_us);
+		size = index + 1;
+		for(int ordinal = 0; ordinal < pyramids.length; ordinal++)
+			if(pyramids[ordinal] != null)
+				pyramids[ordinal].append(Double.NaN);
+		return index;
+	}
+
+	public synchronized void clear() {
+		size = 0;
+		columns    = new double[0][][];
+		tms        = new long[0][];
+		topics     = new TopicColumn[0];
+		pyramids   = new LODPyramid[0];
+		events.clear();
+		lastMessage = null;
+		Arrays.fill(modeValues, Double.NaN);
+	}
+
+	private long tmsAt(int index) {
+		return tms[index >> CHUNK_SHIFT][index & CHUNK_MASK];
+	}
+
+	// the time index requires non decreasing timestamps
+	private long monotonic(int index, long tms_us) {
+		if(index > 0 && tms_us < tmsAt(index - 1))
+			return tmsAt(index - 1);
+		return tms_us;
+	}
+
+	private void checkIndex(int index) {
+		if(index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size);
+	}
+
+	private double get(int index, int ordinal) {
+		final TopicColumn[] t = topics;
+		if(ordinal >= 0 && ordinal < t.length && t[ordinal] != null)
+			return t[ordinal].sample(tmsAt(index));
+		final double[][][] cols = columns;
+		if(ordinal < 0 || ordinal >= cols.length || cols[ordinal] == null)
+			return Double.NaN;
+		final double[][] column = cols[ordinal];
+		if(column.length <= (index >> CHUNK_SHIFT) || column[index >> CHUNK_SHIFT] == null)
+			return Double.NaN;
+		return column[index >> CHUNK_SHIFT][index & CHUNK_MASK];
+	}
+
+	private void put(int index, int ordinal, double value) {
+		if(ordinal < 0)
+			return;
+		double[][][] cols = columns;
+		if(ordinal >= cols.length || cols[ordinal] == null) {
+			if(Double.isNaN(value))
+				return;
+			// copy on write, readers access the column array without locking
+			cols = Arrays.copyOf(cols, Math.max(cols.length, Math.max(ordinal+1, meta.getOrdinalCount())));
+			cols[ordinal] = new double[tms.length][];
+			columns = cols;
+		}
+		final double[][] column = cols[ordinal];
+		double[] chunk = column[index >> CHUNK_SHIFT];
+		if(chunk==null) {
+			if(Double.isNaN(value))
+				return;
+			chunk = new double[CHUNK_SIZE];
+			Arrays.fill(chunk, Double.NaN);
+			column[index >> CHUNK_SHIFT] = chunk;
+		}
+		chunk[index & CHUNK_MASK] = value;
+	}
+
+	/*
+	 * Moves a native rate key figure into a column per sample, e.g. before single values are changed
+	 */
+	private void dropTopic(int ordinal) {
+		final TopicColumn topic = getTopic(ordinal);
+		if(topic == null)
+			return;
+		final TopicColumn[] t = Arrays.copyOf(topics, topics.length);
+		t[ordinal] = null;
+		topics = t;
+		for(int i = 0; i < size; i++)
+			put(i, ordinal, topic.sample(tmsAt(i)));
+	}
+
+	private void ensureCapacity(int index) {
+		final int chunk = index >> CHUNK_SHIFT;
+		if(chunk < tms.length && tms[chunk]!=null)
+			return;
+		if(chunk >= tms.length) {
+			final int capacity = Math.max(chunk + 1, tms.length * 2);
+			final double[][][] cols = new double[columns.length][][];
+			for(int c=0; c < cols.length; c++)
+				if(columns[c] != null)
+					cols[c] = Arrays.copyOf(columns[c], capacity);
+			columns = cols;
+			tms = Arrays.copyOf(tms, capacity);
+		}
+		tms[chunk] = new long[CHUNK_SIZE];
+	}
+
+	private AnalysisDataModel createView(int index) {
+		checkIndex(index);
+		final AnalysisDataModel m = new RowView(index);
+		m.tms    = tms[index >> CHUNK_SHIFT][index & CHUNK_MASK];
+		m.dt_sec = m.tms / 1e6f;
+		m.msg    = getMessage(index);
+		m.status = getStatus(index);
+		return m;
+	}
+
+	private class ModelListView extends AbstractList<AnalysisDataModel> {
+
+		@Override
+		public AnalysisDataModel get(int index) {
+			return createView(index);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public boolean add(AnalysisDataModel m) {
+			AnalysisDataStore.this.add(m);
+			return true;
+		}
+
+		@Override
+		public void clear() {
+			AnalysisDataStore.this.clear();
+		}
+	}
+
+	/*
+	 * AnalysisDataModel on one sample row, reads and writes go to the columns.
+	 */
+	private class RowView extends AnalysisDataModel {
+
+		private final int index;
+
+		public RowView(int index) {
+			super(EMPTY);
+			this.index = index;
+		}
+
+		@Override
+		protected int size() {
+			return Math.max(columns.length, topics.length);
+		}
+
+		@Override
+		protected double get(int ordinal) {
+			return AnalysisDataStore.this.get(index, ordinal);
+		}
+
+		@Override
+		protected void put(int ordinal, double value) {
+			synchronized(AnalysisDataStore.this) {
+				dropTopic(ordinal);
+				AnalysisDataStore.this.put(index, ordinal, value);
+				if(ordinal >= 0 && ordinal < pyramids.length)
+					pyramids[ordinal] = null;
+			}
+		}
+	}
+
+	private static final double[] EMPTY = new double[0];
+}
@@ -0,0 +1,112 @@
+/****************************************************************************
+ *
+ *   Copyright (c) 2017,2021 Eike Mansfeld ecm@gmx.de. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ ****************************************************************************/
+
+package com.comino.flight.model;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+import com.comino.mavcom.model.DataModel;
+
+/*
+ * Per tick cost of collecting all MSP key figures: reflective field lookup as done before
+ * against the accessors resolved at metadata load.
+ */
+
+public class AnalysisModelBenchmark {
+
+	private static final int WARMUP = 20000;
+	private static final int TICKS  = 100000;
+
+	public static void main(String[] args) {
+
+		DataModel m = new DataModel();
+		m.hud.ag = 7.2f;
+		m.state.l_y = 3.99f;
+		m.state.l_z = 0.12f;
+
+		AnalysisDataModelMetaData md = AnalysisDataModelMetaData.getInstance();
+		AnalysisDataModel model = new AnalysisDataModel();
+
+		int count = 0;
+		for(KeyFigureMetaData kf : md.getKeyFigures())
+			if(kf.hasSource(KeyFigureMetaData.MSP_SOURCE)) count++;
+		System.out.println(count+" MSP key figures per tick");
+
+		double sink = 0;
+
+		for(int i=0;i<WARMUP;i++)
+			sink += reflective(m,md,model);
+		long tms = System.nanoTime();
+		for(int i=0;i<TICKS;i++)
+			sink += reflective(m,md,model);
+		long reflective_ns = (System.nanoTime() - tms) / TICKS;
+
+		for(int i=0;i<WARMUP;i++)
+			model.setValues(KeyFigureMetaData.MSP_SOURCE, m, md);
+		tms = System.nanoTime();
+		for(int i=0;i<TICKS;i++)
+			model.setValues(KeyFigureMetaData.MSP_SOURCE, m, md);
+		long accessor_ns = (System.nanoTime() - tms) / TICKS;
+
+		System.out.println("Reflective lookup:  "+reflective_ns+" ns/tick");
+		System.out.println("Resolved accessors: "+accessor_ns+" ns/tick");
+		System.out.println("Check: "+model.getValue("ALTGL")+" "+model.getValue("LPOSY")+" "+(sink!=0));
+
+	}
+
+	// The former getValueFromMSPModel field resolution
+	private static double reflective(DataModel m, AnalysisDataModelMetaData md, AnalysisDataModel model) {
+		double sum = 0;
+		final List<KeyFigureMetaData> kfs = md.getKeyFigures();
+		for(int i = 0; i < kfs.size(); i++) {
+			KeyFigureMetaData.DataSource source = kfs.get(i).sources.get(KeyFigureMetaData.MSP_SOURCE);
+			if(source==null || source.field==null)
+				continue;
+			double value = Double.NaN;
+			try {
+				Field mclass_field = m.getClass().getField(source.class_n);
+				Object mclass = mclass_field.get(m);
+				Field mfield_field = mclass.getClass().getField(source.field);
+				value = mfield_field.getDouble(mclass);
+			} catch(Exception e) { }
+			if(source.converter != null)
+				value = source.converter.convert(value);
+			model.put(kfs.get(i).ordinal, value);
+			if(Double.isFinite(value))
+				sum += value;
+		}
+		return sum;
+	}
+
+}
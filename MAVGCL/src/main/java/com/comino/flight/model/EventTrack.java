@@ -0,0 +1,162 @@
+/****************************************************************************
+ *
+ *   Copyright (c) 2017,2021 Eike Mansfeld ecm@gmx.de. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ ****************************************************************************/
+
+package com.comino.flight.model;
+
+import java.util.Arrays;
+import java.util.function.ObjIntConsumer;
+
+/*
+ * Sparse events of a recording (log messages, status, mode key figure changes) sorted by sample
+ * index. Range queries are a binary search plus a walk over the events in range.
+ */
+
+public class EventTrack {
+
+	public static final int MESSAGE = 0;
+	public static final int STATUS  = 1;
+	public static final int MODE    = 2;
+
+	private int[]    index = new int[64];
+	private int[]    type  = new int[64];
+	private Object[] data  = new Object[64];
+
+	private int size = 0;
+
+	public synchronized int size() {
+		return size;
+	}
+
+	public synchronized void clear() {
+		Arrays.fill(data, 0, size, null);
+		size = 0;
+	}
+
+	/*
+	 * Appends an event, events of a sample index keep their insertion order
+	 */
+	public synchronized void add(int i, int t, Object d) {
+		final int pos = upperBound(i);
+		if(size == index.length) {
+			index = Arrays.copyOf(index, size * 2);
+			type  = Arrays.copyOf(type,  size * 2);
+			data  = Arrays.copyOf(data,  size * 2);
+		}
+		if(pos < size) {
+			System.arraycopy(index, pos, index, pos + 1, size - pos);
+			System.arraycopy(type,  pos, type,  pos + 1, size - pos);
+			System.arraycopy(data,  pos, data,  pos + 1, size - pos);
+		}
+		index[pos] = i; type[pos] = t; data[pos] = d;
+		size++;
+	}
+
+	/*
+	 * Replaces the event of the type at the sample index, null removes it
+	 */
+	public synchronized void set(int i, int t, Object d) {
+		for(int p = lowerBound(i); p < size && index[p] == i; p++) {
+			if(type[p] != t)
+				continue;
+			if(d != null) {
+				data[p] = d;
+			} else {
+				System.arraycopy(index, p + 1, index, p, size - p - 1);
+				System.arraycopy(type,  p + 1, type,  p, size - p - 1);
+				System.arraycopy(data,  p + 1, data,  p, size - p - 1);
+				data[--size] = null;
+			}
+			return;
+		}
+		if(d != null)
+			add(i, t, d);
+	}
+
+	public synchronized Object get(int i, int t) {
+		for(int p = lowerBound(i); p < size && index[p] == i; p++)
+			if(type[p] == t)
+				return data[p];
+		return null;
+	}
+
+	/*
+	 * Last event of the type in [from, to), null if none
+	 */
+	public synchronized Object last(int t, int from, int to) {
+		for(int p = lowerBound(to) - 1; p >= 0 && index[p] >= from; p--)
+			if(type[p] == t)
+				return data[p];
+		return null;
+	}
+
+	/*
+	 * Events of the type in [from, to) in index order
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> void forEach(int t, int from, int to, ObjIntConsumer<T> consumer) {
+		int[] idx; Object[] d; int n = 0;
+		synchronized(this) {
+			final int start = lowerBound(from);
+			final int end   = lowerBound(to);
+			idx = new int[end - start]; d = new Object[end - start];
+			for(int p = start; p < end; p++) {
+				if(type[p] == t) {
+					idx[n] = index[p]; d[n++] = data[p];
+				}
+			}
+		}
+		// consumer is called outside the lock
+		for(int k = 0; k < n; k++)
+			consumer.accept((T)d[k], idx[k]);
+	}
+
+	private int lowerBound(int i) {
+		int lo = 0, hi = size;
+		while(lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+			if(index[mid] < i) lo = mid + 1; else hi = mid;
+		}
+		return lo;
+	}
+
+	private int upperBound(int i) {
+		if(size == 0 || index[size - 1] <= i)
+			return size;
+		int lo = 0, hi = size;
+		while(lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+			if(index[mid] <= i) lo = mid + 1; else hi = mid;
+		}
+		return lo;
+	}
+}
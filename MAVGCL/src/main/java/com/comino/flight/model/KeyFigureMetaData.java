@@ -33,11 +33,15 @@
 
 package com.comino.flight.model;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.ToDoubleFunction;
 
 import com.comino.flight.model.converter.SourceConverter;
 import com.comino.mavcom.model.DataModel;
@@ -67,6 +71,7 @@ public class KeyFigureMetaData {
 	public String uom;
 	//	public String mask;
 	public int    hash;
+	public transient int ordinal = -1;
 	public float  min=0;
 	public float  max=0;
 	public double  clip_min = -Double.MAX_VALUE;
@@ -74,8 +79,13 @@ public class KeyFigureMetaData {
 
 	private DecimalFormat formatting = null;
 
+	private static final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+	private static final MethodType ACCESSOR_TYPE    = MethodType.methodType(double.class, DataModel.class);
+
 	private double value = 0;
 	private DataSource source = null;
+	private transient DataSource msp = null;
+	private transient DataSource ulg = null;
 
 	public boolean isVirtual = false;
 	public boolean isMSP     = false;
@@ -153,27 +163,50 @@ public class KeyFigureMetaData {
 			}
 		} else
 			sources.put(type, new DataSource(class_n,field,null));
+
+		if(type==ULG_SOURCE)
+			ulg = sources.get(type);
+
+		if(type==MSP_SOURCE && sources.containsKey(type)) {
+			msp = sources.get(type);
+			if(msp.field!=null)
+				msp.accessor = buildAccessor(msp.class_n, msp.field);
+		}
+	}
+
+	/*
+	 * Resolves DataModel.<class_n>.<field> once into a getter. Unresolvable bindings are reported here
+	 * and deliver NaN.
+	 */
+	private ToDoubleFunction<DataModel> buildAccessor(String class_n, String field) {
+		try {
+			final Field segment_field = DataModel.class.getField(class_n);
+			final Field value_field   = segment_field.getType().getField(field);
+			final MethodHandle getter = MethodHandles.filterReturnValue(
+					lookup.unreflectGetter(segment_field),
+					lookup.unreflectGetter(value_field)).asType(ACCESSOR_TYPE);
+			return (m) -> {
+				try {
+					return (double)getter.invokeExact(m);
+				} catch(Throwable t) {
+					return Double.NaN;
+				}
+			};
+		} catch(Exception e) {
+			System.err.println("MSPSource of "+key+" not resolved: "+class_n+"."+field+" ("+e.getClass().getSimpleName()+")");
+			return (m) -> Double.NaN;
+		}
 	}
 
 	public boolean hasSource(int type) {
 		return sources.containsKey(type);
 	}
 
-	public Double getValueFromMSPModel(DataModel m) throws Exception {
-		value = Double.NaN;
-		source = sources.get(MSP_SOURCE);
-		if(source.field!=null) {
-			Field mclass_field = m.getClass().getField(source.class_n);
-			Object mclass = mclass_field.get(m);
-			try {
-				Field mfield_field = mclass.getClass().getField(source.field);
-				value = mfield_field.getDouble(mclass);
-			} catch(NoSuchFieldException e) {
-				return value;
-			} catch(Exception e) {
-				return value;
-			}
-		}
+	public double getValueFromMSPModel(DataModel m) {
+		final DataSource source = msp;
+		double value = Double.NaN;
+		if(source.accessor!=null)
+			value = source.accessor.applyAsDouble(m);
 		if(source.converter != null)
 			return checkClipping(source.converter.convert(value));
 		return checkClipping(value);
@@ -197,28 +230,21 @@ public class KeyFigureMetaData {
 //		return checkClipping(value);
 //	}
 
-	public Double getValueFromULogModel(Map<String,Object> data) {
-		value = Double.NaN;
-		source = sources.get(ULG_SOURCE);
-
-		if(source!=null && source.field!=null) {  // source field specified
-			Object o = data.get(source.field);
-			if(o!=null) {
-				if(o instanceof Integer)
-					value = (double)(Integer)o;
-				else if(o instanceof Double)
-					value = ((Double)o).doubleValue();
-				else if(o instanceof Float)
-					value = ((Float)o).doubleValue();
+	public double getValueFromULogModel(double[] data) {
+		final DataSource source = ulg;
+		double value = Double.NaN;
+		if(source==null || source.slots==null)
+			return value;
 
-				if(source.converter != null)
-					return checkClipping(source.converter.convert(value));
-
-			}
+		if(source.field!=null) {  // source field specified
+			if(source.slots[0] < data.length)
+				value = data[source.slots[0]];
+			if(source.converter != null && !Double.isNaN(value))
+				return checkClipping(source.converter.convert(value));
 
 		} else { // source field via converter
 			if(source.converter != null)
-				return checkClipping(source.converter.convert(data));
+				return checkClipping(source.converter.convert(data, source.slots));
 		}
 		return checkClipping(value);
 	}
@@ -245,6 +271,10 @@ public class KeyFigureMetaData {
 		return 0;
 	}
 
+	public String getKey() {
+		return key;
+	}
+
 	public String toString() {
 		return desc1;
 	}
@@ -253,7 +283,7 @@ public class KeyFigureMetaData {
 		return desc1+": "+key+"("+hash+")";
 	}
 
-	private Double checkClipping(double v) {
+	private double checkClipping(double v) {
 		if(v > clip_max) v = Double.NaN;
 		if(v < clip_min) v = Double.NaN;
 		return v;
@@ -270,6 +300,8 @@ public class KeyFigureMetaData {
 		public String class_n;
 		public String field;
 		public SourceConverter converter;
+		public transient ToDoubleFunction<DataModel> accessor;
+		public transient int[] slots;
 
 		public String toString() {
 			if(class_n!=null)
@@ -0,0 +1,165 @@
+/****************************************************************************
+ *
+ *   Copyright (c) 2017,2021 Eike Mansfeld ecm@gmx.de. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ ****************************************************************************/
+
+package com.comino.flight.model;
+
+import java.util.Arrays;
+
+/*
+ * Min/max/mean/std pyramid of one key figure column. Level k aggregates buckets of 2^k samples and
+ * is updated on every appended sample, so a range query combines O(log n) complete buckets with the
+ * raw samples at the unaligned ends. Each bucket keeps count, mean and the sum of squared deviations
+ * (M2), combined pairwise (Chan et al.), so the std of values with a large offset and a small spread
+ * (e.g. latitudes) is not lost in the cancellation of E[x^2] - mean^2. NaN and infinite values are
+ * not counted.
+ */
+
+public class LODPyramid {
+
+	public static final int MIN   = 0;
+	public static final int MAX   = 1;
+	public static final int MEAN  = 2;
+	public static final int COUNT = 3;
+	public static final int STD   = 4;
+
+	// length of a result array
+	public static final int RESULT_SIZE = 5;
+
+	public interface Source {
+		double get(int index);
+	}
+
+	// level 0 is not stored, the source provides the samples
+	private double[][] min   = { null, new double[16] };
+	private double[][] max   = { null, new double[16] };
+	private double[][] mean  = { null, new double[16] };
+	private double[][] m2    = { null, new double[16] };
+	private int[][]    count = { null, new int[16] };
+
+	private int size = 0;
+
+	public int size() {
+		return size;
+	}
+
+	public void append(double v) {
+		final int index = size;
+		if(index >= 2 && (index & (index - 1)) == 0)
+			addLevel();
+		for(int k = 1; k < min.length; k++) {
+			final int b = index >> k;
+			if(b >= min[k].length)
+				grow(k);
+			if((index & ((1 << k) - 1)) == 0) {
+				min[k][b] = Double.POSITIVE_INFINITY; max[k][b] = Double.NEGATIVE_INFINITY;
+				mean[k][b] = 0; m2[k][b] = 0; count[k][b] = 0;
+			}
+			if(!Double.isFinite(v))
+				continue;
+			if(v < min[k][b]) min[k][b] = v;
+			if(v > max[k][b]) max[k][b] = v;
+			final int    n = ++count[k][b];
+			final double d = v - mean[k][b];
+			mean[k][b] += d / n;
+			m2[k][b]   += d * (v - mean[k][b]);
+		}
+		size++;
+	}
+
+	/*
+	 * Min, max, mean, count and standard deviation of the finite values in [from, to) into result,
+	 * false if there are none
+	 */
+	public boolean aggregate(Source source, int from, int to, double[] result) {
+		double mn = Double.POSITIVE_INFINITY, mx = Double.NEGATIVE_INFINITY, m = 0, q = 0; int n = 0;
+		to = Math.min(to, size);
+		int i = Math.max(from, 0);
+		while(i < to) {
+			// largest aligned complete bucket starting at i
+			int k = Math.min(Integer.numberOfTrailingZeros(i | (1 << 30)), min.length - 1);
+			while(k > 0 && i + (1 << k) > to)
+				k--;
+			if(k == 0) {
+				final double v = source.get(i);
+				if(Double.isFinite(v)) {
+					if(v < mn) mn = v;
+					if(v > mx) mx = v;
+					final double d = v - m;
+					n++;
+					m += d / n;
+					q += d * (v - m);
+				}
+			} else {
+				final int b = i >> k;
+				if(count[k][b] > 0) {
+					if(min[k][b] < mn) mn = min[k][b];
+					if(max[k][b] > mx) mx = max[k][b];
+					final int    nb = count[k][b];
+					final double d  = mean[k][b] - m;
+					final int    nt = n + nb;
+					m += d * nb / nt;
+					q += m2[k][b] + d * d * ((double)n * nb / nt);
+					n  = nt;
+				}
+			}
+			i += 1 << k;
+		}
+		result[MIN]   = n > 0 ? mn : Double.NaN;
+		result[MAX]   = n > 0 ? mx : Double.NaN;
+		result[MEAN]  = n > 0 ? m : Double.NaN;
+		result[COUNT] = n;
+		result[STD]   = n > 0 ? Math.sqrt(Math.max(0, q / n)) : Double.NaN;
+		return n > 0;
+	}
+
+	// the first bucket of the new level equals the first bucket of the level below, which is complete
+	private void addLevel() {
+		final int k = min.length;
+		min   = Arrays.copyOf(min, k + 1);
+		max   = Arrays.copyOf(max, k + 1);
+		mean  = Arrays.copyOf(mean, k + 1);
+		m2    = Arrays.copyOf(m2, k + 1);
+		count = Arrays.copyOf(count, k + 1);
+		min[k] = new double[16]; max[k] = new double[16]; mean[k] = new double[16]; m2[k] = new double[16];
+		count[k] = new int[16];
+		min[k][0] = min[k-1][0]; max[k][0] = max[k-1][0];
+		mean[k][0] = mean[k-1][0]; m2[k][0] = m2[k-1][0]; count[k][0] = count[k-1][0];
+	}
+
+	private void grow(int k) {
+		final int n = min[k].length * 2;
+		min[k] = Arrays.copyOf(min[k], n); max[k] = Arrays.copyOf(max[k], n);
+		mean[k] = Arrays.copyOf(mean[k], n); m2[k] = Arrays.copyOf(m2[k], n);
+		count[k] = Arrays.copyOf(count[k], n);
+	}
+}
@@ -0,0 +1,145 @@
+/****************************************************************************
+ *
+ *   Copyright (c) 2017,2021 Eike Mansfeld ecm@gmx.de. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ ****************************************************************************/
+
+package com.comino.flight.model;
+
+import java.util.Arrays;
+
+/*
+ * Key figure column at the native rate of its source topic: value changes with the timestamp of the
+ * message that caused them. Samples in between are provided on demand, either holding the last value
+ * or interpolated.
+ */
+
+public class TopicColumn {
+
+	private long[]   tms    = new long[64];
+	private double[] values = new double[64];
+
+	private volatile int     size  = 0;
+	private volatile boolean valid = false;
+
+	// timestamp of the last repeated value not stored yet
+	private long run_tms = -1;
+
+	/*
+	 * Appends a message value. Repeated values are not stored, only the last message of a run is kept
+	 * before a change, so that interpolation still sees the original message pairs. Earlier timestamps
+	 * than the last one are moved to the last one.
+	 */
+	public void append(long tms_us, double value) {
+		final int n = size;
+		if(n > 0) {
+			if(tms_us < tms[n-1])
+				tms_us = tms[n-1];
+			if(Double.compare(values[n-1], value) == 0) {
+				run_tms = tms_us;
+				return;
+			}
+			if(run_tms > tms[n-1])
+				add(run_tms, values[n-1]);
+		}
+		run_tms = -1;
+		add(tms_us, value);
+	}
+
+	/*
+	 * Value valid at tms_us, NaN before the first message
+	 */
+	public double sample(long tms_us) {
+		final int i = indexOf(tms_us, size);
+		return i < 0 ? Double.NaN : values[i];
+	}
+
+	/*
+	 * Value at tms_us linearly interpolated between the enclosing messages. Held after the last
+	 * message and across NaN.
+	 */
+	public double interpolate(long tms_us) {
+		final int n = size;
+		final int i = indexOf(tms_us, n);
+		if(i < 0)
+			return Double.NaN;
+		if(i == n - 1 || tms[i] == tms_us || Double.isNaN(values[i+1]) || Double.isNaN(values[i]))
+			return values[i];
+		return values[i] + (values[i+1] - values[i]) * (tms_us - tms[i]) / (double)(tms[i+1] - tms[i]);
+	}
+
+	/*
+	 * True if at least one value is not NaN
+	 */
+	public boolean hasValues() {
+		return valid;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public long getTms(int index) {
+		return tms[index];
+	}
+
+	public double getValue(int index) {
+		return values[index];
+	}
+
+	public long getMemoryBytes() {
+		return tms.length * 16L;
+	}
+
+	private void add(long tms_us, double value) {
+		final int n = size;
+		if(n == tms.length) {
+			tms    = Arrays.copyOf(tms, n * 2);
+			values = Arrays.copyOf(values, n * 2);
+		}
+		tms[n] = tms_us; values[n] = value;
+		if(!Double.isNaN(value))
+			valid = true;
+		size = n + 1;
+	}
+
+	// last entry at or before tms_us
+	private int indexOf(long tms_us, int n) {
+		int lo = 0, hi = n - 1;
+		while(lo <= hi) {
+			final int mid = (lo + hi) >>> 1;
+			if(tms[mid] <= tms_us)
+				lo = mid + 1;
+			else
+				hi = mid - 1;
+		}
+		return hi;
+	}
+}
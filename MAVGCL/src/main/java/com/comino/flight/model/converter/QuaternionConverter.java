@@ -33,8 +33,6 @@
 
 package com.comino.flight.model.converter;
 
-import java.util.Map;
-
 import com.comino.mavutils.MSPMathUtils;
 
 public class QuaternionConverter extends SourceConverter {
@@ -55,14 +53,16 @@ public class QuaternionConverter extends SourceConverter {
 	}
 
 	@Override
-	public double convert(Map<String,Object> ulogdata) {
-		try {
-			q[0] = (float)(Float)ulogdata.get(ulogKeyFigure+"[0]");
-			q[1] = (float)(Float)ulogdata.get(ulogKeyFigure+"[1]");
-			q[2] = (float)(Float)ulogdata.get(ulogKeyFigure+"[2]");
-			q[3] = (float)(Float)ulogdata.get(ulogKeyFigure+"[3]");
-		} catch(Exception e) {
-			return euler[index];
+	public String[] getULogFields() {
+		return new String[] { ulogKeyFigure+"[0]", ulogKeyFigure+"[1]", ulogKeyFigure+"[2]", ulogKeyFigure+"[3]" };
+	}
+
+	@Override
+	public double convert(double[] ulogdata, int[] slots) {
+		for(int i=0;i<4;i++) {
+			if(slots[i] >= ulogdata.length || Double.isNaN(ulogdata[slots[i]]))
+				return euler[index];
+			q[i] = (float)ulogdata[slots[i]];
 		}
 		MSPMathUtils.eulerAnglesByQuaternion(euler, q);
 		return euler[index];
@@ -66,12 +66,12 @@ public class RMSEConverter2 extends SourceConverter {
 			return 0;
 		}
 
-		if(list.get(list.size()-1).getValue(kf_name)!=0) {
+		rmse = list.get(list.size()-1).getValue(kf_name);
+		if(Double.isFinite(rmse) && rmse!=0) {
 			kf = data.getValue(kf_val);
 			sp = data.getValue(kf_sp);
 			if(Double.isNaN(kf) || Double.isNaN(sp))
 				return 0;
-			rmse = list.get(list.size()-1).getValue(kf_name);
 			rmse = rmse * rmse * frame;
 			rmse = rmse + ((kf - sp ) * (kf - sp ));
 			kf = list.get(list.size()-frame).getValue(kf_val);
@@ -79,7 +79,7 @@ public class RMSEConverter2 extends SourceConverter {
 			rmse = rmse - ((kf - sp ) * (kf - sp ));
 			return Math.sqrt(rmse/frame);
 		} else {
-
+		rmse = 0;
 		for(int i=list.size()-frame;i<list.size();i++) {
 			kf = list.get(i).getValue(kf_val);
 			sp = list.get(i).getValue(kf_sp);
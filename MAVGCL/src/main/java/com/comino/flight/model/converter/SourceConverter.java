@@ -33,8 +33,6 @@
 
 package com.comino.flight.model.converter;
 
-import java.util.Map;
-
 import com.comino.flight.model.AnalysisDataModel;
 
 public abstract class SourceConverter {
@@ -51,12 +49,13 @@ public abstract class SourceConverter {
 		return 0;
 	}
 
-	public double convert(Map<String,Object> ulogdata, double val) {
-		return convert(val);
+	public double convert(double[] ulogdata, int[] slots) {
+		return 0;
 	}
 
-	public double convert(Map<String,Object> ulogdata) {
-		return 0;
+	// ULog fields read by convert(double[],int[]) in the order of the slots
+	public String[] getULogFields() {
+		return null;
 	}
 
 	public abstract String toString();
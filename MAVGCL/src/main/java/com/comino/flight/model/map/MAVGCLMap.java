@@ -127,7 +127,7 @@ public class MAVGCLMap  {
 
 	public Set<Long> getLevelSet(boolean enforce) {
 
-		float current_altitude = (float)AnalysisModelService.getInstance().getCurrent().getValue("ALTRE");
+		float current_altitude = (float)AnalysisModelService.getInstance().getCurrent().getValue("ALTRE", 0);
 
 		set.clear();
 		Iterator<CellProbability_F64> i = getMapLevelItems(current_altitude);
@@ -35,9 +35,7 @@
 package com.comino.flight.model.service;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.locks.LockSupport;
 
 import org.mavlink.messages.MAV_CMD;
 import org.mavlink.messages.MAV_SEVERITY;
@@ -46,15 +44,19 @@ import org.mavlink.messages.MSP_CMD;
 import com.comino.flight.log.ulog.ULogFromMAVLinkReader;
 import com.comino.flight.model.AnalysisDataModel;
 import com.comino.flight.model.AnalysisDataModelMetaData;
+import com.comino.flight.model.AnalysisDataStore;
 import com.comino.flight.model.KeyFigureMetaData;
+import com.comino.flight.observables.PropertyBridge;
 import com.comino.flight.observables.StateProperties;
+import com.comino.flight.prefs.MAVPreferences;
+import com.comino.flight.ui.FrameScheduler;
+import com.comino.flight.ui.widgets.charts.utils.XYDataPool;
 import com.comino.mavcom.control.IMAVController;
 import com.comino.mavcom.log.MSPLogger;
 import com.comino.mavcom.model.DataModel;
 import com.comino.mavcom.model.segment.Status;
 import com.comino.mavutils.workqueue.WorkQueue;
 
-import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 
 
@@ -66,13 +68,19 @@ public class AnalysisModelService  {
 	public static final int MAVHIRES_INTERVAL_US = 10000;
 	public static final int HISPEED_INTERVAL_US  = 5000;
 
+	private static final long IDLE_INTERVAL_NS   = 200000000L;
+
+	// overrun histogram of the collector clock by skipped ticks
+	private static final String[] OVERRUN_KEYS   = { "MAVGCLOVR1", "MAVGCLOVR2", "MAVGCLOVR3", "MAVGCLOVR4", "MAVGCLOVR5" };
+
 	public static  final int STOPPED		 	= 0;
 	public static  final int PRE_COLLECTING 	= 1;
 	public static  final int COLLECTING     	= 2;
 	public static  final int POST_COLLECTING    = 3;
 	public static  final int READING_HEADER     = 4;
 
-	private volatile List<AnalysisDataModel>      modelList   = null;
+	private final AnalysisDataStore                   store   = new AnalysisDataStore();
+	private final List<AnalysisDataModel>         modelList   = store.getModelList();
 
 	private DataModel								  model   = null;
 	private ULogFromMAVLinkReader                   ulogger   = null;
@@ -92,14 +100,14 @@ public class AnalysisModelService  {
 	private boolean converter_running = false;
 
 	private int totalTime_sec = 30;
-	private int collector_interval_us = DEFAULT_INTERVAL_US;
+	private volatile int collector_interval_us = DEFAULT_INTERVAL_US;
 	private IMAVController control = null;
 
 	private CombinedConverter converter = null;
 
 	private final WorkQueue wq = WorkQueue.getInstance();
 
-	private AnimationTimer task = null;
+	private FrameScheduler.Task task = null;
 
 	public static AnalysisModelService getInstance(IMAVController control) {
 		if(instance==null) {
@@ -121,7 +129,6 @@ public class AnalysisModelService  {
 		this.meta = AnalysisDataModelMetaData.getInstance();
 		this.listener = new ArrayList<ICollectorRecordingListener>();
 
-		this.modelList     = new ArrayList<AnalysisDataModel>(50000);
 		this.model         = control.getCurrentModel();
 		this.current       =  new AnalysisDataModel();
 		this.record        =  new AnalysisDataModel();
@@ -163,19 +170,13 @@ public class AnalysisModelService  {
 			isReplaying = nv.booleanValue();
 		});
 
-		task = new AnimationTimer() {
-			@Override
-			public void handle(long now) {
-				try {
-					for(ICollectorRecordingListener updater : listener)
-						updater.update(System.nanoTime());
-				} catch(Exception e) {  e.printStackTrace(); }		
-			}		
-		};
+		task = FrameScheduler.getInstance().register("Recording", FrameScheduler.HIGH, 0, (now) -> {
+			for(ICollectorRecordingListener updater : listener)
+				updater.update(System.nanoTime());
+		});
 	}
 
 	public AnalysisModelService(DataModel model) {
-		this.modelList     = new LinkedList<AnalysisDataModel>();
 		this.model         =  model;
 		this.current       =  new AnalysisDataModel();
 		this.state         = StateProperties.getInstance();
@@ -213,6 +214,10 @@ public class AnalysisModelService  {
 		return modelList;
 	}
 
+	public AnalysisDataStore getDataStore() {
+		return store;
+	}
+
 	public int size() {
 		return modelList.size();
 	}
@@ -304,58 +309,39 @@ public class AnalysisModelService  {
 	}
 
 	public int calculateX0IndexByFactor(double factor) {
-		int current_x0_pt = (int)((modelList.size() - totalTime_sec *  1000f / getCollectorInterval_ms()) * factor);
+		if(modelList.size() == 0)
+			return 0;
 
-		if(current_x0_pt<0)
-			current_x0_pt = 0;
+		final double t0   = getTimeByIndex(0);
+		final double span = getTimeByIndex(modelList.size()-1) - t0 - totalTime_sec;
+		if(span <= 0)
+			return 0;
 
-		return current_x0_pt;
+		return calculateXIndexByTime(t0 + span * factor);
 	}
 
 	public int calculateIndexByFactor(double factor) {
-		int current_x0_pt = (int)((modelList.size()) * factor);
-
-		if(current_x0_pt<0)
-			current_x0_pt = 0;
+		if(modelList.size() == 0)
+			return 0;
 
-		return current_x0_pt;
+		final double t0 = getTimeByIndex(0);
+		return calculateXIndexByTime(t0 + (getTimeByIndex(modelList.size()-1) - t0) * factor);
 	}
 
 	public int calculateX1IndexByFactor(double factor) {
-
-		int current_x1_pt = calculateX0IndexByFactor(factor) + (int)(totalTime_sec *  1000f / getCollectorInterval_ms());
-
-		if(current_x1_pt>modelList.size()-1)
-			current_x1_pt = modelList.size()-1;
-
-		if(current_x1_pt<0)
-			current_x1_pt = 0;
-
-		return (int)(current_x1_pt);
+		return Math.max(0, calculateXIndexByTime(getTimeByIndex(calculateX0IndexByFactor(factor)) + totalTime_sec));
 	}
 
 	public int calculateX0Index(int index_x1) {
-
-		int current_x0_pt = index_x1 - (int)(totalTime_sec *  1000f / getCollectorInterval_ms());
-
-		if(current_x0_pt<0)
-			current_x0_pt = 0;
-
-		return current_x0_pt;
+		return Math.max(0, calculateXIndexByTime(getTimeByIndex(index_x1) - totalTime_sec));
 	}
 
 	public int calculateX1Index(int index_x0) {
-
-		int current_x1_pt = index_x0 + (int)(totalTime_sec *  1000f / getCollectorInterval_ms());
-
-		if(current_x1_pt>modelList.size()-1)
-			current_x1_pt = modelList.size()-1;
-
-		return current_x1_pt;
+		return calculateXIndexByTime(getTimeByIndex(index_x0) + totalTime_sec);
 	}
 
 	public int calculateXIndexByTime(double time) {
-		int x = (int)(1000f / getCollectorInterval_ms() * time);
+		int x = getIndexByTime(time);
 		if(x < 0)
 			return 0;
 		if(x > modelList.size()-1)
@@ -363,6 +349,30 @@ public class AnalysisModelService  {
 		return x;
 	}
 
+	/*
+	 * Index of the last sample at or before time (seconds) based on the recorded timestamps. Beyond
+	 * the recording the index is extended on the collector interval.
+	 */
+	public int getIndexByTime(double time) {
+		return store.indexOfTime(time, getCollectorInterval_ms());
+	}
+
+	/*
+	 * Time span between the first and the last sample in seconds
+	 */
+	public double getRecordedTimeSec() {
+		if(modelList.size() == 0)
+			return 0;
+		return getTimeByIndex(modelList.size()-1) - getTimeByIndex(0);
+	}
+
+	/*
+	 * Recorded time of a sample in seconds, extended on the collector interval beyond the recording.
+	 */
+	public double getTimeByIndex(int index) {
+		return store.getTime(index, getCollectorInterval_ms());
+	}
+
 	public long getTotalRecordingTimeMS() {
 		if(modelList.size()> 0)
 			return (modelList.get(modelList.size()-1).tms) / 1000;
@@ -394,8 +404,10 @@ public class AnalysisModelService  {
 
 	private class CombinedConverter implements Runnable {
 
-		long tms_start =0; long tms_last; long wait = 0;
-		float perf = 0; AnalysisDataModel m = null;
+		long tms_start =0; long tms_last; long tms = 0;
+		float perf = 0; int skipped = 0;
+
+		final CollectorClock clock = new CollectorClock();
 
 		@Override
 		public void run() {
@@ -409,7 +421,7 @@ public class AnalysisModelService  {
 				
 				if(!model.sys.isStatus(Status.MSP_CONNECTED) || isReplaying) {
 					if(ulogger.isLogging())         
-						ulogger.enableLogging(false);
+						ulogger.stopLogging();
 					mode = STOPPED; old_mode = STOPPED;
 					state.getRecordingProperty().set(STOPPED);
 					if(!state.getReplayingProperty().get())
@@ -417,18 +429,32 @@ public class AnalysisModelService  {
 					converter_running = false;
 					perf = 0;
 					current.setValue("MAVGCLNET", 0);
+					current.setValue("MAVGCLALLOC", 0);
+					current.setValue("MAVGCLFRAME", 0);
+					current.setValue("MAVGCLFXQ", 0);
 					current.setValue("MAVGCLACC", perf);
 					synchronized(converter) {
 						System.out.println("Combined Converter is waiting");
 						try { 	this.wait(); } catch (InterruptedException e) { }
 						System.out.println("Combined Converter continued");
 					}
+					clock.restart();
 					continue;
 				}
 
 
 				current.setValue("MAVGCLACC", perf);
 				current.setValue("MAVGCLNET", control.getTransferRate()/1024f);
+				current.setValue("MAVGCLALLOC", XYDataPool.getAllocationsPerFrame());
+				current.setValue("MAVGCLFRAME", FrameScheduler.getInstance().getFrameCost());
+				current.setValue("MAVGCLFXQ", PropertyBridge.getUpdateRate());
+				current.setValue("MAVGCLJIT50", clock.getJitterP50());
+				current.setValue("MAVGCLJIT99", clock.getJitterP99());
+				current.setValue("MAVGCLJITMAX", clock.getJitterMax());
+				current.setValue("MAVGCLSKIP", clock.getSkippedRate());
+				final long[] overruns = clock.getOverrunHistogram();
+				for(int i = 0; i < overruns.length; i++)
+					current.setValue(OVERRUN_KEYS[i], overruns[i]);
 
 				if(mode!=STOPPED && old_mode == STOPPED && model.sys.isStatus(Status.MSP_CONNECTED)) {
 					Platform.runLater(()->{
@@ -437,19 +463,28 @@ public class AnalysisModelService  {
 						state.getRecordingProperty().set(COLLECTING);
 					});
 					tms_start = System.nanoTime() / 1000;
+
+					// collect from the MAVLink stream until the ULog header is complete
+					if(MAVPreferences.getInstance().getBoolean(MAVPreferences.ULOG_ON_RECORD, false))
+						ulogger.startLogging().thenAccept((ok) -> {
+							if(ok && mode!=STOPPED)
+								setCollectorInterval(MAVHIRES_INTERVAL_US);
+						});
 				}
 
 				if(mode==STOPPED && old_mode != STOPPED) {
-					ulogger.enableLogging(false);
+					ulogger.stopLogging();
 					state.getRecordingProperty().set(STOPPED);
+					System.out.println(clock);
 				}
 
 				old_mode = mode;
 
-				current.msg = null; wait = System.nanoTime();
+				current.msg = null;
 
 				if(state.getReplayingProperty().get()) {
 					try { 	Thread.sleep(100); 	} catch (InterruptedException e) { 	}
+					clock.restart();
 					continue;
 				}
 
@@ -487,21 +522,23 @@ public class AnalysisModelService  {
 					// Skip first
 					if(!isFirst) {
 
-						if(ulogger.isLogging())
-							m = (AnalysisDataModel)record.clone();
-						else
-							m = (AnalysisDataModel)current.clone();
+						tms = System.nanoTime() / 1000 - tms_start;
 
+						// skipped ticks are kept as empty rows, so that the index stays on the time grid
+						for(int k = skipped; k > 0; k--)
+							store.addGap(tms - k * collector_interval_us);
 
-						m.tms = System.nanoTime() / 1000 - tms_start;
-						m.dt_sec = m.tms / 1e6f;
-						modelList.add(m);
+						// values are copied into the columns, no clone per sample
+						if(ulogger.isLogging())
+							store.add(record, tms);
+						else
+							store.add(current, tms);
 
 
 						state.getRecordingAvailableProperty().set(modelList.size()>0);
 
-						perf = ( m.tms - tms_last ) / 1e3f;
-						tms_last = m.tms;
+						perf = ( tms - tms_last ) / 1e3f;
+						tms_last = tms;
 
 					} else
 						tms_last = System.nanoTime() / 1000 - tms_start;
@@ -511,22 +548,15 @@ public class AnalysisModelService  {
 					current.tms = System.nanoTime() / 1000 ;
 					perf = ( current.tms - tms_last ) / 1e3f;
 					tms_last = current.tms;
-
-					// Slow down conversion if not recording or armed
-					if(!state.getArmedProperty().get()) {
-//						while((200000000  - (System.nanoTime()-wait)) > 0) {
-//							LockSupport.parkNanos(1000000);
-//						}
-						LockSupport.parkNanos(200000000 - (System.nanoTime()-wait) - 2500000 );
-						continue;
-					}
 				}
-				
-//				while((collector_interval_us*1000 - (System.nanoTime()-wait)) > 0) {
-//					LockSupport.parkNanos(100000);
-//				}
 
-				LockSupport.parkNanos(collector_interval_us*1000 - (System.nanoTime()-wait) - 3000000 );
+				// Slow down conversion if not recording or armed
+				final long interval_ns = mode==STOPPED && !state.getArmedProperty().get()
+						? IDLE_INTERVAL_NS : collector_interval_us * 1000L;
+				if(interval_ns != clock.getInterval())
+					clock.reset(interval_ns, interval_ns <= HISPEED_INTERVAL_US * 1000L);
+
+				skipped = clock.await();
 			}
 		}
 	}
@@ -0,0 +1,200 @@
+/****************************************************************************
+ *
+ *   Copyright (c) 2017,2021 Eike Mansfeld ecm@gmx.de. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ ****************************************************************************/
+
+package com.comino.flight.model.service;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Paces the collector on an absolute grid of tick times. Waiting parks the thread until shortly
+ * before the deadline and, if spinning is enabled, spins for the remaining time. A cycle that
+ * overruns by whole intervals skips these ticks and reports them to the caller, otherwise the next
+ * tick follows earlier to catch up.
+ *
+ * Wake-up jitter and overruns are collected in histograms, evaluated once per second.
+ */
+
+public class CollectorClock {
+
+	public static final long SPIN_NS        = 500_000L;
+
+	private static final long WINDOW_NS      = 1_000_000_000L;
+	private static final int  BUCKET_US      = 50;
+	private static final int  JITTER_BUCKETS = 200;
+	private static final int  OVERRUN_BUCKETS = 5;
+
+	private final long[] jitter  = new long[JITTER_BUCKETS];
+	private final long[] overrun = new long[OVERRUN_BUCKETS];
+
+	private long    interval_ns = 0;
+	private long    deadline    = 0;
+	private boolean spin        = false;
+
+	private long    window_start = 0;
+	private long    jitter_max   = 0;
+	private long    ticks        = 0;
+	private long    skipped      = 0;
+
+	private float   jitter_p50_ms = 0;
+	private float   jitter_p99_ms = 0;
+	private float   jitter_max_ms = 0;
+	private float   skipped_rate  = 0;
+	private long[]  last_overrun  = new long[OVERRUN_BUCKETS];
+
+	/*
+	 * Starts a new grid with the first tick one interval from now.
+	 */
+	public void reset(long interval_ns, boolean spin) {
+		this.interval_ns = interval_ns;
+		this.spin        = spin;
+		this.deadline    = System.nanoTime() + interval_ns;
+		clearWindow(System.nanoTime());
+	}
+
+	/*
+	 * Starts a new grid with the current interval, e.g. after the collector was paused.
+	 */
+	public void restart() {
+		reset(interval_ns, spin);
+	}
+
+	public long getInterval() {
+		return interval_ns;
+	}
+
+	/*
+	 * Waits for the next tick and returns the number of ticks skipped before it.
+	 */
+	public int await() {
+
+		if(spin) {
+			parkUntil(deadline - SPIN_NS);
+			while(System.nanoTime() - deadline < 0)
+				Thread.onSpinWait();
+		} else
+			parkUntil(deadline);
+
+		final long now  = System.nanoTime();
+		long late = now - deadline;
+		int  skip = 0;
+
+		if(late >= interval_ns) {
+			skip = (int)(late / interval_ns);
+			late     -= skip * interval_ns;
+			deadline += skip * interval_ns;
+			overrun[Math.min(skip, OVERRUN_BUCKETS) - 1]++;
+			skipped += skip;
+		}
+
+		jitter[(int)Math.min(late / 1000 / BUCKET_US, JITTER_BUCKETS - 1)]++;
+		if(late > jitter_max)
+			jitter_max = late;
+		ticks++;
+
+		deadline += interval_ns;
+
+		if(now - window_start >= WINDOW_NS)
+			evaluate(now);
+
+		return skip;
+	}
+
+	public float getJitterP50() {
+		return jitter_p50_ms;
+	}
+
+	public float getJitterP99() {
+		return jitter_p99_ms;
+	}
+
+	public float getJitterMax() {
+		return jitter_max_ms;
+	}
+
+	/*
+	 * Skipped ticks per second
+	 */
+	public float getSkippedRate() {
+		return skipped_rate;
+	}
+
+	/*
+	 * Number of overruns of the last window by skipped ticks (1,2,3,4,5 and more)
+	 */
+	public long[] getOverrunHistogram() {
+		return last_overrun;
+	}
+
+	public String toString() {
+		return String.format("Collector jitter p50 %.2fms p99 %.2fms max %.2fms, skipped %.1f/s, overruns %s",
+				jitter_p50_ms, jitter_p99_ms, jitter_max_ms, skipped_rate, Arrays.toString(last_overrun));
+	}
+
+	private void evaluate(long now) {
+		jitter_p50_ms = percentile(0.50f);
+		jitter_p99_ms = percentile(0.99f);
+		jitter_max_ms = jitter_max / 1e6f;
+		skipped_rate  = skipped * 1e9f / (now - window_start);
+		last_overrun  = overrun.clone();
+		clearWindow(now);
+	}
+
+	private float percentile(float p) {
+		if(ticks == 0)
+			return 0;
+		final long rank = (long)Math.ceil(ticks * p);
+		long count = 0;
+		for(int i = 0; i < JITTER_BUCKETS; i++) {
+			count += jitter[i];
+			if(count >= rank)
+				return (i + 1) * BUCKET_US / 1000f;
+		}
+		return JITTER_BUCKETS * BUCKET_US / 1000f;
+	}
+
+	private void clearWindow(long now) {
+		Arrays.fill(jitter, 0);
+		Arrays.fill(overrun, 0);
+		jitter_max   = 0;
+		ticks        = 0;
+		skipped      = 0;
+		window_start = now;
+	}
+
+	private static void parkUntil(long time) {
+		long remaining;
+		while((remaining = time - System.nanoTime()) > 0)
+			LockSupport.parkNanos(remaining);
+	}
+}
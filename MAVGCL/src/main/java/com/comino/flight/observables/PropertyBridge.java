@@ -0,0 +1,91 @@
+/****************************************************************************
+ *
+ *   Copyright (c) 2017,2021 Eike Mansfeld ecm@gmx.de. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ ****************************************************************************/
+
+package com.comino.flight.observables;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.comino.flight.ui.FrameScheduler;
+
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.value.WritableValue;
+
+/*
+ * Propagates property changes from any thread to the FX thread. Updates are posted to the
+ * FrameScheduler keyed by property, so only the latest value of each property is applied in the
+ * next pulse, together with all other UI updates of that frame.
+ */
+
+public class PropertyBridge {
+
+	private static final AtomicLong update_count = new AtomicLong();
+
+	private static long  rate_count = 0;
+	private static long  rate_tms   = 0;
+	private static float rate       = 0;
+
+	private final FrameScheduler scheduler = FrameScheduler.getInstance();
+
+	public <T> void set(WritableValue<T> property, T value) {
+		scheduler.post(property, () -> {
+			update_count.incrementAndGet();
+			property.setValue(value);
+		});
+	}
+
+	/*
+	 * Passes the property through true before setting the value, so listeners are notified about
+	 * a false value even if the property already holds it.
+	 */
+	public void refresh(BooleanProperty property, boolean value) {
+		scheduler.post(property, () -> {
+			update_count.incrementAndGet();
+			property.set(true);
+			property.set(value);
+		});
+	}
+
+	/*
+	 * Number of property updates applied per second of all bridges.
+	 */
+	public static synchronized float getUpdateRate() {
+		final long tms = System.currentTimeMillis();
+		if(tms - rate_tms >= 1000) {
+			final long count = update_count.get();
+			if(rate_tms > 0)
+				rate = (count - rate_count) * 1000f / (tms - rate_tms);
+			rate_count = count; rate_tms = tms;
+		}
+		return rate;
+	}
+}
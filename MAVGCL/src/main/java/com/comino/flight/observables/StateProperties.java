@@ -44,7 +44,6 @@ import com.comino.mavcom.status.StatusManager;
 import com.comino.mavutils.workqueue.WorkQueue;
 import com.comino.speech.VoiceTTS;
 
-import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.FloatProperty;
 import javafx.beans.property.IntegerProperty;
@@ -102,6 +101,7 @@ public class StateProperties {
 	private MSPLogger logger;
 	
 	private final WorkQueue wq = WorkQueue.getInstance();
+	private final PropertyBridge bridge = new PropertyBridge();
 	
 
 
@@ -126,16 +126,11 @@ public class StateProperties {
 		wq.addSingleTask("LP", 2000, () ->  isInitializedProperty.set(true) );
 
 		control.getStatusManager().addListener(Status.MSP_ACTIVE, (n) -> {
-			Platform.runLater(()-> {
-			isMSPAvailable.set(n.isStatus(Status.MSP_ACTIVE));
-			});
+			bridge.set(isMSPAvailable, n.isStatus(Status.MSP_ACTIVE));
 		});
 
 		control.getStatusManager().addListener(Status.MSP_ARMED, (n) -> {
-			Platform.runLater(()-> {
-			  armedProperty.set(n.isStatus(Status.MSP_ARMED));
-			});
-
+			bridge.set(armedProperty, n.isStatus(Status.MSP_ARMED));
 		});
 
 		control.getStatusManager().addListener(Status.MSP_CONNECTED, (n) -> {
@@ -144,18 +139,12 @@ public class StateProperties {
 				
 				control.getStatusManager().reset(); 
 				
-				isGPSAvailable.set(true);
-				isGPSAvailable.set(n.isSensorAvailable(Status.MSP_GPS_AVAILABILITY));
-				isCVAvailable.set(true);
-				isCVAvailable.set(n.isSensorAvailable(Status.MSP_OPCV_AVAILABILITY));
-				isSLAMAvailable.set(true);
-				isSLAMAvailable.set(n.isSensorAvailable(Status.MSP_SLAM_AVAILABILITY));
-				isMSPAvailable.set(true);
-				isMSPAvailable.set(n.isSensorAvailable(Status.MSP_MSP_AVAILABILITY));
-				Platform.runLater(() -> {
-					simulationProperty.set(n.isStatus(Status.MSP_SITL));
-			    	connectedProperty.set(n.isStatus(Status.MSP_CONNECTED));
-				});
+				bridge.refresh(isGPSAvailable, n.isSensorAvailable(Status.MSP_GPS_AVAILABILITY));
+				bridge.refresh(isCVAvailable, n.isSensorAvailable(Status.MSP_OPCV_AVAILABILITY));
+				bridge.refresh(isSLAMAvailable, n.isSensorAvailable(Status.MSP_SLAM_AVAILABILITY));
+				bridge.refresh(isMSPAvailable, n.isSensorAvailable(Status.MSP_MSP_AVAILABILITY));
+				bridge.set(simulationProperty, n.isStatus(Status.MSP_SITL));
+				bridge.set(connectedProperty, n.isStatus(Status.MSP_CONNECTED));
 				
 			});
 			
@@ -169,87 +158,59 @@ public class StateProperties {
 		});
 
 		control.getStatusManager().addListener(Status.MSP_LANDED, (n) -> {
-			Platform.runLater(()-> {
-		    	landedProperty.set(n.isStatus(Status.MSP_LANDED));
-			});
+			bridge.set(landedProperty, n.isStatus(Status.MSP_LANDED));
 		});
 
 		control.getStatusManager().addListener(StatusManager.TYPE_PX4_NAVSTATE, Status.NAVIGATION_STATE_ALTCTL,  (n) -> {
-			Platform.runLater(()-> {
-			altholdProperty.set(n.nav_state == Status.NAVIGATION_STATE_ALTCTL);
-			});
+			bridge.set(altholdProperty, n.nav_state == Status.NAVIGATION_STATE_ALTCTL);
 		});
 
 		control.getStatusManager().addListener(StatusManager.TYPE_PX4_NAVSTATE, Status.NAVIGATION_STATE_POSCTL, (n) -> {
-			Platform.runLater(()-> {
-			posholdProperty.set(n.nav_state == Status.NAVIGATION_STATE_POSCTL);
-			});
+			bridge.set(posholdProperty, n.nav_state == Status.NAVIGATION_STATE_POSCTL);
 		});
 
 		control.getStatusManager().addListener(StatusManager.TYPE_PX4_NAVSTATE, Status.NAVIGATION_STATE_OFFBOARD, (n) -> {
-			Platform.runLater(()-> {
-			offboardProperty.set(n.nav_state == Status.NAVIGATION_STATE_OFFBOARD);
-			});
+			bridge.set(offboardProperty, n.nav_state == Status.NAVIGATION_STATE_OFFBOARD);
 		});
 
 		control.getStatusManager().addListener(StatusManager.TYPE_PX4_NAVSTATE, Status.NAVIGATION_STATE_AUTO_LOITER, (n) -> {
-			Platform.runLater(()-> {
-			holdProperty.set(n.nav_state == Status.NAVIGATION_STATE_AUTO_LOITER);
-			});
+			bridge.set(holdProperty, n.nav_state == Status.NAVIGATION_STATE_AUTO_LOITER);
 		});
 
 		control.getStatusManager().addListener(StatusManager.TYPE_MSP_SERVICES,Status.MSP_GPS_AVAILABILITY, (n) -> {
-			Platform.runLater(()-> {
-			isGPSAvailable.set(n.isSensorAvailable(Status.MSP_GPS_AVAILABILITY));
-			});
+			bridge.set(isGPSAvailable, n.isSensorAvailable(Status.MSP_GPS_AVAILABILITY));
 		});
 		
 		control.getStatusManager().addListener(StatusManager.TYPE_MSP_SERVICES,Status.MSP_MSP_AVAILABILITY, (n) -> {
-			Platform.runLater(()-> {
-			isMSPAvailable.set(n.isSensorAvailable(Status.MSP_MSP_AVAILABILITY));
-			});
+			bridge.set(isMSPAvailable, n.isSensorAvailable(Status.MSP_MSP_AVAILABILITY));
 		});
 		
 		control.getStatusManager().addListener(StatusManager.TYPE_MSP_SERVICES,Status.MSP_OPCV_AVAILABILITY, (n) -> {
-			Platform.runLater(()-> {
-			isCVAvailable.set(n.isSensorAvailable(Status.MSP_OPCV_AVAILABILITY));
-			});
+			bridge.set(isCVAvailable, n.isSensorAvailable(Status.MSP_OPCV_AVAILABILITY));
 		});
 		
 		control.getStatusManager().addListener(StatusManager.TYPE_MSP_SERVICES,Status.MSP_SLAM_AVAILABILITY, (n) -> {
-			Platform.runLater(()-> {
-			isSLAMAvailable.set(n.isSensorAvailable(Status.MSP_SLAM_AVAILABILITY));
-			});
+			bridge.set(isSLAMAvailable, n.isSensorAvailable(Status.MSP_SLAM_AVAILABILITY));
 		});
 		
 		control.getStatusManager().addListener(StatusManager.TYPE_MSP_SERVICES,Status.MSP_FIDUCIAL_LOCKED, (n) -> {
-			Platform.runLater(()-> {
-			isFiducialLocked.set(n.isSensorAvailable(Status.MSP_FIDUCIAL_LOCKED));
-			});
+			bridge.set(isFiducialLocked, n.isSensorAvailable(Status.MSP_FIDUCIAL_LOCKED));
 		});
 		
 		control.getStatusManager().addListener(Status.MSP_RC_ATTACHED, (n) -> {
-			Platform.runLater(()-> {
-			rcProperty.set(n.isStatus(Status.MSP_RC_ATTACHED));
-			});
+			bridge.set(rcProperty, n.isStatus(Status.MSP_RC_ATTACHED));
 		});
 
 		control.getStatusManager().addListener(Status.MSP_IMU_AVAILABILITY, (n) -> {
-			Platform.runLater(()-> {
-			isIMUAvailable.set(n.isStatus(Status.MSP_IMU_AVAILABILITY));
-			});
+			bridge.set(isIMUAvailable, n.isStatus(Status.MSP_IMU_AVAILABILITY));
 		});
 
 		control.getStatusManager().addListener(Status.MSP_GPOS_VALID, (n) -> {
-			Platform.runLater(()-> {
-			isGPOSAvailable.set(n.isStatus(Status.MSP_GPOS_VALID));
-			});
+			bridge.set(isGPOSAvailable, n.isStatus(Status.MSP_GPOS_VALID));
 		});
 
 		control.getStatusManager().addListener(Status.MSP_LPOS_VALID, (n) -> {
-			Platform.runLater(()-> {
-			isLPOSAvailable.set(n.isStatus(Status.MSP_LPOS_VALID));
-			});
+			bridge.set(isLPOSAvailable, n.isStatus(Status.MSP_LPOS_VALID));
 		});
 
 		if(MAVPreferences.getInstance().getBoolean("SPEECH", false)) {
@@ -266,16 +227,14 @@ public class StateProperties {
 	
 	public void reset() {
 		control.getStatusManager().reset();
-		Platform.runLater(()-> {
-		isGPOSAvailable.set(false);
-		isLPOSAvailable.set(false);
-		rcProperty.set(false);
-		isSLAMAvailable.set(false);
-		isGPSAvailable.set(false);
-		isCVAvailable.set(false);
-		isIMUAvailable.set(false);
-		isMSPAvailable.set(false);
-		});
+		bridge.set(isGPOSAvailable, false);
+		bridge.set(isLPOSAvailable, false);
+		bridge.set(rcProperty, false);
+		bridge.set(isSLAMAvailable, false);
+		bridge.set(isGPSAvailable, false);
+		bridge.set(isCVAvailable, false);
+		bridge.set(isIMUAvailable, false);
+		bridge.set(isMSPAvailable, false);
 		
 	}
 
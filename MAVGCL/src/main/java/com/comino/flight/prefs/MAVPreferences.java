@@ -62,6 +62,9 @@ public class MAVPreferences {
 	public final static String XYCHART_SLAM     = "XYCHARTSLAM";
 	public final static String XYCHART_TRAJ     = "XYCHARTTRAJ";
 	public final static String ULOGGER          = "ULOGGER";
+	public final static String ULOG_NATIVE      = "ULOGNATIVE";
+	public final static String ULOG_ON_RECORD   = "ULOGONRECORD";
+	public final static String ULOG_STREAM_FILE = "ULOGSTREAMFILE";
 	public final static String TUNING_GROUP     = "TUNING_GROUP";
 	public final static String CTRLPOS          = "CTRLPOS";
 	public final static String RTKSVINACC       = "RTKSVINACC";
@@ -77,6 +80,7 @@ public class MAVPreferences {
 	public static final String ALERT            = "ALERT";
 	public static final String ICAO             = "ICAO";
 	public static final String VIEW             = "VIEW";
+	public static final String CANVAS_CHARTS    = "CANVASCHARTS";
 	
 	public static final String USER_PREC_LOCK   = "USER_PRECISION_LOCK";
 
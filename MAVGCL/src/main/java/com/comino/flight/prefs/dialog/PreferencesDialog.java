@@ -114,6 +114,9 @@ public class PreferencesDialog  {
 	@FXML
 	private CheckBox alert;
 
+	@FXML
+	private CheckBox canvas;
+
 	@FXML
 	private TextField svinacc;
 
@@ -226,6 +229,7 @@ public class PreferencesDialog  {
 		debug.selectedProperty().set(userPrefs.getBoolean(MAVPreferences.DEBUG_MSG, true));
 		download.selectedProperty().set(userPrefs.getBoolean(MAVPreferences.DOWNLOAD, true));
 		alert.selectedProperty().set(userPrefs.getBoolean(MAVPreferences.ALERT, false));
+		canvas.selectedProperty().set(userPrefs.getBoolean(MAVPreferences.CANVAS_CHARTS, false));
 		icao.setText(userPrefs.get(MAVPreferences.ICAO, "EDDM"));
 
 		if(prefDialog.showAndWait().get().booleanValue()) {
@@ -247,6 +251,7 @@ public class PreferencesDialog  {
 			userPrefs.putBoolean(MAVPreferences.DEBUG_MSG,debug.isSelected());
 			userPrefs.putBoolean(MAVPreferences.DOWNLOAD,download.isSelected());
 			userPrefs.putBoolean(MAVPreferences.ALERT,alert.isSelected());
+			userPrefs.putBoolean(MAVPreferences.CANVAS_CHARTS,canvas.isSelected());
 			userPrefs.put(MAVPreferences.ICAO, icao.getText());
 
 			StateProperties.getInstance().preferencesChangedProperty().set(true);
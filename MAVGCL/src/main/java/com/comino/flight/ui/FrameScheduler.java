@@ -0,0 +1,222 @@
+/****************************************************************************
+ *
+ *   Copyright (c) 2017,2021 Eike Mansfeld ecm@gmx.de. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ ****************************************************************************/
+
+package com.comino.flight.ui;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+
+import com.comino.flight.prefs.MAVPreferences;
+
+import javafx.animation.AnimationTimer;
+
+/*
+ * One AnimationTimer for all periodic UI updates. Tasks are registered with a priority and a target
+ * rate and are executed by priority within a frame budget. LOW tasks are deferred to the next pulse
+ * if the budget is already used up. Property updates posted from any thread (see PropertyBridge)
+ * are coalesced per key, so only the latest one is applied in the next pulse.
+ */
+
+public class FrameScheduler {
+
+	public static final int HIGH   = 0;
+	public static final int NORMAL = 1;
+	public static final int LOW    = 2;
+
+	private static final long FRAME_BUDGET_NS = 8_000_000L;
+	private static final long REPORT_NS       = 10_000_000_000L;
+
+	private static FrameScheduler instance = null;
+
+	private final List<Task>              tasks   = new ArrayList<Task>();
+	private final Map<Object,Runnable>    pending = new ConcurrentHashMap<Object,Runnable>();
+
+	private final AnimationTimer timer;
+
+	private volatile float frame_cost_ms = 0;
+	private long           last_report   = 0;
+
+	public static synchronized FrameScheduler getInstance() {
+		if(instance==null)
+			instance = new FrameScheduler();
+		return instance;
+	}
+
+	private FrameScheduler() {
+		this.timer = new AnimationTimer() {
+			@Override
+			public void handle(long now) {
+				pulse(now);
+			}
+		};
+		this.timer.start();
+	}
+
+	/*
+	 * Registers an update callback. rate_hz <= 0 executes the task in every pulse. The task is
+	 * initially stopped.
+	 */
+	public Task register(String name, int priority, float rate_hz, LongConsumer update) {
+		final Task task = new Task(name, priority, rate_hz, update);
+		synchronized(tasks) {
+			tasks.add(task);
+			Collections.sort(tasks, Comparator.comparingInt((Task t) -> t.priority));
+		}
+		return task;
+	}
+
+	public void unregister(Task task) {
+		synchronized(tasks) {
+			tasks.remove(task);
+		}
+	}
+
+	/*
+	 * Applies update in the next pulse. A later post with the same key replaces a pending one.
+	 * Can be called from any thread.
+	 */
+	public void post(Object key, Runnable update) {
+		pending.put(key, update);
+	}
+
+	public float getFrameCost() {
+		return frame_cost_ms;
+	}
+
+	public String getReport() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append(String.format("Frame cost: %.2fms%n", frame_cost_ms));
+		synchronized(tasks) {
+			for(Task t : tasks)
+				sb.append(String.format("  %-20s prio %d %6.0fus avg %6.0fus max %5d skipped%n",
+						t.name, t.priority, t.cost_ns / 1e3, t.max_ns / 1e3, t.skipped));
+		}
+		return sb.toString();
+	}
+
+	private void pulse(long now) {
+
+		final long start = System.nanoTime();
+
+		if(!pending.isEmpty()) {
+			final Iterator<Map.Entry<Object,Runnable>> i = pending.entrySet().iterator();
+			while(i.hasNext()) {
+				final Map.Entry<Object,Runnable> e = i.next();
+				// a newer update posted meanwhile stays pending for the next pulse
+				if(!pending.remove(e.getKey(), e.getValue()))
+					continue;
+				try {
+					e.getValue().run();
+				} catch(Exception ex) { ex.printStackTrace(); }
+			}
+		}
+
+		synchronized(tasks) {
+			for(Task t : tasks) {
+				if(!t.running || (now - t.last) < t.period_ns)
+					continue;
+				if(t.priority >= LOW && (System.nanoTime() - start) > FRAME_BUDGET_NS) {
+					t.skipped++;
+					continue;
+				}
+				t.last = now;
+				final long tms = System.nanoTime();
+				try {
+					t.update.accept(now);
+				} catch(Exception e) { e.printStackTrace(); }
+				t.measure(System.nanoTime() - tms);
+			}
+		}
+
+		frame_cost_ms = frame_cost_ms * 0.95f + (System.nanoTime() - start) / 1e6f * 0.05f;
+
+		if((now - last_report) > REPORT_NS) {
+			if(last_report > 0 && MAVPreferences.getInstance().getBoolean(MAVPreferences.DEBUG_MSG, false))
+				System.out.print(getReport());
+			last_report = now;
+		}
+	}
+
+	public class Task {
+
+		private final String       name;
+		private final int          priority;
+		private final long         period_ns;
+		private final LongConsumer update;
+
+		private volatile boolean running = false;
+		private long             last    = 0;
+
+		private double cost_ns = 0;
+		private long   max_ns  = 0;
+		private long   skipped = 0;
+
+		private Task(String name, int priority, float rate_hz, LongConsumer update) {
+			this.name      = name;
+			this.priority  = priority;
+			this.period_ns = rate_hz > 0 ? (long)(1e9 / rate_hz) : 0;
+			this.update    = update;
+		}
+
+		public void start() {
+			running = true;
+		}
+
+		public void stop() {
+			running = false;
+		}
+
+		public boolean isRunning() {
+			return running;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public double getCost() {
+			return cost_ns / 1e6;
+		}
+
+		private void measure(long ns) {
+			cost_ns = cost_ns == 0 ? ns : cost_ns * 0.95 + ns * 0.05;
+			if(ns > max_ns) max_ns = ns;
+		}
+	}
+}
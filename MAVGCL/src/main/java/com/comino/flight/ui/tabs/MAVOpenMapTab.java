@@ -60,6 +60,7 @@ import com.comino.flight.model.service.AnalysisModelService;
 import com.comino.flight.model.service.ICollectorRecordingListener;
 import com.comino.flight.observables.StateProperties;
 import com.comino.flight.prefs.MAVPreferences;
+import com.comino.flight.ui.FrameScheduler;
 import com.comino.flight.ui.widgets.charts.IChartControl;
 import com.comino.flight.ui.widgets.gps.details.GPSDetailsWidget;
 import com.comino.flight.ui.widgets.panel.AirWidget;
@@ -71,7 +72,6 @@ import com.comino.openmapfx.ext.CanvasLayer;
 import com.comino.openmapfx.ext.GoogleMapsTileProvider;
 import com.comino.openmapfx.ext.OpenTopoMapTileProvider;
 
-import javafx.animation.AnimationTimer;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.application.Platform;
@@ -153,7 +153,7 @@ public class MAVOpenMapTab extends BorderPane implements IChartControl {
 	//	private LicenceLayer  		licenceLayer;
 	private CanvasLayer			canvasLayer;
 
-	private AnimationTimer task = null;
+	private FrameScheduler.Task task = null;
 
 	private AnalysisDataModel model;
 	private int type = 0;
@@ -192,12 +192,9 @@ public class MAVOpenMapTab extends BorderPane implements IChartControl {
 
 		this.state = StateProperties.getInstance();
 
-		task = new AnimationTimer() {
-			@Override
-			public void handle(long now) {
-				updateMap(true);
-			}		
-		};
+		task = FrameScheduler.getInstance().register("Map", FrameScheduler.NORMAL, 0, (now) -> {
+			updateMap(true);
+		});
 
 	}
 
@@ -567,9 +564,9 @@ public class MAVOpenMapTab extends BorderPane implements IChartControl {
 		case 1:
 			MSPMathUtils.map_projection_init(preferences.getDouble(MAVPreferences.REFLAT, 0),
 					preferences.getDouble(MAVPreferences.REFLON, 0));
-			MSPMathUtils.map_projection_reproject((float)model.getValue("LPOSX"),
-					(float)model.getValue("LPOSY"),
-					(float)model.getValue("LPOSZ"), pos);
+			MSPMathUtils.map_projection_reproject((float)model.getValue("LPOSX", 0),
+					(float)model.getValue("LPOSY", 0),
+					(float)model.getValue("LPOSZ", 0), pos);
 
 			break;
 		case 2:
@@ -578,23 +575,23 @@ public class MAVOpenMapTab extends BorderPane implements IChartControl {
 			break;
 		}
 
-		if(model.getValue("SLAMDIR") !=0) {
+		if(Double.isFinite(model.getValue("SLAMDIR")) && model.getValue("SLAMDIR") !=0) {
 			targetLayer.setVisible(true);
-			MSPMathUtils.map_projection_reproject((float)model.getValue("SLAMPX"),
-					(float)model.getValue("SLAMPY"),
-					(float)model.getValue("SLAMPZ"), tar);
+			MSPMathUtils.map_projection_reproject((float)model.getValue("SLAMPX", 0),
+					(float)model.getValue("SLAMPY", 0),
+					(float)model.getValue("SLAMPZ", 0), tar);
 			targetLayer.updatePosition(tar[0], tar[1]);
 		} else
 			targetLayer.setVisible(false);
 
 		//	canvasLayer.redraw(refreshCanvas);
 
-		if(centermode==0 && pos[0]!=0)
+		if(centermode==0 && Double.isFinite(pos[0]) && pos[0]!=0)
 			map.setCenter(pos[0],pos[1]);
 
 		try {
 			if(type!=1) {
-				if(model.getValue("HOMLAT")!=0 && model.getValue("HOMLON")!=0) {
+				if(hasPosition("HOMLAT","HOMLON")) {
 					//map.setCenter(model.gps.ref_lat, model.gps.ref_lon);
 					homeLayer.setVisible(true);
 					homeLayer.updatePosition(model.getValue("HOMLAT"), model.getValue("HOMLON"));
@@ -606,7 +603,7 @@ public class MAVOpenMapTab extends BorderPane implements IChartControl {
 						preferences.getDouble(MAVPreferences.REFLON,0));
 			}
 
-			if(model.getValue("BASELAT")!=0 && model.getValue("BASELON")!=0) {
+			if(hasPosition("BASELAT","BASELON")) {
 				baseLayer.setVisible(true);
 				baseLayer.updatePosition(model.getValue("BASELAT"), model.getValue("BASELON"));
 			} else
@@ -636,21 +633,26 @@ public class MAVOpenMapTab extends BorderPane implements IChartControl {
 		return null;
 	}
 
+	private boolean hasPosition(String lat, String lon) {
+		return Double.isFinite(model.getValue(lat)) && model.getValue(lat)!=0 &&
+				Double.isFinite(model.getValue(lon)) && model.getValue(lon)!=0;
+	}
+
 	private void setCenter(int mode) {
 		switch(mode) {
 		case 1:
-			if(model.getValue("HOMLAT")!=0 && type!=1)
+			if(hasPosition("HOMLAT","HOMLON") && type!=1)
 				map.setCenter(model.getValue("HOMLAT"), model.getValue("HOMLON"));
 			else
 				map.setCenter(preferences.getDouble(MAVPreferences.REFLAT,0),
 						preferences.getDouble(MAVPreferences.REFLON,0));
 			break;
 		case 2:
-			if(model.getValue("BASELAT")!=0)
+			if(hasPosition("BASELAT","BASELON"))
 				map.setCenter(model.getValue("BASELAT"), model.getValue("BASELON"));
 			break;
 		case 3:
-			if(takeoff_lat!=0)
+			if(Double.isFinite(takeoff_lat) && takeoff_lat!=0)
 				map.setCenter(takeoff_lat, takeoff_lon);
 			break;
 		}
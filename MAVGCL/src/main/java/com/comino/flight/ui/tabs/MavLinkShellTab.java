@@ -44,10 +44,10 @@ import org.mavlink.messages.lquac.msg_serial_control;
 
 import com.comino.flight.FXMLLoadHelper;
 import com.comino.flight.observables.StateProperties;
+import com.comino.flight.ui.FrameScheduler;
 import com.comino.mavcom.control.IMAVController;
 import com.comino.mavcom.mavlink.IMAVLinkListener;
 
-import javafx.animation.AnimationTimer;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.application.Platform;
@@ -75,7 +75,7 @@ public class MavLinkShellTab extends Pane implements IMAVLinkListener  {
 
 	private int index = 0;
 
-	private AnimationTimer out = null;
+	private FrameScheduler.Task out = null;
 	private ConcurrentLinkedQueue<String> buffer = new ConcurrentLinkedQueue<String>();
 
 	private char[] bytes = new char[132];
@@ -94,18 +94,15 @@ public class MavLinkShellTab extends Pane implements IMAVLinkListener  {
 	private void initialize() {
 
 		
-		this.out = new AnimationTimer() {
-			@Override
-			public void handle(long now) {
-				if(buffer.isEmpty())
-					return;
-
-				while(!buffer.isEmpty())
-					console.appendText(buffer.poll());
-				index = console.getText().length();
-				scrollIntoView();
-			}
-		};
+		this.out = FrameScheduler.getInstance().register("Shell", FrameScheduler.LOW, 0, (now) -> {
+			if(buffer.isEmpty())
+				return;
+
+			while(!buffer.isEmpty())
+				console.appendText(buffer.poll());
+			index = console.getText().length();
+			scrollIntoView();
+		});
 
 		console.prefHeightProperty().bind(heightProperty().subtract(2));
 		console.prefWidthProperty().bind(widthProperty());
@@ -128,16 +128,16 @@ public class XYSlamAnnotation  implements XYAnnotation {
 		if(model==null)
 			return;
 
-		vhc.setLayoutX(xAxis.getDisplayPosition(model.getValue("LPOSY")));
-		vhc.setLayoutY(yAxis.getDisplayPosition(model.getValue("LPOSX")));
-		vhc_rotate.angleProperty().set(180+MSPMathUtils.fromRad(model.getValue("YAW")));
+		vhc.setLayoutX(xAxis.getDisplayPosition(model.getValue("LPOSY", 0)));
+		vhc.setLayoutY(yAxis.getDisplayPosition(model.getValue("LPOSX", 0)));
+		vhc_rotate.angleProperty().set(180+MSPMathUtils.fromRad(model.getValue("YAW", 0)));
 
 
 		if(model.getValue("SLAMSPD") != 0 && !Double.isNaN(model.getValue("SLAMSPD"))) {
 			setArrowLength(plan_dir,(float)model.getValue("SLAMSPD")*50);
-			plan_dir.setLayoutX(xAxis.getDisplayPosition(model.getValue("LPOSY")));
-			plan_dir.setLayoutY(yAxis.getDisplayPosition(model.getValue("LPOSX")));
-			plan_rotate.angleProperty().set(180+MSPMathUtils.fromRad(model.getValue("SLAMDIR")));
+			plan_dir.setLayoutX(xAxis.getDisplayPosition(model.getValue("LPOSY", 0)));
+			plan_dir.setLayoutY(yAxis.getDisplayPosition(model.getValue("LPOSX", 0)));
+			plan_rotate.angleProperty().set(180+MSPMathUtils.fromRad(model.getValue("SLAMDIR", 0)));
 			plan_dir.setVisible(true);
 
 
@@ -151,15 +151,16 @@ public class XYSlamAnnotation  implements XYAnnotation {
 //			lock.setLayoutX(xAxis.getDisplayPosition(model.getValue("PRECLOCKY")+model.getValue("LPOSY")));
 //			lock.setLayoutY(yAxis.getDisplayPosition(model.getValue("PRECLOCKX")+model.getValue("LPOSX")));
 			
-			lock_rotate.angleProperty().set(180+model.getValue("PRECLOCKW"));
-			lock.setLayoutX(xAxis.getDisplayPosition(model.getValue("PRECLOCKY")));
-			lock.setLayoutY(yAxis.getDisplayPosition(model.getValue("PRECLOCKX")));
+			lock_rotate.angleProperty().set(180+model.getValue("PRECLOCKW", 0));
+			lock.setLayoutX(xAxis.getDisplayPosition(model.getValue("PRECLOCKY", 0)));
+			lock.setLayoutY(yAxis.getDisplayPosition(model.getValue("PRECLOCKX", 0)));
 			lock.setVisible(true);
 		} else
 			lock.setVisible(false);
 			
 
-		if(model.getValue("SLAMOBX") != 0 && model.getValue("SLAMOBY") != 0 ) {
+		if(Double.isFinite(model.getValue("SLAMOBX")) && model.getValue("SLAMOBX") != 0
+				&& Double.isFinite(model.getValue("SLAMOBY")) && model.getValue("SLAMOBY") != 0) {
 
 			obstacle.setLayoutX(xAxis.getDisplayPosition(model.getValue("SLAMOBY"))-SIZE_OBS/2f);
 			obstacle.setLayoutY(yAxis.getDisplayPosition(model.getValue("SLAMOBX"))-SIZE_OBS/2f);
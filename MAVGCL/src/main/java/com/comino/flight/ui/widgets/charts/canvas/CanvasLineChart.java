@@ -0,0 +1,186 @@
+/****************************************************************************
+ *
+ *   Copyright (c) 2017,2021 Eike Mansfeld ecm@gmx.de. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ ****************************************************************************/
+
+package com.comino.flight.ui.widgets.charts.canvas;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.comino.jfx.extensions.SectionLineChart;
+
+import javafx.beans.NamedArg;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.chart.Axis;
+import javafx.scene.paint.Color;
+
+/*
+ * SectionLineChart, that optionally draws its traces as polylines on a canvas instead of series
+ * nodes. Axes, legend, annotations and mouse handling are those of the chart; the series stay in
+ * the chart for the legend but remain empty.
+ */
+
+public class CanvasLineChart extends SectionLineChart<Number,Number> {
+
+	// Modena default-color0..7, so that legend symbols match the traces
+	private static final Color[] COLORS = {
+			Color.web("#f3622d"), Color.web("#fba71b"), Color.web("#57b757"), Color.web("#41a9c9"),
+			Color.web("#4258c9"), Color.web("#9a42c8"), Color.web("#c84164"), Color.web("#888888")
+	};
+
+	private final Canvas          canvas = new Canvas();
+	private final List<LineTrace> traces = new ArrayList<LineTrace>();
+	private final List<Number>    range  = new ArrayList<Number>(2);
+
+	private boolean canvasRendering = false;
+	private double  lineWidth       = 1.0;
+
+	public CanvasLineChart(@NamedArg("xAxis")Axis<Number> xAxis, @NamedArg("yAxis")Axis<Number> yAxis) {
+		super(xAxis, yAxis);
+		canvas.setManaged(false);
+		canvas.setMouseTransparent(true);
+		canvas.setVisible(false);
+		getPlotChildren().add(0, canvas);
+	}
+
+	/*
+	 * Adds a trace, its color is the default color of the series with the same index
+	 */
+	public LineTrace addTrace() {
+		final LineTrace trace = new LineTrace(traces.size());
+		traces.add(trace);
+		return trace;
+	}
+
+	public void setCanvasRendering(boolean enabled) {
+		this.canvasRendering = enabled;
+		canvas.setVisible(enabled);
+		redraw();
+	}
+
+	public boolean isCanvasRendering() {
+		return canvasRendering;
+	}
+
+	public void setLineWidth(double width) {
+		this.lineWidth = width;
+	}
+
+	/*
+	 * Requests a repaint of the traces with the next layout pass; several requests within one pulse
+	 * are drawn once.
+	 */
+	public void redraw() {
+		if(!canvasRendering)
+			return;
+		updateAxisRange();
+		requestChartLayout();
+	}
+
+	@Override
+	protected void updateAxisRange() {
+		if(!canvasRendering) {
+			super.updateAxisRange();
+			return;
+		}
+		if(getXAxis().isAutoRanging() && determineRange(true))
+			getXAxis().invalidateRange(range);
+		if(getYAxis().isAutoRanging() && determineRange(false))
+			getYAxis().invalidateRange(range);
+	}
+
+	@Override
+	protected void layoutPlotChildren() {
+		super.layoutPlotChildren();
+		if(canvasRendering)
+			draw();
+	}
+
+	private void draw() {
+		final Axis<Number> xa = getXAxis();
+		final Axis<Number> ya = getYAxis();
+
+		final double w = xa.getWidth();
+		final double h = ya.getHeight();
+
+		if(canvas.getWidth() != w)  canvas.setWidth(w);
+		if(canvas.getHeight() != h) canvas.setHeight(h);
+
+		final GraphicsContext gc = canvas.getGraphicsContext2D();
+		gc.clearRect(0, 0, w, h);
+		gc.setLineWidth(lineWidth);
+
+		// linear axes: map values once to display positions instead of per point
+		final double x0 = xa.getDisplayPosition(0d); final double xs = xa.getDisplayPosition(1d) - x0;
+		final double y0 = ya.getDisplayPosition(0d); final double ys = ya.getDisplayPosition(1d) - y0;
+
+		for(LineTrace trace : traces) {
+			if(trace.size() < 2)
+				continue;
+			gc.setStroke(COLORS[trace.getColorIndex() % COLORS.length]);
+			gc.beginPath();
+			boolean pen = false;
+			for(int i = 0; i < trace.size(); i++) {
+				final double x = trace.getX(i); final double y = trace.getY(i);
+				if(!Double.isFinite(x) || !Double.isFinite(y)) {
+					pen = false;
+					continue;
+				}
+				if(pen)
+					gc.lineTo(x0 + x * xs, y0 + y * ys);
+				else
+					gc.moveTo(x0 + x * xs, y0 + y * ys);
+				pen = true;
+			}
+			gc.stroke();
+		}
+	}
+
+	private boolean determineRange(boolean x_axis) {
+		double min = Double.POSITIVE_INFINITY; double max = Double.NEGATIVE_INFINITY; double v;
+		for(LineTrace trace : traces) {
+			for(int i = 0; i < trace.size(); i++) {
+				v = x_axis ? trace.getX(i) : trace.getY(i);
+				if(!Double.isFinite(v))
+					continue;
+				if(v < min) min = v;
+				if(v > max) max = v;
+			}
+		}
+		range.clear();
+		if(min > max)
+			return false;
+		range.add(min); range.add(max);
+		return true;
+	}
+}
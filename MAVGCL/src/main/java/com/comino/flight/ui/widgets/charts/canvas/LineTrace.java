@@ -0,0 +1,99 @@
+/****************************************************************************
+ *
+ *   Copyright (c) 2017,2021 Eike Mansfeld ecm@gmx.de. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ ****************************************************************************/
+
+package com.comino.flight.ui.widgets.charts.canvas;
+
+/*
+ * Points of one canvas trace as primitive ring buffer. Removing the oldest point and appending a new
+ * one does not allocate.
+ */
+
+public class LineTrace {
+
+	private final int color;
+
+	private double[] x = new double[1024];
+	private double[] y = new double[1024];
+
+	private int head = 0;
+	private int size = 0;
+
+	LineTrace(int color) {
+		this.color = color;
+	}
+
+	public void add(double px, double py) {
+		if(size == x.length)
+			grow();
+		final int i = (head + size) & (x.length - 1);
+		x[i] = px; y[i] = py;
+		size++;
+	}
+
+	public void removeFirst() {
+		if(size == 0)
+			return;
+		head = (head + 1) & (x.length - 1);
+		size--;
+	}
+
+	public void clear() {
+		head = 0; size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public double getX(int index) {
+		return x[(head + index) & (x.length - 1)];
+	}
+
+	public double getY(int index) {
+		return y[(head + index) & (y.length - 1)];
+	}
+
+	public int getColorIndex() {
+		return color;
+	}
+
+	private void grow() {
+		final double[] nx = new double[x.length * 2];
+		final double[] ny = new double[y.length * 2];
+		for(int i = 0; i < size; i++) {
+			nx[i] = getX(i); ny[i] = getY(i);
+		}
+		x = nx; y = ny; head = 0;
+	}
+
+}
@@ -0,0 +1,195 @@
+/****************************************************************************
+ *
+ *   Copyright (c) 2017,2021 Eike Mansfeld ecm@gmx.de. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ ****************************************************************************/
+
+package com.comino.flight.ui.widgets.charts.line;
+
+import java.util.function.BooleanSupplier;
+
+import com.comino.flight.model.AnalysisDataStore;
+import com.comino.flight.model.KeyFigureMetaData;
+import com.comino.flight.model.LODPyramid;
+import com.comino.flight.ui.widgets.charts.utils.WindowDecimator;
+
+/*
+ * Plotted points of the series of a line chart for the sample range [from, to). Prepared off the FX
+ * thread from the store and handed over as a whole; the FX thread only adds the points.
+ */
+
+public class LineChartFrame {
+
+	// windows of at least this many samples are aggregated by the LOD pyramid instead of decimated
+	public static final int PYRAMID_LENGTH = 32;
+
+	public final int generation;
+	public final int from;
+	public final int to;
+
+	public final float[]    x;
+	public final double[][] y;
+	public int points = 0;
+
+	private LineChartFrame(int generation, int from, int to, int series, int capacity) {
+		this.generation = generation;
+		this.from       = from;
+		this.to         = to;
+		this.x          = new float[capacity];
+		this.y          = new double[series][capacity];
+	}
+
+	/*
+	 * Same reduction as the incremental update of the chart, null if cancelled. At coarse resolutions
+	 * only the plotted points are visited and their windows are aggregated by the pyramid.
+	 */
+	public static LineChartFrame prepare(int generation, AnalysisDataStore store, KeyFigureMetaData[] types,
+			int from, int to, int collector_interval, int resolution_ms, BooleanSupplier cancelled) {
+
+		final int set_length = resolution_ms / collector_interval;
+		final int point_step = resolution_ms / gcd(resolution_ms, collector_interval);
+
+		to = Math.min(to, store.size());
+
+		final LineChartFrame frame = new LineChartFrame(generation, from, Math.max(from, to), types.length,
+				Math.max(0, to - from) / point_step + 2);
+
+		if(set_length >= PYRAMID_LENGTH) {
+			final double[] range = new double[LODPyramid.RESULT_SIZE];
+			for(int x = Math.max(1, (from + point_step - 1) / point_step) * point_step; x < to; x += point_step) {
+				if(cancelled.getAsBoolean())
+					return null;
+				frame.x[frame.points] = (float)store.getTime(x, collector_interval);
+				for(int t = 0; t < types.length; t++)
+					frame.y[t][frame.points] = types[t].hash != 0
+					           ? determineValueFromRange(store, range, x, set_length, types[t], false)
+					           : Double.NaN;
+				frame.points++;
+			}
+			return frame;
+		}
+
+		final WindowDecimator[] decimators = new WindowDecimator[types.length];
+		for(int t = 0; t < types.length; t++)
+			decimators[t] = new WindowDecimator();
+
+		for(int x = Math.max(0, from - set_length + 1); x < from; x++)
+			push(store, types, decimators, x);
+
+		for(int x = from; x < to; x++) {
+
+			push(store, types, decimators, x);
+
+			if(((x * collector_interval) % resolution_ms) == 0 && x > 0) {
+				if(cancelled.getAsBoolean())
+					return null;
+				frame.x[frame.points] = (float)store.getTime(x, collector_interval);
+				for(int t = 0; t < types.length; t++)
+					frame.y[t][frame.points] = types[t].hash != 0
+					           ? determineValueFromRange(store, decimators[t], x, set_length, types[t], false)
+					           : Double.NaN;
+				frame.points++;
+			}
+
+			// skip samples not covered by the window of the next plotted point
+			if(point_step > set_length && (x + 1) % point_step != 0) {
+				final int next_x = ((x + 1) / point_step + 1) * point_step - set_length + 1;
+				if(next_x > x + 1)
+					x = next_x - 1;
+			}
+		}
+		return frame;
+	}
+
+	/*
+	 * Determines spikes or average, if not all datapoints are reported. The samples of the window
+	 * have been pushed to the decimator of the series before.
+	 */
+	public static double determineValueFromRange(AnalysisDataStore store, WindowDecimator decimator, int current_x,
+			int length, KeyFigureMetaData m, boolean average) {
+
+		if(current_x < 0 || current_x >= store.size() || current_x - length + 1 < 0)
+			return Double.NaN;
+
+		final double v_current_x = store.getValue(current_x, m);
+
+		if(Double.isNaN(v_current_x))
+			return Double.NaN;
+
+		if(length < 3)
+			return v_current_x;
+
+		if(average)
+			return decimator.average(current_x - length + 1);
+		return decimator.peak(current_x - length + 1);
+	}
+
+	/*
+	 * As above, the window is aggregated by the pyramid of the store; cost independent of the length
+	 */
+	public static double determineValueFromRange(AnalysisDataStore store, double[] range, int current_x,
+			int length, KeyFigureMetaData m, boolean average) {
+
+		if(current_x < 0 || current_x >= store.size() || current_x - length + 1 < 0)
+			return Double.NaN;
+
+		final double v_current_x = store.getValue(current_x, m);
+
+		if(Double.isNaN(v_current_x))
+			return Double.NaN;
+
+		if(length < 3)
+			return v_current_x;
+
+		if(!store.aggregate(m, current_x - length + 1, current_x + 1, range))
+			return v_current_x;
+
+		if(average)
+			return range[LODPyramid.MEAN];
+
+		// peak with the largest magnitude
+		if(Math.abs(range[LODPyramid.MIN]) > Math.abs(range[LODPyramid.MAX]))
+			return range[LODPyramid.MIN];
+		return range[LODPyramid.MAX];
+	}
+
+	public static int gcd(int a, int b) {
+		while(b != 0) {
+			final int t = a % b; a = b; b = t;
+		}
+		return a;
+	}
+
+	private static void push(AnalysisDataStore store, KeyFigureMetaData[] types, WindowDecimator[] decimators, int x) {
+		for(int t = 0; t < types.length; t++)
+			if(types[t].hash != 0)
+				decimators[t].push(x, store.getValue(x, types[t]));
+	}
+}
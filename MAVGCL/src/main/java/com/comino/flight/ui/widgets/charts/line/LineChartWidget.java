@@ -37,6 +37,9 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.prefs.Preferences;
 
 import javax.imageio.ImageIO;
@@ -46,6 +49,8 @@ import com.comino.flight.MainApp;
 import com.comino.flight.file.KeyFigurePreset;
 import com.comino.flight.model.AnalysisDataModel;
 import com.comino.flight.model.AnalysisDataModelMetaData;
+import com.comino.flight.model.AnalysisDataStore;
+import com.comino.flight.model.LODPyramid;
 import com.comino.flight.model.KeyFigureMetaData;
 import com.comino.flight.model.service.AnalysisModelService;
 import com.comino.flight.model.service.ICollectorRecordingListener;
@@ -56,11 +61,13 @@ import com.comino.flight.ui.widgets.charts.IChartSyncControl;
 import com.comino.flight.ui.widgets.charts.annotations.DashBoardAnnotation;
 import com.comino.flight.ui.widgets.charts.annotations.LineMessageAnnotation;
 import com.comino.flight.ui.widgets.charts.annotations.ModeAnnotation;
+import com.comino.flight.ui.widgets.charts.canvas.CanvasLineChart;
+import com.comino.flight.ui.widgets.charts.canvas.LineTrace;
 import com.comino.flight.ui.widgets.charts.utils.XYCollections;
 import com.comino.flight.ui.widgets.charts.utils.XYDataPool;
+import com.comino.flight.ui.widgets.charts.utils.WindowDecimator;
 import com.comino.flight.ui.widgets.charts.utils.XYObservableListWrapper;
 import com.comino.jfx.extensions.MovingAxis;
-import com.comino.jfx.extensions.SectionLineChart;
 import com.comino.jfx.extensions.XYAnnotations.Layer;
 import com.comino.mavcom.control.IMAVController;
 import com.google.gson.Gson;
@@ -110,7 +117,7 @@ public class LineChartWidget extends BorderPane implements IChartControl, IColle
 			"GPS Fixtype", "Offboard Phases", "Vision Subsystem", "EKF2 Height mode" };
 
 	@FXML
-	private SectionLineChart<Number, Number> linechart;
+	private CanvasLineChart linechart;
 
 	@FXML
 	private MovingAxis xAxis;
@@ -152,6 +159,10 @@ public class LineChartWidget extends BorderPane implements IChartControl, IColle
 	private  XYChart.Series<Number,Number> series2;
 	private  XYChart.Series<Number,Number> series3;
 
+	private LineTrace trace1;
+	private LineTrace trace2;
+	private LineTrace trace3;
+
 	private KeyFigureMetaData type1 = null;
 	private KeyFigureMetaData type2=  null;
 	private KeyFigureMetaData type3=  null;
@@ -180,6 +191,24 @@ public class LineChartWidget extends BorderPane implements IChartControl, IColle
 	private int   yoffset = 0;
 	private int   last_annotation_pos = 0;
 
+	private final double[] range = new double[LODPyramid.RESULT_SIZE];
+
+	private final WindowDecimator decimator1 = new WindowDecimator();
+	private final WindowDecimator decimator2 = new WindowDecimator();
+	private final WindowDecimator decimator3 = new WindowDecimator();
+	private int decimated_x_pt = -1;
+
+	// full refreshes are prepared off the FX thread, one worker for all line charts
+	private static final ExecutorService preparation = Executors.newSingleThreadExecutor((r) -> {
+		final Thread t = new Thread(r, "LineChart preparation");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private final AtomicReference<LineChartFrame> prepared = new AtomicReference<LineChartFrame>();
+	private volatile int generation = 0;
+	private boolean preparing = false;
+
 	private double x;
 	private float timeframe;
 	private boolean display_annotations = true;
@@ -239,13 +268,25 @@ public class LineChartWidget extends BorderPane implements IChartControl, IColle
 		linechart.setBackground(null);
 		linechart.setCreateSymbols(false);
 
-		series1 = new XYChart.Series<Number,Number>(XYCollections.<Data<Number,Number>>observableArrayList());
+		series1 = new XYChart.Series<Number,Number>(XYCollections.<Data<Number,Number>>observableRingList(2048));
 		linechart.getData().add(series1);
-		series2 = new XYChart.Series<Number,Number>(XYCollections.<Data<Number,Number>>observableArrayList());
+		series2 = new XYChart.Series<Number,Number>(XYCollections.<Data<Number,Number>>observableRingList(2048));
 		linechart.getData().add(series2);
-		series3 = new XYChart.Series<Number,Number>(XYCollections.<Data<Number,Number>>observableArrayList());
+		series3 = new XYChart.Series<Number,Number>(XYCollections.<Data<Number,Number>>observableRingList(2048));
 		linechart.getData().add(series3);
 
+		trace1 = linechart.addTrace();
+		trace2 = linechart.addTrace();
+		trace3 = linechart.addTrace();
+
+		linechart.setCanvasRendering(prefs.getBoolean(MAVPreferences.CANVAS_CHARTS, false));
+		StateProperties.getInstance().preferencesChangedProperty().addListener((e,o,n) -> {
+			if(n.booleanValue() && linechart.isCanvasRendering() != prefs.getBoolean(MAVPreferences.CANVAS_CHARTS, false)) {
+				linechart.setCanvasRendering(prefs.getBoolean(MAVPreferences.CANVAS_CHARTS, false));
+				updateRequest();
+			}
+		});
+
 		annotations.setSelected(true);
 		annotations.selectedProperty().addListener((observable, oldvalue, newvalue) -> {
 			updateRequest();
@@ -253,7 +294,7 @@ public class LineChartWidget extends BorderPane implements IChartControl, IColle
 
 		linechart.getAnnotations().add(mode, Layer.BACKGROUND);
 
-		current_x1_pt = timeFrame.intValue() * 1000 / dataService.getCollectorInterval_ms();
+		current_x1_pt = dataService.getIndexByTime(timeFrame.intValue());
 
 		xAxis.setAutoRanging(false);
 		xAxis.setLowerBound(0);
@@ -569,7 +610,7 @@ public class LineChartWidget extends BorderPane implements IChartControl, IColle
 		scroll.addListener((v, ov, nv) -> {
 
 			int x1 =  dataService.calculateIndexByFactor(nv.floatValue())+1;	
-			if(x1 < (timeFrame.get() * 1000 / dataService.getCollectorInterval_ms())) {
+			if(dataService.getTimeByIndex(x1) < timeFrame.get()) {
 				current_x1_pt = x1;
 				current_x0_pt = 0;
 				updateGraph(true,x1);
@@ -667,7 +708,7 @@ public class LineChartWidget extends BorderPane implements IChartControl, IColle
 
 	public void setZoom(double x0, double x1) {
 		if((x1-x0)>1 && ( type1.hash!=0 || type2.hash!=0 || type3.hash!=0)) {
-			current_x0_pt = (int)(x0 * 1000f / dataService.getCollectorInterval_ms());
+			current_x0_pt = Math.max(0, dataService.getIndexByTime(x0));
 			setXResolution((int)(x1-x0));
 			updateGraph(true,0);
 		}	
@@ -689,7 +730,7 @@ public class LineChartWidget extends BorderPane implements IChartControl, IColle
 		dashboard3.setVal(dataService.getModelList().get(x1).getValue(type3),type3, true);
 
 		time_label.setLayoutY(xAxis.getLayoutY()-25);
-		time_label.setText(String.format("%#.2fs", (x1 * dataService.getCollectorInterval_ms()/1000f)));
+		time_label.setText(String.format("%#.2fs", dataService.getTimeByIndex(x1)));
 		time_label.setLayoutX(mousex-xAxis.getLayoutX());
 
 
@@ -898,17 +939,23 @@ public class LineChartWidget extends BorderPane implements IChartControl, IColle
 	}
 
 	private  void updateGraph(boolean refresh, int max_x0) {
-		float dt_sec = 0; AnalysisDataModel m =null; boolean set_bounds = false; double v1 ; double v2; double v3;
+		float dt_sec = 0; boolean set_bounds = false; double v1 ; double v2; double v3;
 		int max_x = 0; long slot_tms = 0; 
 
 		final int size               = dataService.getModelList().size();
 		final int collector_interval = dataService.getCollectorInterval_ms();
 		final int set_length         = resolution_ms/collector_interval;
+		// samples between two plotted points; the ones in between are covered by the range aggregate
+		final int point_step         = resolution_ms / LineChartFrame.gcd(resolution_ms, collector_interval);
 
 		if(isDisabled()) {
 			return;
 		}
 
+		// incremental updates continue when the prepared refresh is shown
+		if(preparing && !refresh)
+			return;
+
 		if(refresh) {
 
 			if(dataService.size()==0 || (type1.hash == 0 && type2.hash == 0 && type3.hash == 0) ) {
@@ -927,7 +974,7 @@ public class LineChartWidget extends BorderPane implements IChartControl, IColle
 			dashboard_update_tms = 0;
 
 			current_x_pt  = current_x0_pt;
-			current_x1_pt = current_x0_pt + (int)(timeframe * 1000f / dataService.getCollectorInterval_ms());
+			current_x1_pt = dataService.getIndexByTime(dataService.getTimeByIndex(current_x0_pt) + timeframe);
 			setXAxisBounds(current_x0_pt,current_x1_pt);
 
 			mode.clear();
@@ -937,10 +984,14 @@ public class LineChartWidget extends BorderPane implements IChartControl, IColle
 				series2.getData().remove(0,series2.getData().size()-1);
 				series3.getData().remove(0,series3.getData().size()-1);
 			} else {
+				pool.invalidateAll(series1.getData());
+				pool.invalidateAll(series2.getData());
+				pool.invalidateAll(series3.getData());
 				series1.getData().clear();
 				series2.getData().clear();
 				series3.getData().clear();
 			}
+			trace1.clear(); trace2.clear(); trace3.clear();
 
 
 			if(dash.isSelected() && size> 0) {
@@ -991,6 +1042,12 @@ public class LineChartWidget extends BorderPane implements IChartControl, IColle
 				setDashboardData(dashboard3,type3, current_x0_pt,current_x1_pt);
 			}
 
+			if(refresh) {
+				prepareFrame(current_x_pt, Math.min(max_x, current_x1_pt + 1), collector_interval);
+				refreshRequest = false;
+				return;
+			}
+
 			slot_tms = System.currentTimeMillis();
 
 			if(type1.hash!=0) ((XYObservableListWrapper<?>)series1.getData()).begin();
@@ -998,51 +1055,37 @@ public class LineChartWidget extends BorderPane implements IChartControl, IColle
 			if(type3.hash!=0) ((XYObservableListWrapper<?>)series3.getData()).begin();
 
 
-			while(current_x_pt<max_x && size>0 && current_x_pt< dataService.getModelList().size() &&
-					((System.currentTimeMillis()-slot_tms) < REFRESH_SLOT || refreshRequest)) {
-
+			final int start_x_pt = current_x_pt;
 
-				m = dataService.getModelList().get(current_x_pt);
-				dt_sec = current_x_pt *  collector_interval / 1000f;
+			// the decimators need all samples of the window of the next plotted point
+			if(refresh || decimated_x_pt != current_x_pt - 1) {
+				decimator1.reset(); decimator2.reset(); decimator3.reset();
+				for(int x = Math.max(0, current_x_pt - set_length + 1); x < current_x_pt; x++)
+					pushToDecimators(x);
+			}
 
-				if(m.msg!=null && current_x_pt > 0 && m.msg!=null && m.msg.text!=null
-						&& ( type1.hash!=0 || type2.hash!=0 || type3.hash!=0)
-						&& display_annotations) {
+			while(current_x_pt<max_x && size>0 && current_x_pt< dataService.getModelList().size() &&
+					((System.currentTimeMillis()-slot_tms) < REFRESH_SLOT || refreshRequest)) {
 
-					if((current_x_pt - last_annotation_pos) > 200 || yoffset > 12)
-						yoffset=0;
+				dt_sec = (float)dataService.getTimeByIndex(current_x_pt);
 
-					linechart.getAnnotations().add(new LineMessageAnnotation(this,dt_sec,yoffset++, m.msg,
-							(resolution_ms<300) && annotations.isSelected()),
-							Layer.FOREGROUND);
-					last_annotation_pos = current_x_pt;
-				}
+				pushToDecimators(current_x_pt);
 
 				if(((current_x_pt * collector_interval) % resolution_ms) == 0 && current_x_pt > 0) {
 
-					if( type1.hash!=0 || type2.hash!=0 || type3.hash!=0) {
-						mode.updateModeData(dt_sec, m);
-					}
-
 					if(type1.hash!=0)  {						
-						v1 = determineValueFromRange(current_x_pt,set_length,type1,false);
-						if(current_x_pt > current_x1_pt && series1.getData().size()>0 )
-							series1.getData().remove(0);
-						series1.getData().add(pool.checkOut(dt_sec,v1));
+						v1 = determineValueFromRange(decimator1,current_x_pt,set_length,type1,false);
+						addPoint(series1, trace1, current_x_pt > current_x1_pt, dt_sec, v1);
 					} 
 					if(type2.hash!=0)  {
 
-						v2 = determineValueFromRange(current_x_pt,set_length,type2,false);
-						if(current_x_pt > current_x1_pt && series2.getData().size()>0 )
-							series2.getData().remove(0);
-						series2.getData().add(pool.checkOut(dt_sec,v2));
+						v2 = determineValueFromRange(decimator2,current_x_pt,set_length,type2,false);
+						addPoint(series2, trace2, current_x_pt > current_x1_pt, dt_sec, v2);
 
 					}
 					if(type3.hash!=0)  {
-						v3 = determineValueFromRange(current_x_pt,set_length,type3,false);
-						if(current_x_pt > current_x1_pt && series3.getData().size()>0 )
-							series3.getData().remove(0);
-						series3.getData().add(pool.checkOut(dt_sec,v3));
+						v3 = determineValueFromRange(decimator3,current_x_pt,set_length,type3,false);
+						addPoint(series3, trace3, current_x_pt > current_x1_pt, dt_sec, v3);
 					}
 				}
 
@@ -1055,11 +1098,23 @@ public class LineChartWidget extends BorderPane implements IChartControl, IColle
 					}
 				}
 				current_x_pt++;
+
+				// within the visible frame skip samples not covered by the window of the next plotted point
+				if(point_step > set_length && current_x_pt % point_step != 0 && current_x_pt <= current_x1_pt) {
+					final int next_pt = (current_x_pt / point_step + 1) * point_step - set_length + 1;
+					if(next_pt > current_x_pt)
+						current_x_pt = Math.min(next_pt, Math.min(max_x, current_x1_pt + 1));
+				}
 			}
 
+			if(current_x_pt > start_x_pt && ( type1.hash!=0 || type2.hash!=0 || type3.hash!=0))
+				updateEvents(Math.max(1, start_x_pt), current_x_pt);
+
 			if(type1.hash!=0) ((XYObservableListWrapper<?>)series1.getData()).end();
 			if(type2.hash!=0) ((XYObservableListWrapper<?>)series2.getData()).end();
 			if(type3.hash!=0) ((XYObservableListWrapper<?>)series3.getData()).end();
+			linechart.redraw();
+			pool.frame();
 
 			//			if(count > 2) System.out.println(count+" / "+current_x0_pt+" / "+x_save); count = 0;
 			if(set_bounds) {
@@ -1070,36 +1125,58 @@ public class LineChartWidget extends BorderPane implements IChartControl, IColle
 		refreshRequest = false;
 	}
 
-	private void setDashboardData(DashBoardAnnotation d, KeyFigureMetaData kf, int x0, int x1) {
+	// Message annotations and mode areas of [x0,x1) from the event track instead of walking the samples
+	private void updateEvents(int x0, int x1) {
+		final AnalysisDataStore store = dataService.getDataStore();
+		final List<AnalysisDataModel> list = dataService.getModelList();
+
+		if(display_annotations) {
+			store.forEachMessage(x0, x1, (msg, x) -> {
+				if((x - last_annotation_pos) > 200 || yoffset > 12)
+					yoffset=0;
+				linechart.getAnnotations().add(new LineMessageAnnotation(this,(float)dataService.getTimeByIndex(x),yoffset++, msg,
+						(resolution_ms<300) && annotations.isSelected()),
+						Layer.FOREGROUND);
+				last_annotation_pos = x;
+			});
+		}
 
-		int count=0; double val=0;
-		double _min = Double.NaN; double _max = Double.NaN;
-		double _avg = 0; double mean = 0; double std=0;
+		if(mode.isVisible()) {
+			mode.updateModeData(dataService.getTimeByIndex(x0), list.get(x0));
+			store.forEachModeChange(x0 + 1, x1, (x) -> {
+				final double dt_sec = dataService.getTimeByIndex(x);
+				mode.updateModeData(dt_sec, list.get(x-1));
+				mode.updateModeData(dt_sec, list.get(x));
+			});
+			mode.updateModeData(dataService.getTimeByIndex(x1 - 1), list.get(x1 - 1));
+		}
+	}
+
+	// canvas traces take the values as primitives, series need a data node per point
+	private void addPoint(XYChart.Series<Number,Number> series, LineTrace trace, boolean scroll, float x, double v) {
+		if(linechart.isCanvasRendering()) {
+			if(scroll)
+				trace.removeFirst();
+			trace.add(x, v);
+			return;
+		}
+		if(scroll && series.getData().size()>0 )
+			pool.invalidate(series.getData().remove(0));
+		series.getData().add(pool.checkOut(x,v));
+	}
+
+	private void setDashboardData(DashBoardAnnotation d, KeyFigureMetaData kf, int x0, int x1) {
 
 		if(kf== null || kf.hash==0)
 			return;
 
 		d.setKeyFigure(kf);
 
-		for(int i =x0; i < x1 && i< dataService.getModelList().size();i++) {
-			val = dataService.getModelList().get(i).getValue(kf);
-			if(!Double.isNaN(val) && !Double.isInfinite(val)) {
-				if(val<_min || Double.isNaN(_min)) _min = val;
-				if(val>_max || Double.isNaN(_max)) _max = val;
-				_avg = _avg + val; count++;
-			}
-		}
-
-		d.setMinMax(_min, _max);
-		if(count>0) {
-			mean = _avg / count; std = 0;
-			for(int i = x0; i < x1 && i< dataService.getModelList().size();i++) {
-				val = dataService.getModelList().get(i).getValue(kf);
-				std = std + (val - mean) * (val - mean);
-			}
-			std = (float)Math.sqrt(std / count);
-			d.setAvg(mean, std);
-		}
+		if(dataService.getDataStore().aggregate(kf, x0, x1, range)) {
+			d.setMinMax(range[LODPyramid.MIN], range[LODPyramid.MAX]);
+			d.setAvg(range[LODPyramid.MEAN], range[LODPyramid.STD]);
+		} else
+			d.setMinMax(Double.NaN, Double.NaN);
 
 	}
 
@@ -1108,8 +1185,8 @@ public class LineChartWidget extends BorderPane implements IChartControl, IColle
 		double tick = timeframe/6;
 		if(tick < 1) tick = 1;
 		xAxis.setTickUnit(tick);
-		double lb = lower_pt * dataService.getCollectorInterval_ms() / 1000F;
-		double hb = upper_pt * dataService.getCollectorInterval_ms() / 1000f;
+		double lb = dataService.getTimeByIndex(lower_pt);
+		double hb = dataService.getTimeByIndex(upper_pt);
 		mode.setBounds(lb, hb);
 		xAxis.setLowerBound(lb);
 		xAxis.setUpperBound(hb);
@@ -1209,46 +1286,72 @@ public class LineChartWidget extends BorderPane implements IChartControl, IColle
 
 	}
 
-	/*
-	 * Determines spikes or average, if not all datapoints are reported.
-	 */
-	private double determineValueFromRange(int current_x, int length, KeyFigureMetaData m, boolean average) {
-
-		try {
-
-			final double v_current_x = dataService.getModelList().get(current_x).getValue(m);
-
-
-			if(dataService.getModelList().size() < length || Double.isNaN(v_current_x))
-				return Double.NaN;
+	private void pushToDecimators(int x) {
+		final AnalysisDataStore store = dataService.getDataStore();
+		if(x >= store.size())
+			return;
+		if(type1.hash!=0) decimator1.push(x, store.getValue(x, type1));
+		if(type2.hash!=0) decimator2.push(x, store.getValue(x, type2));
+		if(type3.hash!=0) decimator3.push(x, store.getValue(x, type3));
+		decimated_x_pt = x;
+	}
 
-			if(length < 3)
-				return v_current_x;
+	private double determineValueFromRange(WindowDecimator decimator, int current_x, int length, KeyFigureMetaData m, boolean average) {
+		return LineChartFrame.determineValueFromRange(dataService.getDataStore(), decimator, current_x, length, m, average);
+	}
 
-			double a = 0; double v;
+	/*
+	 * Reduces [from, to) on the preparation worker; an older pending preparation is dropped
+	 */
+	private void prepareFrame(int from, int to, int collector_interval) {
+		final int gen = ++generation;
+		final KeyFigureMetaData[] types = { type1, type2, type3 };
+		final AnalysisDataStore store = dataService.getDataStore();
+		final int resolution = resolution_ms;
+
+		preparing = true;
+		preparation.execute(() -> {
+			try {
+				final LineChartFrame frame = LineChartFrame.prepare(gen, store, types, from, to,
+						collector_interval, resolution, () -> gen != generation);
+				if(frame == null)
+					return;
+				prepared.set(frame);
+			} catch(Exception e) {
+				System.err.println("LineChart preparation: "+e.getMessage());
+			}
+			Platform.runLater(() -> applyFrame(gen));
+		});
+	}
 
-			if(average) {
-				a = v_current_x;
-				for(int i=current_x-length+1;i<current_x;i++)
-					a = a + dataService.getModelList().get(i).getValue(m);
-				return a / length;
+	private void applyFrame(int gen) {
+		if(gen != generation)
+			return;
+		preparing = false;
+		// only the frame of this generation is taken, a newer one is left for its own call
+		final LineChartFrame frame = prepared.get();
+		if(frame == null || frame.generation != gen || !prepared.compareAndSet(frame, null))
+			return;
 
-			} else {
+		if(type1.hash!=0) ((XYObservableListWrapper<?>)series1.getData()).begin();
+		if(type2.hash!=0) ((XYObservableListWrapper<?>)series2.getData()).begin();
+		if(type3.hash!=0) ((XYObservableListWrapper<?>)series3.getData()).begin();
 
-				int peak_index=current_x;
-				double max = Math.abs(v_current_x);
+		for(int i = 0; i < frame.points; i++) {
+			if(type1.hash!=0) addPoint(series1, trace1, false, frame.x[i], frame.y[0][i]);
+			if(type2.hash!=0) addPoint(series2, trace2, false, frame.x[i], frame.y[1][i]);
+			if(type3.hash!=0) addPoint(series3, trace3, false, frame.x[i], frame.y[2][i]);
+		}
 
-				for(int i=current_x-length+1;i<current_x;i++) {
-					v = Math.abs(dataService.getModelList().get(i).getValue(m));
-					if(v>max && v != Float.NaN)
-						max = v; peak_index = i;
-				}
-				return dataService.getModelList().get(peak_index).getValue(m);
-			}
+		current_x_pt = frame.to;
+		if(frame.to > frame.from && ( type1.hash!=0 || type2.hash!=0 || type3.hash!=0))
+			updateEvents(Math.max(1, frame.from), frame.to);
 
-		} catch(IndexOutOfBoundsException o) {
-			return Double.NaN;
-		}
+		if(type1.hash!=0) ((XYObservableListWrapper<?>)series1.getData()).end();
+		if(type2.hash!=0) ((XYObservableListWrapper<?>)series2.getData()).end();
+		if(type3.hash!=0) ((XYObservableListWrapper<?>)series3.getData()).end();
+		linechart.redraw();
+		pool.frame();
 	}
 
 }
@@ -0,0 +1,165 @@
+/****************************************************************************
+ *
+ *   Copyright (c) 2017,2021 Eike Mansfeld ecm@gmx.de. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ ****************************************************************************/
+
+package com.comino.flight.ui.widgets.charts.utils;
+
+/*
+ * Streaming reduction of a key figure to one value per plotted point. Samples are pushed in index
+ * order; peak and average of the window [from, last pushed] are answered from monotonic deques and a
+ * running sum, so a pass over n samples costs O(n) regardless of the window length. Non finite
+ * values are skipped.
+ */
+
+public class WindowDecimator {
+
+	private final Ring all = new Ring();
+	private final Ring max = new Ring();   // decreasing values
+	private final Ring min = new Ring();   // increasing values
+
+	private double sum   = 0;
+	private int    count = 0;
+	private int    last  = Integer.MIN_VALUE;
+
+	public void push(int index, double v) {
+		if(index <= last)
+			reset();
+		last = index;
+		all.addLast(index, v);
+		if(!Double.isFinite(v))
+			return;
+		sum += v; count++;
+		while(!max.isEmpty() && max.lastValue() <= v)
+			max.removeLast();
+		max.addLast(index, v);
+		while(!min.isEmpty() && min.lastValue() >= v)
+			min.removeLast();
+		min.addLast(index, v);
+	}
+
+	/*
+	 * Value with the largest magnitude in [from, last pushed], the positive one on equal magnitudes
+	 */
+	public double peak(int from) {
+		evict(from);
+		if(count == 0)
+			return Double.NaN;
+		final double mn = min.firstValue(); final double mx = max.firstValue();
+		return Math.abs(mn) > Math.abs(mx) ? mn : mx;
+	}
+
+	public double average(int from) {
+		evict(from);
+		return count > 0 ? sum / count : Double.NaN;
+	}
+
+	public int lastIndex() {
+		return last;
+	}
+
+	public void reset() {
+		all.clear(); max.clear(); min.clear();
+		sum = 0; count = 0; last = Integer.MIN_VALUE;
+	}
+
+	private void evict(int from) {
+		while(!all.isEmpty() && all.firstIndex() < from) {
+			final double v = all.firstValue();
+			if(Double.isFinite(v)) {
+				sum -= v; count--;
+			}
+			all.removeFirst();
+		}
+		// no drift of the running sum across empty windows
+		if(count == 0)
+			sum = 0;
+		while(!max.isEmpty() && max.firstIndex() < from)
+			max.removeFirst();
+		while(!min.isEmpty() && min.firstIndex() < from)
+			min.removeFirst();
+	}
+
+	private static class Ring {
+
+		private int[]    index = new int[64];
+		private double[] value = new double[64];
+		private int head = 0;
+		private int size = 0;
+
+		void addLast(int i, double v) {
+			if(size == index.length)
+				grow();
+			final int p = (head + size) & (index.length - 1);
+			index[p] = i; value[p] = v;
+			size++;
+		}
+
+		void removeFirst() {
+			head = (head + 1) & (index.length - 1);
+			size--;
+		}
+
+		void removeLast() {
+			size--;
+		}
+
+		int firstIndex() {
+			return index[head];
+		}
+
+		double firstValue() {
+			return value[head];
+		}
+
+		double lastValue() {
+			return value[(head + size - 1) & (index.length - 1)];
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		void clear() {
+			head = 0; size = 0;
+		}
+
+		private void grow() {
+			final int[]    ni = new int[index.length * 2];
+			final double[] nv = new double[index.length * 2];
+			for(int k = 0; k < size; k++) {
+				ni[k] = index[(head + k) & (index.length - 1)];
+				nv[k] = value[(head + k) & (index.length - 1)];
+			}
+			index = ni; value = nv; head = 0;
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/****************************************************************************
+ *
+ *   Copyright (c) 2017,2021 Eike Mansfeld ecm@gmx.de. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ ****************************************************************************/
+
+package com.comino.flight.ui.widgets.charts.utils;
+
+import java.util.Random;
+
+/*
+ * Compares WindowDecimator with a brute force scan of every window, including NaN gaps, restarts
+ * and skipped samples as produced by the chart loop.
+ */
+
+public class WindowDecimatorTest {
+
+	public static void main(String[] args) {
+
+		final Random random = new Random(4711);
+		final double[] data = new double[200000];
+
+		for(int i = 0; i < data.length; i++) {
+			data[i] = random.nextInt(30) == 0 ? Double.NaN : Math.round(random.nextGaussian() * 1000) / 10.0;
+			if(random.nextInt(5000) == 0)                    // longer gaps
+				for(int k = 0; k < 300 && i < data.length; k++)
+					data[i++] = Double.NaN;
+		}
+
+		int errors = 0; int checks = 0;
+
+		for(int length : new int[] { 1, 2, 3, 5, 10, 25, 100, 1000 }) {
+			final WindowDecimator d = new WindowDecimator();
+			for(int step : new int[] { 1, length, 3 * length }) {
+				d.reset();
+				for(int x = 0; x < data.length; x++) {
+					// like the chart loop: jump to the first sample of the next window
+					if(step > length && x % step != 0 && x % step <= step - length) {
+						x = (x / step + 1) * step - length + 1;
+						if(x >= data.length) break;
+					}
+					d.push(x, data[x]);
+					if(x % step != 0 || x < length - 1)
+						continue;
+					final double peak = d.peak(x - length + 1);
+					final double avg  = d.average(x - length + 1);
+					checks++;
+					if(Double.compare(peak, peak(data, x - length + 1, x)) != 0)
+						errors++;
+					if(!equal(avg, average(data, x - length + 1, x)))
+						errors++;
+				}
+			}
+		}
+
+		// out of order push restarts the window
+		final WindowDecimator d = new WindowDecimator();
+		for(int x = 100; x < 200; x++) d.push(x, data[x]);
+		for(int x = 50; x < 60; x++) d.push(x, data[x]);
+		checks++;
+		if(Double.compare(d.peak(50), peak(data, 50, 59)) != 0)
+			errors++;
+
+		System.out.println("WindowDecimator: "+checks+" windows checked, "+errors+" errors");
+
+		final WindowDecimator b = new WindowDecimator();
+		long tms = System.nanoTime();
+		double s = 0;
+		for(int x = 0; x < data.length; x++) {
+			b.push(x, data[x]);
+			if(x >= 999 && x % 10 == 9) s += b.peak(x - 999);
+		}
+		System.out.println("Streaming window 1000: "+(System.nanoTime() - tms) / 1000000+"ms ("+s+")");
+		tms = System.nanoTime(); s = 0;
+		for(int x = 999; x < data.length; x+=10)
+			s += peak(data, x - 999, x);
+		System.out.println("Brute force window 1000: "+(System.nanoTime() - tms) / 1000000+"ms ("+s+")");
+	}
+
+	private static double peak(double[] data, int from, int to) {
+		double mn = Double.POSITIVE_INFINITY, mx = Double.NEGATIVE_INFINITY;
+		for(int i = Math.max(0, from); i <= to; i++) {
+			if(!Double.isFinite(data[i])) continue;
+			mn = Math.min(mn, data[i]); mx = Math.max(mx, data[i]);
+		}
+		if(mn > mx)
+			return Double.NaN;
+		return Math.abs(mn) > Math.abs(mx) ? mn : mx;
+	}
+
+	private static double average(double[] data, int from, int to) {
+		double s = 0; int n = 0;
+		for(int i = Math.max(0, from); i <= to; i++) {
+			if(!Double.isFinite(data[i])) continue;
+			s += data[i]; n++;
+		}
+		return n > 0 ? s / n : Double.NaN;
+	}
+
+	// the running sum differs from a fresh sum only by rounding
+	private static boolean equal(double a, double b) {
+		if(Double.isNaN(a) || Double.isNaN(b))
+			return Double.isNaN(a) && Double.isNaN(b);
+		return Math.abs(a - b) <= 1e-9 * Math.max(1, Math.abs(b));
+	}
+}
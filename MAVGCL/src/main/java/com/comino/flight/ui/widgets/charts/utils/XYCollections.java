@@ -15,6 +15,13 @@ public class XYCollections {
 	public static <E> ObservableList<E> observableArrayList() {
         return observableList(new ArrayList());
     }
+
+	/*
+	 * List for scrolling series, that remove the first and append a last point per update
+	 */
+	public static <E> ObservableList<E> observableRingList(int capacity) {
+        return new XYObservableListWrapper<E>(new XYRingList<E>(capacity));
+    }
 	
 	public static <E> ObservableList<E> observableList(List<E> list) {
         if (list == null) {
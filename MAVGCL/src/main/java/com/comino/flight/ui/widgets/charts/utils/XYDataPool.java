@@ -31,50 +31,84 @@
  *
  ****************************************************************************/
 
-
 package com.comino.flight.ui.widgets.charts.utils;
 
-import java.util.Enumeration;
-import java.util.Hashtable;
-
-import com.comino.flight.observables.StateProperties;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javafx.scene.chart.XYChart;
 
+/*
+ * Bounded pool of chart data points. Points removed from a series are handed back by invalidate and
+ * reused by the next checkOut; only the boxed values are new. Allocations are counted over all pools.
+ */
+
 public class XYDataPool {
 
+	private static final int DEFAULT_CAPACITY = 20000;
+
+	private static final AtomicLong allocations = new AtomicLong();
+	private static final AtomicLong frames      = new AtomicLong();
+
+	private static long last_allocations = 0;
+	private static long last_frames      = 0;
+
+	private final ArrayDeque<XYChart.Data<Number,Number>> free;
+	private final int capacity;
 
 	public XYDataPool() {
+		this(DEFAULT_CAPACITY);
+	}
 
-	    // Preallocate Data objects for JVM
-		for(int i=0;i<50000;i++) {
-			new XYChart.Data<Number,Number>(0,0);
-		}
+	public XYDataPool(int capacity) {
+		this.capacity = capacity;
+		this.free     = new ArrayDeque<XYChart.Data<Number,Number>>(capacity);
 	}
 
 	public  XYChart.Data<Number,Number> checkOut(double x, double y)
 	{
-		XYChart.Data<Number,Number> o;
-		if(!Double.isNaN(y)) {
-			o = new XYChart.Data<Number,Number>(x,y);
-			return o;
-		}
+		if(Double.isNaN(y))
+			y = 0;
 
-		o = new XYChart.Data<Number,Number>(x,0);
+		final XYChart.Data<Number,Number> o = free.pollLast();
+		if(o == null) {
+			allocations.incrementAndGet();
+			return new XYChart.Data<Number,Number>(x,y);
+		}
+		o.setXValue(x);
+		o.setYValue(y);
 		return o;
-
 	}
 
+	/*
+	 * Returns a point, that is or will be removed from its series before the next checkOut
+	 */
 	public void invalidate(XYChart.Data<Number,Number> o) {
-
+		if(o != null && free.size() < capacity)
+			free.addLast(o);
 	}
 
-	public  void invalidateAll() {
+	public  void invalidateAll(Collection<XYChart.Data<Number,Number>> list) {
+		for(XYChart.Data<Number,Number> o : list)
+			invalidate(o);
+	}
 
+	/*
+	 * Marks the end of a chart update for the allocation rate
+	 */
+	public void frame() {
+		frames.incrementAndGet();
 	}
 
-	public int getLockedSize() {
-		return 0;
+	/*
+	 * Data points allocated per chart update since the last call
+	 */
+	public static synchronized float getAllocationsPerFrame() {
+		final long a = allocations.get(); final long f = frames.get();
+		final float rate = f > last_frames ? (a - last_allocations) / (float)(f - last_frames) : 0;
+		last_allocations = a; last_frames = f;
+		return rate;
 	}
 
 }
@@ -0,0 +1,101 @@
+package com.comino.flight.ui.widgets.charts.utils;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Array ring backing a scrolling chart series: removing the first and appending a last element
+ * neither shifts nor allocates. The capacity doubles only if the window does not fit.
+ *
+ */
+public class XYRingList<E> extends AbstractList<E> implements RandomAccess {
+
+	private Object[] items;
+	private int head = 0;
+	private int size = 0;
+
+	public XYRingList(int capacity) {
+		items = new Object[Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1];
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public E get(int index) {
+		checkIndex(index, size);
+		return (E)items[(head + index) & (items.length - 1)];
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public E set(int index, E element) {
+		checkIndex(index, size);
+		final int i = (head + index) & (items.length - 1);
+		final E old = (E)items[i];
+		items[i] = element;
+		return old;
+	}
+
+	@Override
+	public void add(int index, E element) {
+		checkIndex(index, size + 1);
+		if(size == items.length)
+			grow();
+		if(index == 0) {
+			head = (head - 1) & (items.length - 1);
+			items[head] = element;
+		} else {
+			// insertions inside the window shift the tail, charts only append
+			for(int i = size; i > index; i--)
+				items[(head + i) & (items.length - 1)] = items[(head + i - 1) & (items.length - 1)];
+			items[(head + index) & (items.length - 1)] = element;
+		}
+		size++;
+		modCount++;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public E remove(int index) {
+		checkIndex(index, size);
+		final E old;
+		if(index == 0) {
+			old = (E)items[head];
+			items[head] = null;
+			head = (head + 1) & (items.length - 1);
+		} else {
+			old = (E)items[(head + index) & (items.length - 1)];
+			for(int i = index; i < size - 1; i++)
+				items[(head + i) & (items.length - 1)] = items[(head + i + 1) & (items.length - 1)];
+			items[(head + size - 1) & (items.length - 1)] = null;
+		}
+		size--;
+		modCount++;
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		for(int i = 0; i < size; i++)
+			items[(head + i) & (items.length - 1)] = null;
+		head = 0; size = 0;
+		modCount++;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	private void grow() {
+		final Object[] n = new Object[items.length * 2];
+		for(int i = 0; i < size; i++)
+			n[i] = items[(head + i) & (items.length - 1)];
+		items = n; head = 0;
+	}
+
+	private static void checkIndex(int index, int length) {
+		if(index < 0 || index >= length)
+			throw new IndexOutOfBoundsException("Index: "+index+", Size: "+length);
+	}
+
+}
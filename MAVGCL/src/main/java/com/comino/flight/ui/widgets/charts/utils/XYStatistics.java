@@ -33,10 +33,9 @@
 
 package com.comino.flight.ui.widgets.charts.utils;
 
-import java.util.List;
-
-import com.comino.flight.model.AnalysisDataModel;
+import com.comino.flight.model.AnalysisDataStore;
 import com.comino.flight.model.KeyFigureMetaData;
+import com.comino.flight.model.LODPyramid;
 
 public class XYStatistics {
 
@@ -54,55 +53,52 @@ public class XYStatistics {
 	private KeyFigureMetaData fy;
 	private KeyFigureMetaData fx;
 
+	private final double[] sx = new double[LODPyramid.RESULT_SIZE];
+	private final double[] sy = new double[LODPyramid.RESULT_SIZE];
+
 
 	public void setKeyFigures(KeyFigureMetaData fx, KeyFigureMetaData fy) {
 		this.fx = fx; this.fy=fy;
 	}
 
-	public void getStatistics(int x0, int x1, List<AnalysisDataModel> list) {
-		float vx=0; float vy=0; int i=0; double rad=0;
+	/*
+	 * Center of [x0,x1) and the spread of the most recent samples around it. Based on the range
+	 * aggregates of the store, so the cost does not depend on the window size.
+	 */
+	public void getStatistics(int x0, int x1, AnalysisDataStore store) {
+		double dx, dy;
 
-		x1 =  list.size() < x1 ? list.size()-1 : x1-1;
+		x1 = Math.min(x1, store.size()); x0 = Math.max(x0, 0);
 
-		if(list.size() < 20 || fx == null || fy == null || fx.hash==0 || fy.hash==0)
+		if(store.size() < 20 || x1 <= x0 || fx == null || fy == null || fx.hash==0 || fy.hash==0)
 			return;
 
-		for(i = x0; i<= x1;i++) {
-			vx += list.get(i).getValue(fx);
-			vy += list.get(i).getValue(fy);
-		}
-		if(Float.isNaN(vx) || Float.isNaN(vy)) {
+		if(!store.aggregate(fx, x0, x1, sx) || !store.aggregate(fy, x0, x1, sy)) {
 			radius = Float.NaN; distance = Float.NaN; stddev_xy = Float.NaN;
-			center_x = list.get(x1).getValue(fx);
-			center_y = list.get(x1).getValue(fy);
+			center_x = store.getValue(x1-1, fx);
+			center_y = store.getValue(x1-1, fy);
 			return;
-		} else {
-			center_x = vx / (i - x0);
-			center_y = vy / (i - x0);
 		}
 
-		vx = 0; vy = 0;
-		for(i = x1-20; i< x1 ;i++) {
-			if(i>0) {
-				vx += (list.get(i).getValue(fx) - center_x) * (list.get(i).getValue(fx) - center_x);
-				vy += (list.get(i).getValue(fy) - center_y) * (list.get(i).getValue(fy) - center_y);
-				if(Math.abs(list.get(i).getValue(fx)-center_x) > radius)
-					rad = Math.abs(list.get(i).getValue(fx)-center_x);
-				if(Math.abs(list.get(i).getValue(fy)-center_y) > radius)
-					rad = Math.abs(list.get(i).getValue(fy)-center_y);
-			}
+		center_x = sx[LODPyramid.MEAN];
+		center_y = sy[LODPyramid.MEAN];
 
-		}
+		store.aggregate(fx, Math.max(x0, x1-20), x1, sx);
+		store.aggregate(fy, Math.max(x0, x1-20), x1, sy);
+
+		// mean square deviation from the center = variance + squared offset of the mean
+		dx = sx[LODPyramid.MEAN] - center_x;
+		dy = sy[LODPyramid.MEAN] - center_y;
+		stddev_x = Math.sqrt(sx[LODPyramid.STD] * sx[LODPyramid.STD] + dx * dx);
+		stddev_y = Math.sqrt(sy[LODPyramid.STD] * sy[LODPyramid.STD] + dy * dy);
 
-		this.radius = rad;
-		stddev_x =Math.sqrt( vx / (i - x0));
-		stddev_y =Math.sqrt( vy / (i - x0));
+		radius = Math.max(
+				Math.max(Math.abs(sx[LODPyramid.MAX]-center_x), Math.abs(sx[LODPyramid.MIN]-center_x)),
+				Math.max(Math.abs(sy[LODPyramid.MAX]-center_y), Math.abs(sy[LODPyramid.MIN]-center_y)));
 
-		distance =  Math.sqrt(
-				(list.get(0).getValue(fx) - list.get(x1).getValue(fx)) *
-				(list.get(0).getValue(fx) - list.get(x1).getValue(fx)) +
-				(list.get(0).getValue(fy) - list.get(x1).getValue(fy)) *
-				(list.get(0).getValue(fy) - list.get(x1).getValue(fy)));
+		dx = store.getValue(0, fx) - store.getValue(x1-1, fx);
+		dy = store.getValue(0, fy) - store.getValue(x1-1, fy);
+		distance =  Math.sqrt(dx * dx + dy * dy);
 
 		stddev_xy = Math.sqrt(stddev_x*stddev_x+stddev_y*stddev_y);
 	}
@@ -65,8 +65,9 @@ import com.comino.flight.ui.widgets.charts.annotations.XYTrajectoryAnnonation;
 import com.comino.flight.ui.widgets.charts.utils.XYCollections;
 import com.comino.flight.ui.widgets.charts.utils.XYDataPool;
 import com.comino.flight.ui.widgets.charts.utils.XYObservableListWrapper;
+import com.comino.flight.ui.widgets.charts.canvas.CanvasLineChart;
+import com.comino.flight.ui.widgets.charts.canvas.LineTrace;
 import com.comino.flight.ui.widgets.charts.utils.XYStatistics;
-import com.comino.jfx.extensions.SectionLineChart;
 import com.comino.jfx.extensions.XYAnnotations.Layer;
 import com.comino.mavcom.control.IMAVController;
 import com.comino.mavutils.MSPMathUtils;
@@ -140,7 +141,7 @@ public class XYChartWidget extends BorderPane implements IChartControl, ICollect
 	};
 
 	@FXML
-	private SectionLineChart<Number,Number> xychart;
+	private CanvasLineChart xychart;
 
 	@FXML
 	private NumberAxis xAxis;
@@ -202,6 +203,9 @@ public class XYChartWidget extends BorderPane implements IChartControl, ICollect
 	private  XYChart.Series<Number,Number> series1;
 	private  XYChart.Series<Number,Number> series2;
 
+	private LineTrace trace1;
+	private LineTrace trace2;
+
 	private IMAVController control;
 
 	private KeyFigureMetaData type1_x=null;
@@ -635,7 +639,7 @@ public class XYChartWidget extends BorderPane implements IChartControl, ICollect
 
 		scroll.addListener((v, ov, nv) -> {
 			int x1 =  dataService.calculateIndexByFactor(nv.floatValue())+1;	
-			if(x1 < (timeFrame.get() * 1000 / dataService.getCollectorInterval_ms())) {
+			if(dataService.getTimeByIndex(x1) < timeFrame.get()) {
 				current_x1_pt = x1;
 				current_x0_pt = 0;
 				updateGraph(true,x1);
@@ -817,10 +821,12 @@ public class XYChartWidget extends BorderPane implements IChartControl, ICollect
 				if(series2.getData().size()>0)
 					series2.getData().remove(0,series2.getData().size()-1);
 			} else {
+				pool.invalidateAll(series1.getData());
+				pool.invalidateAll(series2.getData());
 				series1.getData().clear();
 				series2.getData().clear();
 			}
-			pool.invalidateAll();
+			trace1.clear(); trace2.clear();
 
 			xychart.getData().clear();
 			xychart.getData().add(series1);
@@ -892,7 +898,7 @@ public class XYChartWidget extends BorderPane implements IChartControl, ICollect
 
 			if(state.getRecordingProperty().get()==AnalysisModelService.STOPPED ) {
 				current_x_pt = current_x0_pt;
-				current_x1_pt = current_x0_pt + timeFrame.intValue() * 1000 / dataService.getCollectorInterval_ms();
+				current_x1_pt = dataService.getIndexByTime(dataService.getTimeByIndex(current_x0_pt) + timeFrame.intValue());
 
 			} else {
 				current_x0_pt = dataService.calculateX0IndexByFactor(1);
@@ -909,8 +915,8 @@ public class XYChartWidget extends BorderPane implements IChartControl, ICollect
 		if((force_zero.isSelected() || annotation.isSelected()) &&  (System.currentTimeMillis()-dashboard_update_tms) > 500) {
 			wq.addSingleTask("LP",() -> {
 				dashboard_update_tms = System.currentTimeMillis();
-				s1.getStatistics(current_x0_pt,current_x1_pt,mList);
-				s2.getStatistics(current_x0_pt,current_x1_pt,mList);
+				s1.getStatistics(current_x0_pt,current_x1_pt,dataService.getDataStore());
+				s2.getStatistics(current_x0_pt,current_x1_pt,dataService.getDataStore());
 			});
 		}
 
@@ -984,7 +990,7 @@ public class XYChartWidget extends BorderPane implements IChartControl, ICollect
 
 					m = mList.get(current_x_pt);
 
-					if(series1.getData().size()>0 ||series2.getData().size()>0) {
+					if(series1.getData().size()>0 || series2.getData().size()>0 || trace1.size()>0 || trace2.size()>0) {
 						slam.setModel(m); traj.setModel(m);
 					}
 
@@ -1001,12 +1007,13 @@ public class XYChartWidget extends BorderPane implements IChartControl, ICollect
 							pool.invalidate(series2.getData().get(0));
 							series2.getData().remove(0);
 						}
+						trace1.removeFirst(); trace2.removeFirst();
 					}
 
 					if(type1_x.hash!=0 && type1_y.hash!=0) {
 						rotateRad(p1,m.getValue(type1_x), m.getValue(type1_y),
 								rotation_rad);
-						series1.getData().add(pool.checkOut(p1[0],p1[1]));
+						addPoint(series1, trace1, p1);
 						endPosition1.setPosition(p1[0], p1[1]);
 					}
 
@@ -1021,7 +1028,7 @@ public class XYChartWidget extends BorderPane implements IChartControl, ICollect
 						else
 							rotateRad(p2,m.getValue(type2_x), m.getValue(type2_y),
 									rotation_rad);
-						series2.getData().add(pool.checkOut(p2[0],p2[1]));
+						addPoint(series2, trace2, p2);
 						endPosition2.setPosition(p2[0], p2[1]);
 					}
 				}
@@ -1030,6 +1037,8 @@ public class XYChartWidget extends BorderPane implements IChartControl, ICollect
 
 			((XYObservableListWrapper<?>)series1.getData()).end();
 			((XYObservableListWrapper<?>)series2.getData()).end();
+			xychart.redraw();
+			pool.frame();
 
 			sigma1.setPosition(p1[0], p1[1],s1.stddev_xy);
 			sigma2.setPosition(p2[0], p2[1],s2.stddev_xy);
@@ -1039,13 +1048,31 @@ public class XYChartWidget extends BorderPane implements IChartControl, ICollect
 	}
 
 
+	private void addPoint(XYChart.Series<Number,Number> series, LineTrace trace, double[] p) {
+		if(xychart.isCanvasRendering())
+			trace.add(p[0], p[1]);
+		else
+			series.getData().add(pool.checkOut(p[0],p[1]));
+	}
+
 	public XYChartWidget setup(IMAVController control) {
-		series1 = new XYChart.Series<Number,Number>(XYCollections.<Data<Number,Number>>observableArrayList());
+		series1 = new XYChart.Series<Number,Number>(XYCollections.<Data<Number,Number>>observableRingList(2048));
 
 		xychart.getData().add(series1);
-		series2 = new XYChart.Series<Number,Number>(XYCollections.<Data<Number,Number>>observableArrayList());
+		series2 = new XYChart.Series<Number,Number>(XYCollections.<Data<Number,Number>>observableRingList(2048));
 		xychart.getData().add(series2);
 
+		trace1 = xychart.addTrace();
+		trace2 = xychart.addTrace();
+
+		xychart.setCanvasRendering(prefs.getBoolean(MAVPreferences.CANVAS_CHARTS, false));
+		state.preferencesChangedProperty().addListener((e,o,n) -> {
+			if(n.booleanValue() && xychart.isCanvasRendering() != prefs.getBoolean(MAVPreferences.CANVAS_CHARTS, false)) {
+				xychart.setCanvasRendering(prefs.getBoolean(MAVPreferences.CANVAS_CHARTS, false));
+				updateRequest();
+			}
+		});
+
 		this.control = control;
 
 		grid.setController(control);
@@ -1058,7 +1085,7 @@ public class XYChartWidget extends BorderPane implements IChartControl, ICollect
 		});
 
 		current_x0_pt = dataService.calculateX0IndexByFactor(1);
-		current_x1_pt = current_x0_pt + timeFrame.intValue() * 1000 / dataService.getCollectorInterval_ms();
+		current_x1_pt = dataService.getIndexByTime(dataService.getTimeByIndex(current_x0_pt) + timeFrame.intValue());
 
 		scale_select.getSelectionModel().select(prefs.getInt(MAVPreferences.XYCHART_SCALE,0));
 		try {
@@ -1079,7 +1106,7 @@ public class XYChartWidget extends BorderPane implements IChartControl, ICollect
 			if(!n.booleanValue()) {
 				if(!state.getReplayingProperty().get()) {
 					current_x0_pt =  dataService.calculateX0IndexByFactor(scroll.get());
-					current_x1_pt =  current_x0_pt + timeFrame.intValue() * 1000 / dataService.getCollectorInterval_ms();
+					current_x1_pt =  dataService.getIndexByTime(dataService.getTimeByIndex(current_x0_pt) + timeFrame.intValue());
 					updateRequest();
 				} else {
 					updateGraph(true,replay.intValue());
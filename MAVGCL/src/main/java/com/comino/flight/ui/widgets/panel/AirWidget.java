@@ -39,12 +39,12 @@ import com.comino.flight.file.KeyFigurePreset;
 import com.comino.flight.model.AnalysisDataModel;
 import com.comino.flight.model.service.AnalysisModelService;
 import com.comino.flight.observables.StateProperties;
+import com.comino.flight.ui.FrameScheduler;
 import com.comino.flight.ui.widgets.charts.IChartControl;
 import com.comino.jfx.extensions.ChartControlPane;
 import com.comino.mavcom.control.IMAVController;
 
 import eu.hansolo.airseries.AirCompass;
-import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.FloatProperty;
@@ -59,12 +59,10 @@ public class AirWidget extends ChartControlPane implements IChartControl {
 
 	private AnalysisModelService dataService = AnalysisModelService.getInstance();
 
-	private AnimationTimer task;
+	private FrameScheduler.Task task;
 
 	private AnalysisDataModel model;
 
-	private long tms = 0;
-
 	private FloatProperty   replay       = new SimpleFloatProperty(0);
 
 	public AirWidget() {
@@ -72,19 +70,14 @@ public class AirWidget extends ChartControlPane implements IChartControl {
 
 		FXMLLoadHelper.load(this, "AirWidget.fxml");
 
-		task = new AnimationTimer() {
-			@Override public void handle(long now) {
-				if(!isDisabled() && isVisible() && (System.currentTimeMillis()-tms)>50 && MainApp.getPrimaryStage().isFocused()) {
-					tms = System.currentTimeMillis();
-					//					System.out.println(model.getValue("HEAD"));
-					if(Double.isFinite(model.getValue("HEAD")))
-						g_compass.setBearing(model.getValue("HEAD"));
-					else
-						g_compass.setBearing(0);
-
-				}
+		task = FrameScheduler.getInstance().register("Air", FrameScheduler.NORMAL, 20, (now) -> {
+			if(!isDisabled() && isVisible() && MainApp.getPrimaryStage().isFocused()) {
+				if(Double.isFinite(model.getValue("HEAD")))
+					g_compass.setBearing(model.getValue("HEAD"));
+				else
+					g_compass.setBearing(0);
 			}
-		};
+		});
 	}
 
 
@@ -37,12 +37,12 @@ import com.comino.flight.FXMLLoadHelper;
 import com.comino.flight.MainApp;
 import com.comino.flight.model.AnalysisDataModel;
 import com.comino.flight.model.service.AnalysisModelService;
+import com.comino.flight.ui.FrameScheduler;
 import com.comino.jfx.extensions.ChartControlPane;
 import com.comino.mavcom.control.IMAVController;
 
 import eu.hansolo.medusa.Gauge;
 import eu.hansolo.medusa.Gauge.SkinType;
-import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.paint.Color;
@@ -62,7 +62,7 @@ public class BatteryWidget extends ChartControlPane  {
 
 	private  AnalysisModelService dataService;
 
-	private AnimationTimer   task;
+	private FrameScheduler.Task task;
 	private AnalysisDataModel model;
 
 	private double voltage = 0;
@@ -73,40 +73,36 @@ public class BatteryWidget extends ChartControlPane  {
 
 		FXMLLoadHelper.load(this, "BatteryWidget.fxml");
 
-		task = new AnimationTimer() {
-			private long tms;
-			@Override public void handle(long now) {
-				if((System.currentTimeMillis()-tms)>1000 && MainApp.getPrimaryStage().isFocused()) {
-					tms = System.currentTimeMillis();
-		            if(!Double.isFinite(model.getValue("BATV"))) {
-		            	g_voltage.setValue(0);
-		            	g_voltage.setBarColor(Color.DARKGREY);
-		            	return;
-		            }
-					if(Math.abs(voltage - model.getValue("BATV")) > 0.1f) {
-						voltage = model.getValue("BATV");
-						g_voltage.setValue(voltage);
-						if(voltage < 10.5 && voltage > 0)
-							g_voltage.setBarColor(Color.RED);
-						if(voltage > 11.0)
-							g_voltage.setBarColor(Color.web("#2e9fbf"));
-					}
-					 if(!Double.isFinite(model.getValue("BATP"))) {
-			            	g_capacity.setValue(0);
-			            	g_capacity.setBarColor(Color.DARKGREY);
-			            	return;
-			            }
-					if(Math.abs(capacity - model.getValue("BATP")) > 0.01f) {
-						capacity = model.getValue("BATP");
-						g_capacity.setValue(capacity*100f);
-						if(capacity < 0.15 && capacity > 0)
-							g_capacity.setBarColor(Color.RED);
-						if(capacity > 0.20)
-							g_capacity.setBarColor(Color.web("#2e9fbf"));
-					}
-				}
+		task = FrameScheduler.getInstance().register("Battery", FrameScheduler.LOW, 1, (now) -> {
+			if(!MainApp.getPrimaryStage().isFocused())
+				return;
+			if(!Double.isFinite(model.getValue("BATV"))) {
+				g_voltage.setValue(0);
+				g_voltage.setBarColor(Color.DARKGREY);
+				return;
+			}
+			if(Math.abs(voltage - model.getValue("BATV")) > 0.1f) {
+				voltage = model.getValue("BATV");
+				g_voltage.setValue(voltage);
+				if(voltage < 10.5 && voltage > 0)
+					g_voltage.setBarColor(Color.RED);
+				if(voltage > 11.0)
+					g_voltage.setBarColor(Color.web("#2e9fbf"));
+			}
+			if(!Double.isFinite(model.getValue("BATP"))) {
+				g_capacity.setValue(0);
+				g_capacity.setBarColor(Color.DARKGREY);
+				return;
 			}
-		};
+			if(Math.abs(capacity - model.getValue("BATP")) > 0.01f) {
+				capacity = model.getValue("BATP");
+				g_capacity.setValue(capacity*100f);
+				if(capacity < 0.15 && capacity > 0)
+					g_capacity.setBarColor(Color.RED);
+				if(capacity > 0.20)
+					g_capacity.setBarColor(Color.web("#2e9fbf"));
+			}
+		});
 	}
 
 
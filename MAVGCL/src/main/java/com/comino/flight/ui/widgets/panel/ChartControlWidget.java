@@ -43,11 +43,11 @@ import com.comino.flight.file.FileHandler;
 import com.comino.flight.file.KeyFigurePreset;
 import com.comino.flight.model.service.AnalysisModelService;
 import com.comino.flight.observables.StateProperties;
+import com.comino.flight.ui.FrameScheduler;
 import com.comino.flight.ui.widgets.charts.IChartControl;
 import com.comino.jfx.extensions.ChartControlPane;
 import com.comino.mavcom.control.IMAVController;
 
-import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
@@ -88,11 +88,12 @@ public class ChartControlWidget extends ChartControlPane  {
 	private StateProperties state = StateProperties.getInstance();
 
 	private int   replay_index = 0;
+	private int   replay_index_old = 0;
 	private long  replay_tms   = 0;
 	private long  anim_tms     = 0;
 
 
-	private AnimationTimer task;
+	private FrameScheduler.Task task;
 
 	private Map<Integer,KeyFigurePreset> presets = new HashMap<Integer,KeyFigurePreset>();
 
@@ -118,7 +119,7 @@ public class ChartControlWidget extends ChartControlPane  {
 
 			if(nv.booleanValue()) {
 				state.getReplayingProperty().set(false);
-				if(modelService.getModelList().size() < totalTime_sec * 1000 /  modelService.getCollectorInterval_ms() || modelService.isCollecting())
+				if(modelService.getRecordedTimeSec() < totalTime_sec || modelService.isCollecting())
 					scroll.setDisable(true);
 				else
 					scroll.setDisable(false);
@@ -152,7 +153,7 @@ public class ChartControlWidget extends ChartControlPane  {
 			}
 
 
-			if(modelService.getModelList().size() < totalTime_sec * 1000 /  modelService.getCollectorInterval_ms()
+			if(modelService.getRecordedTimeSec() < totalTime_sec
 					|| modelService.isCollecting() || modelService.getModelList().size()==0)
 				scroll.setDisable(true);
 			else
@@ -207,7 +208,7 @@ public class ChartControlWidget extends ChartControlPane  {
 				return;
 			}
 
-			if(modelService.getModelList().size() < totalTime_sec * 1000 / modelService.getCollectorInterval_ms())
+			if(modelService.getRecordedTimeSec() < totalTime_sec)
 				scroll.setDisable(true);
 			else
 				scroll.setDisable(false);
@@ -233,39 +234,34 @@ public class ChartControlWidget extends ChartControlPane  {
 				.or(state.getRecordingAvailableProperty().not()
 						.and(state.getLogLoadedProperty().not())));
 
-		task = new AnimationTimer() {
-			long replay_time_ms; long replay_index_old;
-			@Override public void handle(long now) {
-
-
-				anim_tms = System.currentTimeMillis();
+		task = FrameScheduler.getInstance().register("Replay", FrameScheduler.HIGH, 0, (now) -> {
+			anim_tms = System.currentTimeMillis();
 
-				if(replay_index < modelService.getModelList().size()) {
+			if(replay_index < modelService.getModelList().size()) {
 
-					replay_time_ms = System.currentTimeMillis() -  replay_tms;
+				final long replay_time_ms = System.currentTimeMillis() -  replay_tms;
 
-					charts.entrySet().forEach((chart) -> { 
-						if(chart.getValue().getReplayProperty()!=null)
-							chart.getValue().getReplayProperty().set(replay_index);
-					});
-					replay_index = (int)(replay_time_ms / modelService.getCollectorInterval_ms());
-					if(replay_index > replay_index_old) {
-						state.getProgressProperty().set((float)(replay_index) / modelService.getModelList().size() );
-						scroll.setValue((1f - (float)replay_index/modelService.getModelList().size()));
-					} 
-					replay_index_old = replay_index;
-					modelService.setCurrent(replay_time_ms/1000f);
+				charts.entrySet().forEach((chart) -> {
+					if(chart.getValue().getReplayProperty()!=null)
+						chart.getValue().getReplayProperty().set(replay_index);
+				});
+				replay_index = Math.max(0, modelService.getIndexByTime(replay_time_ms / 1000.0));
+				if(replay_index > replay_index_old) {
+					state.getProgressProperty().set((float)(replay_index) / modelService.getModelList().size() );
+					scroll.setValue((1f - (float)replay_index/modelService.getModelList().size()));
+				}
+				replay_index_old = replay_index;
+				modelService.setCurrent(replay_time_ms/1000f);
 
 
-				} else {
-					task.stop();
-					scroll.setValue(0);
-					state.getProgressProperty().set(-1);
-					state.getReplayingProperty().set(false);
-					state.getCurrentUpToDate().set(true);
-				}
+			} else {
+				task.stop();
+				scroll.setValue(0);
+				state.getProgressProperty().set(-1);
+				state.getReplayingProperty().set(false);
+				state.getCurrentUpToDate().set(true);
 			}
-		};
+		});
 
 		play.setOnAction((ActionEvent event)-> {
 			if(!state.getReplayingProperty().get() && modelService.getModelList().size() > 0) {
@@ -282,7 +278,7 @@ public class ChartControlWidget extends ChartControlPane  {
 						chart.getValue().getReplayProperty().set(-replay_index);
 				});
 
-				replay_tms = System.currentTimeMillis() - (long)(replay_index * modelService.getCollectorInterval_ms());
+				replay_tms = System.currentTimeMillis() - (long)(modelService.getTimeByIndex(replay_index) * 1000);
 				anim_tms = 0;
 				task.start();
 			} else {
@@ -333,7 +329,7 @@ public class ChartControlWidget extends ChartControlPane  {
 	public void refreshCharts() {
 		super.refreshCharts();
 		scroll.setValue(0);
-		if(modelService.getModelList().size() > totalTime_sec * 1000 /  modelService.getCollectorInterval_ms())
+		if(modelService.getRecordedTimeSec() > totalTime_sec)
 			scroll.setDisable(false);
 	}
 
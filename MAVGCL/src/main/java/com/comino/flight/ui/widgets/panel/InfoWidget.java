@@ -174,12 +174,11 @@ public class InfoWidget extends ChartControlPane implements IChartControl {
 
 		replay.addListener((v, ov, nv) -> {
 			Platform.runLater(() -> {
-				final LogMessage message;
-				if(nv.intValue()<=1) {
-					message = dataService.getModelList().get(1).msg;
-				} else
-					message = dataService.getModelList().get(nv.intValue()).msg;
-				addMessageToList(message);
+				// messages passed since the last replay position
+				final int from = ov.intValue() < nv.intValue() ? ov.intValue() + 1 : nv.intValue();
+				dataService.getDataStore().forEachMessage(Math.max(1, from), nv.intValue() + 1, (m, i) -> {
+					addMessageToList(m);
+				});
 			});
 		});
 
@@ -41,13 +41,13 @@ import com.comino.flight.file.KeyFigurePreset;
 import com.comino.flight.model.AnalysisDataModel;
 import com.comino.flight.model.service.AnalysisModelService;
 import com.comino.flight.observables.StateProperties;
+import com.comino.flight.ui.FrameScheduler;
 import com.comino.flight.ui.widgets.charts.IChartControl;
 import com.comino.jfx.extensions.ChartControlPane;
 import com.comino.mavcom.control.IMAVController;
 import com.comino.mavcom.mavlink.IMAVLinkListener;
 import com.comino.mavcom.model.segment.LogMessage;
 
-import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.FloatProperty;
@@ -63,7 +63,7 @@ public class MessageWidget extends ChartControlPane implements IChartControl {
 
 	private AnalysisModelService dataService = AnalysisModelService.getInstance();
 
-	private AnimationTimer task;
+	private FrameScheduler.Task task;
 
 	private AnalysisDataModel model;
 	private LogMessage  message;
@@ -78,21 +78,18 @@ public class MessageWidget extends ChartControlPane implements IChartControl {
 
 		FXMLLoadHelper.load(this, "MessageWidget.fxml");
 
-		task = new AnimationTimer() {
-			@Override public void handle(long now) {
-				if(!isDisabled() && MainApp.getPrimaryStage().isFocused()) {
-					if(message != null && message.text!=null) {
-						g_message.setText(message.toString());
-						setVisible(true);
-						tms = System.currentTimeMillis();
-					}
-
-					if((System.currentTimeMillis()-tms)>1500)
-						setVisible(false);
-
+		task = FrameScheduler.getInstance().register("Message", FrameScheduler.NORMAL, 0, (now) -> {
+			if(!isDisabled() && MainApp.getPrimaryStage().isFocused()) {
+				if(message != null && message.text!=null) {
+					g_message.setText(message.toString());
+					setVisible(true);
+					tms = System.currentTimeMillis();
 				}
+
+				if((System.currentTimeMillis()-tms)>1500)
+					setVisible(false);
 			}
-		};
+		});
 	}
 
 
@@ -115,10 +112,11 @@ public class MessageWidget extends ChartControlPane implements IChartControl {
 		setVisible(false);
 		replay.addListener((v, ov, nv) -> {
 			Platform.runLater(() -> {
-				if(nv.intValue()<=1) {
-					message = dataService.getModelList().get(1).msg;
-				} else
-					message = dataService.getModelList().get(nv.intValue()).msg;
+				// latest message passed since the last replay position
+				final int from = ov.intValue() < nv.intValue() ? ov.intValue() + 1 : nv.intValue();
+				final LogMessage m = dataService.getDataStore().getLastMessage(Math.max(1, from), nv.intValue() + 1);
+				if(m != null)
+					message = m;
 			});
 		});
 
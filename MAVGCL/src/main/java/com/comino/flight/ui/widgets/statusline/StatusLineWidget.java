@@ -46,6 +46,7 @@ import com.comino.flight.model.AnalysisDataModel;
 import com.comino.flight.model.service.AnalysisModelService;
 import com.comino.flight.model.service.ICollectorRecordingListener;
 import com.comino.flight.observables.StateProperties;
+import com.comino.flight.ui.FrameScheduler;
 import com.comino.flight.ui.widgets.charts.IChartControl;
 import com.comino.flight.ui.widgets.panel.ChartControlWidget;
 import com.comino.jfx.extensions.Badge;
@@ -56,7 +57,6 @@ import com.comino.mavcom.model.segment.Status;
 import com.comino.mavcom.model.segment.Vision;
 import com.comino.speech.VoiceTTS;
 
-import javafx.animation.AnimationTimer;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.application.Platform;
@@ -127,10 +127,9 @@ public class StatusLineWidget extends Pane implements IChartControl {
 
 	private final static String[]  EKF2STATUS_TEXTS = { "", "ATT", "RPOS", "APOS", "FAULT", "VEL", "OTHER"  };
 
-	private AnimationTimer task = null;
+	private FrameScheduler.Task task = null;
 
 	int current_x0_pt = 0; int current_x1_pt = 0;
-	long last = 0;
 
 	private DataModel model;
 
@@ -145,196 +144,184 @@ public class StatusLineWidget extends Pane implements IChartControl {
 			throw new RuntimeException(exception);
 		}
 
-		task = new AnimationTimer() {
+		task = FrameScheduler.getInstance().register("StatusLine", FrameScheduler.NORMAL, 5, (now) -> {
+			int ekf_status = getEKF2Status();
+			List<AnalysisDataModel> list = null;
 
+			if(model.slam.wpcount > 0) {
+				wp.setText(String.format("WP %d", model.slam.wpcount));
+				wp.setMode(Badge.MODE_ON);
+			}
+			else if(model.sys.t_takeoff_ms < 0 ) {
+				wp.setText(String.format("T % d", (int)(model.sys.t_takeoff_ms/1000-0.5f)));
+				wp.setMode(Badge.MODE_ON);
+			}
+			else {
+				wp.setText("");
+				wp.setMode(Badge.MODE_OFF);
+			}
 
-			@Override
-			public void handle(long now) {
-
-				if((now - last) < 200000000)
-					return;
-				last = now;
-
-				int ekf_status = getEKF2Status();
-				List<AnalysisDataModel> list = null;
-
-				if(model.slam.wpcount > 0) {
-					wp.setText(String.format("WP %d", model.slam.wpcount));
-					wp.setMode(Badge.MODE_ON);
-				}
-				else if(model.sys.t_takeoff_ms < 0 ) {
-					wp.setText(String.format("T % d", (int)(model.sys.t_takeoff_ms/1000-0.5f)));
-					wp.setMode(Badge.MODE_ON);
-				}
+			if(UBXRTCM3Base.getInstance()!=null && UBXRTCM3Base.getInstance().getSVINStatus().get()) {
+				gps.setMode(Badge.MODE_ON);
+				gps.setText("SVIN");
+			} else {
+				if(!control.isConnected() || !model.sys.isSensorAvailable(Status.MSP_GPS_AVAILABILITY))
+					gps.setMode(Badge.MODE_OFF);
 				else {
-					wp.setText("");
-					wp.setMode(Badge.MODE_OFF);
-				}
+					switch(model.gps.fixtype & 0xF) {
+
+					case 2:
+						gps.setMode(Badge.MODE_ON);
+						gps.setText("GPS");
+					case 3:
+						gps.setMode(Badge.MODE_ON);
+						gps.setText("GPS Fix");
+						break;
+					case 4:
+						gps.setMode(Badge.MODE_ON);
+						gps.setText("GPS 3D");
+						break;
+					case 5:
+						gps.setMode(Badge.MODE_ON);
+						gps.setText("DGPS");
+						break;
+					case 6:
+						gps.setMode(Badge.MODE_ON);
+						gps.setText("RTK float");
+						break;
+					case 7:
+						gps.setMode(Badge.MODE_ON);
+						gps.setText("RTK fixed");
+						break;
 
-				if(UBXRTCM3Base.getInstance()!=null && UBXRTCM3Base.getInstance().getSVINStatus().get()) {
-					gps.setMode(Badge.MODE_ON);
-					gps.setText("SVIN");
-				} else {
-					if(!control.isConnected() || !model.sys.isSensorAvailable(Status.MSP_GPS_AVAILABILITY))
+					default:
+						gps.setText("No Fix");
 						gps.setMode(Badge.MODE_OFF);
-					else {
-						switch(model.gps.fixtype & 0xF) {
-
-						case 2:
-							gps.setMode(Badge.MODE_ON);
-							gps.setText("GPS");
-						case 3:
-							gps.setMode(Badge.MODE_ON);
-							gps.setText("GPS Fix");
-							break;
-						case 4:
-							gps.setMode(Badge.MODE_ON);
-							gps.setText("GPS 3D");
-							break;
-						case 5:
-							gps.setMode(Badge.MODE_ON);
-							gps.setText("DGPS");
-							break;
-						case 6:
-							gps.setMode(Badge.MODE_ON);
-							gps.setText("RTK float");
-							break;
-						case 7:
-							gps.setMode(Badge.MODE_ON);
-							gps.setText("RTK fixed");
-							break;
-
-						default:
-							gps.setText("No Fix");
-							gps.setMode(Badge.MODE_OFF);
-						}
 					}
 				}
+			}
 
-				filename = FileHandler.getInstance().getName();
-				driver.setText(model.sys.getSensorString());
-				vision.setText(model.vision.getShortText());
-
-				if(control.isConnected()) {
-
-					if(model.sys.isSensorAvailable(Status.MSP_IMU_AVAILABILITY))
-						driver.setBackgroundColor(Color.web("#1c6478"));
-					driver.setMode(Badge.MODE_ON);
-					if(model.vision.isStatus(Vision.PUBLISHED))
-						vision.setMode(Badge.MODE_ON);
-					else
-						vision.setMode(Badge.MODE_OFF);
-
-					if(model.sys.isSensorAvailable(Status.MSP_MSP_AVAILABILITY)) {
-						ready.setMode(Badge.MODE_ON);
-						if(model.sys.isStatus(Status.MSP_READY_FOR_FLIGHT)) {
-							ready.setBackgroundColorWhiteText(Color.LIMEGREEN);
-							ready.setText("READY");
-
-						}
-						else {
-							ready.setBackgroundColorWhiteText(Color.RED);
-							ready.setText("NOT READY");
-						}
-					} else {
-						
-						ready.setMode(Badge.MODE_ON);
-						if(ekf_status != 4) {
-							ready.setBackgroundColorWhiteText(Color.web("#1c6478"));
-							ready.setText("");
-
-						} else {
-							ready.setBackgroundColorWhiteText(Color.RED);
-							ready.setText("NOT READY");
-						}
-					}
+			filename = FileHandler.getInstance().getName();
+			driver.setText(model.sys.getSensorString());
+			vision.setText(model.vision.getShortText());
 
-				}
-				else {
-					ready.setMode(Badge.MODE_OFF);
-					driver.setMode(Badge.MODE_OFF);
-					ekf.setMode(Badge.MODE_OFF);
+			if(control.isConnected()) {
+
+				if(model.sys.isSensorAvailable(Status.MSP_IMU_AVAILABILITY))
+					driver.setBackgroundColor(Color.web("#1c6478"));
+				driver.setMode(Badge.MODE_ON);
+				if(model.vision.isStatus(Vision.PUBLISHED))
+					vision.setMode(Badge.MODE_ON);
+				else
 					vision.setMode(Badge.MODE_OFF);
-					driver.setText("");
-				}
 
-				list = collector.getModelList();
+				if(model.sys.isSensorAvailable(Status.MSP_MSP_AVAILABILITY)) {
+					ready.setMode(Badge.MODE_ON);
+					if(model.sys.isStatus(Status.MSP_READY_FOR_FLIGHT)) {
+						ready.setBackgroundColorWhiteText(Color.LIMEGREEN);
+						ready.setText("READY");
 
-				if(list.size()>0) {
-					if(!state.getReplayingProperty().get()) {
-						current_x0_pt = collector.calculateX0IndexByFactor(scroll.floatValue());
-						current_x1_pt = collector.calculateX1IndexByFactor(scroll.floatValue());
 					}
-
-					if(current_x1_pt < list.size()-1)
-						time.setText(
-								String.format("%1$tM:%1$tS - %2$tM:%2$tS / %3$tM:%3$tS",
-										list.get(current_x0_pt).tms/1000,
-										list.get(current_x1_pt).tms/1000,
-										list.get(list.size()-1).tms/1000)
-								);
-					else
-						time.setText(
-								String.format("%1$tM:%1$tS - %2$tM:%2$tS",
-										list.get(current_x0_pt).tms/1000,
-										list.get(current_x1_pt).tms/1000)
-								);
-
-					time.setBackgroundColor(Color.web("#1c6478"));
+					else {
+						ready.setBackgroundColorWhiteText(Color.RED);
+						ready.setText("NOT READY");
+					}
 				} else {
-					time.setText("00:00 - 00:00");
-					time.setBackgroundColor(Color.GRAY);
-				}
 
-				if(state.getReplayingProperty().get()) {
-					mode.setBackgroundColor(Color.web("#2989a3"));
-					mode.setText("Replay");
-					mode.setMode(Badge.MODE_ON);
-				}
-				else if(!filename.isEmpty()) {
-					mode.setBackgroundColor(Color.web("#2989a3"));
-					mode.setText(filename);
-					mode.setMode(Badge.MODE_ON);
-				}
-				else if(control.isConnected()) {
-					switch(control.getMode()) {
-					case MAVController.MODE_NORMAL:
-						mode.setText("Connected");
-						break;
-					case MAVController.MODE_USB:
-						mode.setText("Serial");
-						break;
-					case MAVController.MODE_SITL:
-						mode.setText("SITL");
-						break;	
-					case MAVController.MODE_SITL_PROXY:
-						mode.setText("SITL Proxy");
-						break;	
+					ready.setMode(Badge.MODE_ON);
+					if(ekf_status != 4) {
+						ready.setBackgroundColorWhiteText(Color.web("#1c6478"));
+						ready.setText("");
+
+					} else {
+						ready.setBackgroundColorWhiteText(Color.RED);
+						ready.setText("NOT READY");
 					}
-					mode.setBackgroundColor(Color.web("#1c6478"));
-					mode.setMode(Badge.MODE_ON);
-				} else {
-					mode.setMode(Badge.MODE_OFF);
 				}
 
-				if(list.size()==0) {
-					time.setMode(Badge.MODE_OFF);
-				} else {
-					time.setMode(Badge.MODE_ON);
+			}
+			else {
+				ready.setMode(Badge.MODE_OFF);
+				driver.setMode(Badge.MODE_OFF);
+				ekf.setMode(Badge.MODE_OFF);
+				vision.setMode(Badge.MODE_OFF);
+				driver.setText("");
+			}
+
+			list = collector.getModelList();
+
+			if(list.size()>0) {
+				if(!state.getReplayingProperty().get()) {
+					current_x0_pt = collector.calculateX0IndexByFactor(scroll.floatValue());
+					current_x1_pt = collector.calculateX1IndexByFactor(scroll.floatValue());
 				}
 
-				if(control.isConnected()) {
-					ekf.setText(EKF2STATUS_TEXTS[ekf_status]);
-					if(ekf_status != 4)
-						ekf.setBackgroundColor(Color.web("#1c6478"));
-					else
-						ekf.setBackgroundColor(Color.DARKRED);
-					ekf.setMode(Badge.MODE_ON);
+				if(current_x1_pt < list.size()-1)
+					time.setText(
+							String.format("%1$tM:%1$tS - %2$tM:%2$tS / %3$tM:%3$tS",
+									list.get(current_x0_pt).tms/1000,
+									list.get(current_x1_pt).tms/1000,
+									list.get(list.size()-1).tms/1000)
+							);
+				else
+					time.setText(
+							String.format("%1$tM:%1$tS - %2$tM:%2$tS",
+									list.get(current_x0_pt).tms/1000,
+									list.get(current_x1_pt).tms/1000)
+							);
+
+				time.setBackgroundColor(Color.web("#1c6478"));
+			} else {
+				time.setText("00:00 - 00:00");
+				time.setBackgroundColor(Color.GRAY);
+			}
+
+			if(state.getReplayingProperty().get()) {
+				mode.setBackgroundColor(Color.web("#2989a3"));
+				mode.setText("Replay");
+				mode.setMode(Badge.MODE_ON);
+			}
+			else if(!filename.isEmpty()) {
+				mode.setBackgroundColor(Color.web("#2989a3"));
+				mode.setText(filename);
+				mode.setMode(Badge.MODE_ON);
+			}
+			else if(control.isConnected()) {
+				switch(control.getMode()) {
+				case MAVController.MODE_NORMAL:
+					mode.setText("Connected");
+					break;
+				case MAVController.MODE_USB:
+					mode.setText("Serial");
+					break;
+				case MAVController.MODE_SITL:
+					mode.setText("SITL");
+					break;
+				case MAVController.MODE_SITL_PROXY:
+					mode.setText("SITL Proxy");
+					break;
 				}
+				mode.setBackgroundColor(Color.web("#1c6478"));
+				mode.setMode(Badge.MODE_ON);
+			} else {
+				mode.setMode(Badge.MODE_OFF);
+			}
 
+			if(list.size()==0) {
+				time.setMode(Badge.MODE_OFF);
+			} else {
+				time.setMode(Badge.MODE_ON);
 			}
 
-		};
+			if(control.isConnected()) {
+				ekf.setText(EKF2STATUS_TEXTS[ekf_status]);
+				if(ekf_status != 4)
+					ekf.setBackgroundColor(Color.web("#1c6478"));
+				else
+					ekf.setBackgroundColor(Color.DARKRED);
+				ekf.setMode(Badge.MODE_ON);
+			}
+		});
 
 
 		driver.setAlignment(Pos.CENTER_LEFT);
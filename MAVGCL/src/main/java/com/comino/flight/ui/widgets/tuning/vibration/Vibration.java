@@ -42,13 +42,13 @@ import com.comino.flight.model.AnalysisDataModel;
 import com.comino.flight.model.service.AnalysisModelService;
 import com.comino.flight.model.service.ICollectorRecordingListener;
 import com.comino.flight.observables.StateProperties;
+import com.comino.flight.ui.FrameScheduler;
 import com.comino.flight.ui.widgets.charts.IChartControl;
 import com.comino.flight.ui.widgets.charts.utils.XYDataPool;
 import com.comino.jfx.extensions.ChartControlPane;
 import com.comino.mavcom.control.IMAVController;
 import com.comino.mavcom.model.DataModel;
 
-import javafx.animation.AnimationTimer;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.application.Platform;
@@ -60,7 +60,6 @@ import javafx.fxml.FXML;
 import javafx.scene.chart.LineChart;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.XYChart;
-import javafx.scene.chart.XYChart.Data;
 import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.ProgressBar;
@@ -99,7 +98,7 @@ public class Vibration extends VBox implements IChartControl  {
 	private ChoiceBox<String> source;
 
 
-	private AnimationTimer task;
+	private FrameScheduler.Task task;
 
 
 	private FloatProperty   scroll       = new SimpleFloatProperty(0);
@@ -133,15 +132,12 @@ public class Vibration extends VBox implements IChartControl  {
 
 		FXMLLoadHelper.load(this, "Vibration.fxml");
 		
-		task = new AnimationTimer() {
-			@Override
-			public void handle(long now) {
-				if(dataService.isCollecting() && !isDisabled()) {
-					max_pt = dataService.getModelList().size() - 1;
-					updateGraph();
-				}
-			}		
-		};
+		task = FrameScheduler.getInstance().register("Vibration", FrameScheduler.LOW, 0, (now) -> {
+			if(dataService.isCollecting() && !isDisabled()) {
+				max_pt = dataService.getModelList().size() - 1;
+				updateGraph();
+			}
+		});
 	
 
 		pool = new XYDataPool();
@@ -257,9 +253,13 @@ public class Vibration extends VBox implements IChartControl  {
 
 		max_pt = max_pt >= dataService.getModelList().size() ? dataService.getModelList().size() -1 : max_pt;
 
+		pool.invalidateAll(series1.getData());
+		pool.invalidateAll(series2.getData());
+		pool.invalidateAll(series3.getData());
 		series1.getData().clear();
 		series2.getData().clear();
 		series3.getData().clear();
+		pool.frame();
 
 		if(dataService.getModelList().size()==0) {
 			vz.setProgress(0);
@@ -315,13 +315,13 @@ public class Vibration extends VBox implements IChartControl  {
 		case 3:
 
 			fft1.forward(data1); 
-			series1.getData().add(new Data<Number, Number>(0.0,0.0));
+			series1.getData().add(pool.checkOut(0,0));
 			for(int i = 1; i < fft1.specSize(); i++ ) {
 				series1.getData().add(pool.checkOut(i * fft1.getBandWidth(),fft1.getSpectrum()[i]));
 			}
 
 			fft2.forward(data2); 
-			series2.getData().add(new Data<Number, Number>(0.0,0.0));
+			series2.getData().add(pool.checkOut(0,0));
 			for(int i = 1; i < fft2.specSize(); i++ ) {
 				series2.getData().add(pool.checkOut(i * fft2.getBandWidth(),fft2.getSpectrum()[i]));
 			}
@@ -331,7 +331,7 @@ public class Vibration extends VBox implements IChartControl  {
 		case 1:
 
 			fft3.forward(data3);
-			series3.getData().add(new Data<Number, Number>(0.0,0.0));
+			series3.getData().add(pool.checkOut(0,0));
 			for(int i = 1; i < fft3.specSize(); i++ ) {
 				series3.getData().add(pool.checkOut(i * fft3.getBandWidth(),fft3.getSpectrum()[i]));
 			}
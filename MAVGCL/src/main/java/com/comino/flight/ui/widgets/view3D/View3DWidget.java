@@ -38,6 +38,7 @@ import com.comino.flight.file.KeyFigurePreset;
 import com.comino.flight.model.AnalysisDataModel;
 import com.comino.flight.model.service.AnalysisModelService;
 import com.comino.flight.observables.StateProperties;
+import com.comino.flight.ui.FrameScheduler;
 import com.comino.flight.ui.widgets.charts.IChartControl;
 import com.comino.flight.ui.widgets.view3D.objects.Camera;
 import com.comino.flight.ui.widgets.view3D.objects.Map3DGroup;
@@ -48,7 +49,6 @@ import com.comino.flight.ui.widgets.view3D.utils.Xform;
 import com.comino.mavcom.control.IMAVController;
 
 import georegression.struct.point.Point3D_F64;
-import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.FloatProperty;
@@ -74,7 +74,7 @@ public class View3DWidget extends SubScene implements IChartControl {
 	private static final float  VEHICLE_SCALE = 50.0f;
 	
 
-	private AnimationTimer 	task 		= null;
+	private FrameScheduler.Task task 		= null;
 	private Xform 			world 		= new Xform();
 
 	private Box             ground;
@@ -182,27 +182,24 @@ public class View3DWidget extends SubScene implements IChartControl {
 		});
 		
 		
-		task = new AnimationTimer() {
-			@Override
-			public void handle(long now) {
-				if(isDisabled())
-					return;
+		task = FrameScheduler.getInstance().register("View3D", FrameScheduler.NORMAL, 0, (now) -> {
+			if(isDisabled())
+				return;
 //				target.updateState(model);
 //				vehicle.updateState(model,offset);
-				switch(perspective) {
-				case Camera.OBSERVER_PERSPECTIVE:
-					if(!vehicle.isVisible())
-						  vehicle.setVisible(true);
-					vehicle.updateState(model,offset);
-					trajectory.updateState(model,offset);
-					break;
-				case Camera.VEHICLE_PERSPECTIVE:
-					camera.updateState(model);
-					trajectory.clear();
-					break;
-				}
-			}		
-		};
+			switch(perspective) {
+			case Camera.OBSERVER_PERSPECTIVE:
+				if(!vehicle.isVisible())
+					  vehicle.setVisible(true);
+				vehicle.updateState(model,offset);
+				trajectory.updateState(model,offset);
+				break;
+			case Camera.VEHICLE_PERSPECTIVE:
+				camera.updateState(model);
+				trajectory.clear();
+				break;
+			}
+		});
 
 		scroll.addListener((v, ov, nv) -> {
 			if(StateProperties.getInstance().getRecordingProperty().get()==AnalysisModelService.STOPPED) {
@@ -118,12 +118,12 @@ public class Camera extends Xform {
 	}
 
 	public void updateState(AnalysisDataModel model) {
-		this.setTranslate(-model.getValue("LPOSY")*100, model.getValue("LPOSZ") > -0.05 ? 5 : -model.getValue("LPOSZ") *100, model.getValue("LPOSX")*100);
-		this.ry.setAngle(MSPMathUtils.fromRad(model.getValue("YAW")));
+		this.setTranslate(-model.getValue("LPOSY", 0)*100, model.getValue("LPOSZ", 0) > -0.05 ? 5 : -model.getValue("LPOSZ", 0) *100, model.getValue("LPOSX", 0)*100);
+		this.ry.setAngle(MSPMathUtils.fromRad(model.getValue("YAW", 0)));
 
 		if(perspective==VEHICLE_PERSPECTIVE) {
-			this.rz.setAngle(-MSPMathUtils.fromRad(model.getValue("ROLL"))+180);
-			this.rx.setAngle(MSPMathUtils.fromRad(model.getValue("PITCH"))+vv_angle);
+			this.rz.setAngle(-MSPMathUtils.fromRad(model.getValue("ROLL", 0))+180);
+			this.rx.setAngle(MSPMathUtils.fromRad(model.getValue("PITCH", 0))+vv_angle);
 		}
 	}
 
@@ -7,13 +7,13 @@ import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 
 import com.comino.flight.model.map.MAVGCLMap;
+import com.comino.flight.ui.FrameScheduler;
 import com.comino.mavcom.model.DataModel;
 import com.comino.mavmap.map.map3D.Map3DSpacialInfo;
 
 import bubo.maps.d3.grid.CellProbability_F64;
 import georegression.struct.point.Point3D_F64;
 import georegression.struct.point.Point3D_I32;
-import javafx.animation.AnimationTimer;
 import javafx.scene.Group;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.Material;
@@ -25,7 +25,7 @@ public class Map3DGroup {
 
 	private final Group root;
 
-	private AnimationTimer              task    = null;
+	private FrameScheduler.Task         task    = null;
 	private final List<PhongMaterial>  	blocked = new ArrayList<PhongMaterial>();
 	private final Map<Long,Box>         boxes;
 
@@ -60,31 +60,26 @@ public class Map3DGroup {
 		markerMaterial.setDiffuseColor(Color.RED);
 
 
-		task = new AnimationTimer() {
-			long entry=0;
-			@Override
-			public void handle(long now) {
-
-				BlockingQueue<Long> list = map.getList();
-
-				if(!list.isEmpty()) {
-					
-					size = info.getCellSize() * 100;
-					
-					while(!list.isEmpty()) {
-						entry = list.poll();
-						if(entry < 0) {
-							root.getChildren().removeAll(boxes.values());
-							boxes.clear();
-							return;
-						}
-						info.decodeMapPoint(entry, point);
-						addBlock(point);
+		task = FrameScheduler.getInstance().register("Map3D", FrameScheduler.LOW, 0, (now) -> {
+			BlockingQueue<Long> list = map.getList();
+
+			if(!list.isEmpty()) {
+
+				size = info.getCellSize() * 100;
+
+				while(!list.isEmpty()) {
+					final long entry = list.poll();
+					if(entry < 0) {
+						root.getChildren().removeAll(boxes.values());
+						boxes.clear();
+						return;
 					}
-					setIndicator(map.getIndicator());
+					info.decodeMapPoint(entry, point);
+					addBlock(point);
 				}
+				setIndicator(map.getIndicator());
 			}
-		};
+		});
 
 		// Always rung grid update
 		task.start();
@@ -80,14 +80,14 @@ public class VehicleModel extends Group {
 
 		this.getTransforms().clear();
 
-		this.addRotate(this, this.ry, 180-MSPMathUtils.fromRad(model.getValue("YAW"))-90);
-		this.addRotate(this, this.rz, 180-MSPMathUtils.fromRad(model.getValue("PITCH")));
-		this.addRotate(this, this.rx, MSPMathUtils.fromRad(model.getValue("ROLL"))+90);
+		this.addRotate(this, this.ry, 180-MSPMathUtils.fromRad(model.getValue("YAW", 0))-90);
+		this.addRotate(this, this.rz, 180-MSPMathUtils.fromRad(model.getValue("PITCH", 0)));
+		this.addRotate(this, this.rx, MSPMathUtils.fromRad(model.getValue("ROLL", 0))+90);
 
-		this.setTranslateX(-model.getValue("LPOSY")*100);
+		this.setTranslateX(-model.getValue("LPOSY", 0)*100);
 //		
 //		if(Double.isFinite(z_offset))
-		     z_pos =    ( - model.getValue("LPOSZ") - z_offset ) * 100 - 12 ;
+		     z_pos =    ( - model.getValue("LPOSZ", 0) - z_offset ) * 100 - 12 ;
 //		else
 //			 z_pos =  - model.getValue("LPOSZ") * 100  ;
 		
@@ -95,7 +95,7 @@ public class VehicleModel extends Group {
 
 
 		this.setTranslateY(z_pos < 0 ? 0 : z_pos);
-		this.setTranslateZ(model.getValue("LPOSX")*100);
+		this.setTranslateZ(model.getValue("LPOSX", 0)*100);
 		
 
 
@@ -0,0 +1,108 @@
+/****************************************************************************
+ *
+ *   Copyright (c) 2017,2021 Eike Mansfeld ecm@gmx.de. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ ****************************************************************************/
+
+package com.comino.jmavlib.extensions;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Bounded lock-free queue for exactly one producer and one consumer thread. Each side only writes
+ * its own index, the other index is read to detect full or empty.
+ */
+
+public class SPSCQueue<T> {
+
+	private final Object[] items;
+	private final int      mask;
+
+	private final AtomicLong head = new AtomicLong();   // next slot to read, written by the consumer
+	private final AtomicLong tail = new AtomicLong();   // next slot to write, written by the producer
+
+	// local copies of the other side's index, refreshed only when needed
+	private long head_cache = 0;
+	private long tail_cache = 0;
+
+	public SPSCQueue(int capacity) {
+		int size = 1;
+		while(size < capacity)
+			size <<= 1;
+		this.items = new Object[size];
+		this.mask  = size - 1;
+	}
+
+	/*
+	 * Producer: false if the queue is full
+	 */
+	public boolean offer(T item) {
+		final long t = tail.get();
+		if(t - head_cache >= items.length) {
+			head_cache = head.get();
+			if(t - head_cache >= items.length)
+				return false;
+		}
+		items[(int)(t & mask)] = item;
+		// full fence: a consumer about to park must see the item or be seen as waiting
+		tail.set(t + 1);
+		return true;
+	}
+
+	/*
+	 * Consumer: null if the queue is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public T poll() {
+		final long h = head.get();
+		if(h >= tail_cache) {
+			tail_cache = tail.get();
+			if(h >= tail_cache)
+				return null;
+		}
+		final int index = (int)(h & mask);
+		final T item = (T)items[index];
+		items[index] = null;
+		head.lazySet(h + 1);
+		return item;
+	}
+
+	public boolean isEmpty() {
+		return head.get() >= tail.get();
+	}
+
+	public int size() {
+		return (int)(tail.get() - head.get());
+	}
+
+	public int capacity() {
+		return items.length;
+	}
+}
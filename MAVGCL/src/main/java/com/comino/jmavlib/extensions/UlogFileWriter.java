@@ -0,0 +1,226 @@
+/****************************************************************************
+ *
+ *   Copyright (c) 2017,2021 Eike Mansfeld ecm@gmx.de. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ * ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ ****************************************************************************/
+
+package com.comino.jmavlib.extensions;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Writes a ULog byte stream to a file. Bytes are collected in large buffers which are written by a
+ * separate thread, the caller never waits for the disk. The file is written as <name>.part and
+ * renamed to <name> when closed.
+ */
+
+public class UlogFileWriter {
+
+	private static final int  BUFFER_SIZE = 1 << 20;
+	private static final int  MAX_BUFFERS = 16;
+	private static final byte MESSAGE_TYPE_DROPOUT = (byte) 'O';
+
+	private final File        file;
+	private final File        part;
+	private final FileChannel channel;
+
+	private final ArrayBlockingQueue<ByteBuffer> pool = new ArrayBlockingQueue<ByteBuffer>(MAX_BUFFERS);
+	private final ExecutorService                io;
+
+	private ByteBuffer current;
+	private int        allocated = 1;
+	private boolean    closed    = false;
+	private long       drop_start_ns = 0;
+
+	private volatile long  written = 0;
+	private volatile long  dropped = 0;
+	private volatile long  dropouts = 0;
+	private volatile IOException error = null;
+
+	public UlogFileWriter(File file) throws IOException {
+		this.file    = file;
+		this.part    = new File(file.getPath()+".part");
+		this.channel = FileChannel.open(part.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		this.current = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		this.io      = Executors.newSingleThreadExecutor(r -> {
+			Thread t = new Thread(r);
+			t.setName("ULog writer");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/*
+	 * Writes one complete message, it is either written or dropped as a whole
+	 */
+	public synchronized void write(byte[] data, int offset, int length) {
+		if(!reserve(length))
+			return;
+		put(data, offset, length);
+	}
+
+	/*
+	 * Writes one complete message given in two parts, e.g. wrapping around the end of a ring
+	 */
+	public synchronized void write(byte[] data, int offset1, int length1, int offset2, int length2) {
+		if(!reserve(length1 + length2))
+			return;
+		put(data, offset1, length1);
+		put(data, offset2, length2);
+	}
+
+	/*
+	 * Marks lost data of the given duration, must be called between complete messages
+	 */
+	public synchronized void writeDropout(int duration_ms) {
+		if(!reserve(5))
+			return;
+		if(current.remaining() < 5)
+			next();
+		putDropout(duration_ms);
+	}
+
+	/*
+	 * Writes the remaining data and renames the file. The returned future completes with the file,
+	 * or with null if no data was written or the file could not be written.
+	 */
+	public synchronized CompletableFuture<File> close() {
+		final CompletableFuture<File> result = new CompletableFuture<File>();
+		if(closed) {
+			result.complete(null);
+			return result;
+		}
+		closed = true;
+		submit(current);
+		io.execute(() -> {
+			try {
+				channel.close();
+				if(error != null || written == 0) {
+					part.delete();
+					result.complete(null);
+				} else {
+					Files.move(part.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+					result.complete(file);
+				}
+			} catch(IOException e) {
+				System.err.println("ULog writer: "+e.getMessage());
+				result.complete(null);
+			}
+		});
+		io.shutdown();
+		return result;
+	}
+
+	public long getBytesDropped() {
+		return dropped;
+	}
+
+	public long getDropouts() {
+		return dropouts;
+	}
+
+	/*
+	 * Ensures space for a message of length bytes plus a pending dropout marker. If the writer thread
+	 * does not keep up, the message is dropped and a dropout is written in front of the next one.
+	 */
+	private boolean reserve(int length) {
+		if(closed)
+			return false;
+		final int required = length + (drop_start_ns > 0 ? 5 : 0);
+		if(required > current.remaining() && pool.isEmpty() && allocated >= MAX_BUFFERS) {
+			dropped += length;
+			if(drop_start_ns == 0)
+				drop_start_ns = System.nanoTime();
+			return false;
+		}
+		if(drop_start_ns > 0) {
+			if(current.remaining() < 5)
+				next();
+			putDropout((int)((System.nanoTime() - drop_start_ns) / 1000000L));
+			drop_start_ns = 0;
+		}
+		return true;
+	}
+
+	private void put(byte[] data, int offset, int length) {
+		while(length > 0) {
+			if(!current.hasRemaining())
+				next();
+			final int n = Math.min(length, current.remaining());
+			current.put(data, offset, n);
+			offset += n; length -= n;
+		}
+	}
+
+	private void putDropout(int duration_ms) {
+		current.put((byte)2).put((byte)0).put(MESSAGE_TYPE_DROPOUT);
+		current.putShort((short)Math.max(0, Math.min(65535, duration_ms)));
+		dropouts++;
+	}
+
+	// hands the buffer to the writer thread and continues with a free one
+	private void next() {
+		submit(current);
+		ByteBuffer b = pool.poll();
+		if(b == null) {
+			b = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			allocated++;
+		}
+		current = b;
+	}
+
+	private void submit(ByteBuffer b) {
+		b.flip();
+		io.execute(() -> {
+			try {
+				while(b.hasRemaining() && error == null)
+					channel.write(b);
+				written += b.limit();
+			} catch(IOException e) {
+				error = e;
+				System.err.println("ULog writer: "+e.getMessage());
+			}
+			b.clear();
+			pool.offer(b);
+		});
+	}
+}
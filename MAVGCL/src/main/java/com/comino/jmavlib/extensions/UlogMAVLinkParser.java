@@ -36,6 +36,7 @@ package com.comino.jmavlib.extensions;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +49,7 @@ import org.mavlink.messages.lquac.msg_logging_data_acked;
 import com.comino.mavcom.log.MSPLogger;
 
 import me.drton.jmavlib.log.FormatErrorException;
+import me.drton.jmavlib.log.ulog.FieldBinding;
 import me.drton.jmavlib.log.ulog.FieldFormat;
 import me.drton.jmavlib.log.ulog.MessageAddLogged;
 import me.drton.jmavlib.log.ulog.MessageData;
@@ -75,7 +77,32 @@ public class UlogMAVLinkParser  {
 
 	private static final int INCOMPAT_FLAG0_DATA_APPENDED_MASK = 1<<0;
 
+	private static final int RING_SIZE = 1 << 19;
+	private static final int RING_MASK = RING_SIZE - 1;
+
+	// header messages
 	private ByteBuffer buffer = null;
+
+	// data messages: parsed in place, positions are absolute byte counts, never compacted
+	private final byte[]     ring        = new byte[RING_SIZE];
+	private final ByteBuffer ring_buffer = ByteBuffer.wrap(ring).order(ByteOrder.LITTLE_ENDIAN);
+	private final ByteBuffer wrapped     = ByteBuffer.allocate(65536).order(ByteOrder.LITTLE_ENDIAN);
+	private long    ring_write    = 0;
+	private long    ring_read     = 0;
+	private boolean synced        = true;
+	private long    overflows     = 0;
+	private long    resyncs       = 0;
+	private long    dropped_bytes = 0;
+	private long    last_packet_ns = 0;
+
+	// the ring is owned by the thread adding data packets, resets from other threads are applied there
+	private volatile boolean ring_reset = false;
+	private volatile boolean ring_reset_stats = false;
+
+	// optional copy of the received stream into a .ulg file
+	private volatile UlogFileWriter writer = null;
+	private boolean header_written = false;
+	private int     header_teed    = 0;     // header buffer bytes written as complete messages
 	private long logStartTimestamp;
 
 	// Header maps
@@ -85,9 +112,10 @@ public class UlogMAVLinkParser  {
 	private List<Subscription> messageSubscriptions = new ArrayList<Subscription>();
 	private Map<String, String> fieldsList = new HashMap<String, String>();
 
-	// Data map
+	// Data slots of bound fields
 
-	private Map<String, Object> data = new HashMap<String, Object>();
+	private double[] data = new double[0];
+	private FieldBinding[] bindings = new FieldBinding[0];
 
 	// System info
 	private String systemName;
@@ -111,36 +139,101 @@ public class UlogMAVLinkParser  {
 		buffer.clear();
 	}
 
+	/*
+	 * Appends the payload of a data packet to the ring. If the previous packet was lost (ok = false)
+	 * the incomplete message is dropped and parsing continues at the first message starting in this
+	 * packet. Packets without a message start are dropped until then.
+	 */
 	public void addToBuffer(msg_logging_data msg, boolean ok) {
-		try {
-			if(ok) {
-				for (int i = 0; i < msg.data.length; i++)
-					buffer.put((byte)(msg.data[i] & 0x00FF));
-			} else {
-				buffer.clear();
-				for (int i = msg.first_message_offset; i < msg.data.length; i++)
-					buffer.put((byte)(msg.data[i] & 0x00FF));
+		final int length = Math.max(0, Math.min(msg.length, msg.data.length));
+		final long now = System.nanoTime();
+		int offset = 0;
+
+		if(ring_reset)
+			resetRing();
+
+		if(!ok || !synced) {
+			// complete messages are already written, mark the gap before the next one
+			final UlogFileWriter w = writer;
+			if(w!=null && synced)
+				w.writeDropout((int)((now - last_packet_ns) / 1000000L));
+			dropped_bytes += ring_write - ring_read;
+			ring_read = ring_write;
+			if(msg.first_message_offset >= length) {
+				dropped_bytes += length;
+				synced = false;
+				return;
 			}
-		} catch(Exception o) {
-			          o.printStackTrace();
+			offset = msg.first_message_offset;
+			synced = true;
+			resyncs++;
+		}
+
+		last_packet_ns = now;
+
+		if(length - offset > RING_SIZE - (ring_write - ring_read)) {
+			final UlogFileWriter w = writer;
+			if(w!=null)
+				w.writeDropout(0);
+			overflows++;
+			dropped_bytes += ring_write - ring_read + length - offset;
+			ring_read = ring_write;
+			synced = false;
+			return;
+		}
+
+		final int[] data = msg.data;
+		int p = (int)(ring_write & RING_MASK);
+		int i = offset;
+		while(i < length) {
+			final int n = Math.min(length - i, RING_SIZE - p);
+			for(int k = 0; k < n; k++)
+				ring[p + k] = (byte)data[i + k];
+			i += n; p = (p + n) & RING_MASK;
 		}
+		ring_write += length - offset;
 	}
 
 	public void addToBuffer(msg_logging_data_acked msg) {
-		for (int i = 0; i < msg.data.length; i++)
+		final int length = Math.max(0, Math.min(msg.length, msg.data.length));
+		for (int i = 0; i < length; i++)
 			buffer.put((byte)(msg.data[i] & 0x00FF));
+		teeHeader();
+	}
+
+	/*
+	 * Received header and data messages are additionally written to the file, starting with the
+	 * next header. Null stops writing.
+	 */
+	public void setWriter(UlogFileWriter writer) {
+		this.header_written = false;
+		this.header_teed = 0;
+		this.writer = writer;
 	}
 
 	public Map<String, String> getFieldList() {
 		return fieldsList;
 	}
 
-	public Map<String, Object> getDataBuffer() {
+	public double[] getDataBuffer() {
 		return data;
 	}
 
 	public void clearBuffer() {
 		buffer.clear();
+		ring_reset = true;
+	}
+
+	public long getOverflowCount() {
+		return overflows;
+	}
+
+	public long getResyncCount() {
+		return resyncs;
+	}
+
+	public long getDroppedBytes() {
+		return dropped_bytes;
 	}
 
 	public void reset() {
@@ -152,6 +245,20 @@ public class UlogMAVLinkParser  {
 	//	data.clear();
 		nestedParsingDone = false;
 		buffer.clear();
+		header_written = false;
+		header_teed = 0;
+		ring_reset_stats = true;
+		ring_reset = true;
+	}
+
+	private void resetRing() {
+		ring_reset = false;
+		ring_read = ring_write = 0;
+		synced = true;
+		if(ring_reset_stats) {
+			ring_reset_stats = false;
+			overflows = 0; resyncs = 0; dropped_bytes = 0;
+		}
 	}
 
 	public String getSystemInfo() {
@@ -166,24 +273,82 @@ public class UlogMAVLinkParser  {
 		}
 		MSPLogger.getInstance().writeLocalMsg("[mgc] ULOG Logging started",
 				MAV_SEVERITY.MAV_SEVERITY_DEBUG);
+		final UlogFileWriter w = writer;
+		if(w!=null) {
+			w.write(buffer.array(), 0, buffer.position());
+			header_written = true;
+		}
 		buffer.compact();
+		header_teed = 0;
+		teeHeader();
 		logStartTimestamp = 0;
 		return true;
 	}
 
+	/*
+	 * Decodes all complete data messages in the ring. Messages are decoded in place, only a message
+	 * wrapping around the end of the ring is copied.
+	 */
 	public void parseData(boolean debug) {
-		Object msg = null;
-		buffer.flip();
-		while ((msg = readMessage()) != null) {
-			if(debug)
-				System.out.println(msg);
-			if(msg instanceof MessageData) {
-				if (timeStart < 0)
-					timeStart = ((MessageData)msg).timestamp;
-				applyMsg(data, (MessageData) msg);
+		int start; int msgSize; int msgID; long tms;
+		if (ring_reset)
+			return;
+		while (ring_write - ring_read >= 3) {
+			start   = (int)(ring_read & RING_MASK);
+			msgSize = (ring[start] & 0x00FF) + (256 * (ring[(start+1) & RING_MASK] & 0x00FF));
+			if (msgSize > ring_write - ring_read - 3)
+				break;
+			ring_read += 3 + msgSize;
+			if (writer != null)
+				tee(start, 3 + msgSize);
+			if (ring[(start+2) & RING_MASK] != MESSAGE_TYPE_DATA || msgSize < 2)
+				continue;
+			msgID = (ring[(start+3) & RING_MASK] & 0x00FF) + (256 * (ring[(start+4) & RING_MASK] & 0x00FF));
+			if (msgID >= bindings.length || bindings[msgID] == null)
+				continue;
+			if (start + 3 + msgSize <= RING_SIZE) {
+				tms = bindings[msgID].decode(ring_buffer, start+5, data);
+			} else {
+				final int first = RING_SIZE - start - 5;
+				if (first > 0) {
+					System.arraycopy(ring, start+5, wrapped.array(), 0, first);
+					System.arraycopy(ring, 0, wrapped.array(), first, msgSize - 2 - first);
+				} else
+					System.arraycopy(ring, (start+5) & RING_MASK, wrapped.array(), 0, msgSize - 2);
+				tms = bindings[msgID].decode(wrapped, 0, data);
 			}
+			if (timeStart < 0)
+				timeStart = tms;
+			if(debug)
+				System.out.println(bindings[msgID]+" t="+tms);
+		}
+	}
+
+	private void tee(int start, int length) {
+		final UlogFileWriter w = writer;
+		if (w == null || !header_written)
+			return;
+		final int first = Math.min(length, RING_SIZE - start);
+		if (first < length)
+			w.write(ring, start, first, 0, length - first);
+		else
+			w.write(ring, start, length);
+	}
+
+	// header messages are written when complete, packets may split them
+	private void teeHeader() {
+		final UlogFileWriter w = writer;
+		if (w == null || !header_written)
+			return;
+		final byte[] a = buffer.array();
+		final int end = buffer.position();
+		while (end - header_teed >= 3) {
+			final int length = 3 + (a[header_teed] & 0x00FF) + 256 * (a[header_teed+1] & 0x00FF);
+			if (length > end - header_teed)
+				break;
+			w.write(a, header_teed, length);
+			header_teed += length;
 		}
-		buffer.compact();
 	}
 
 	public void parseHeader()   {
@@ -297,15 +462,20 @@ public class UlogMAVLinkParser  {
 			timeStart=-1;
 		}
 
+		header_teed = Math.max(0, header_teed - buffer.position());
 		buffer.compact();
 
 	}
 
 
-	public void buildSubscriptions() {
+	public void buildSubscriptions(Map<String, Integer> fieldSlots) {
+		final FieldBinding[] b = new FieldBinding[messageSubscriptions.size()];
 		for (int k = 0; k < messageSubscriptions.size(); ++k) {
 			Subscription s = messageSubscriptions.get(k);
 			if (s != null) {
+				b[k] = FieldBinding.create(s.format, s.multiID, fieldSlots);
+				if (b[k].isEmpty())
+					b[k] = null;
 				//	System.out.println(k+": "+s.format.name);
 				MessageFormat msgFormat = s.format;
 				if (msgFormat.name.charAt(0) != '_') {
@@ -327,6 +497,9 @@ public class UlogMAVLinkParser  {
 				}
 			}
 		}
+		final double[] d = new double[fieldSlots.size()];
+		Arrays.fill(d, Double.NaN);
+		data = d; bindings = b;
 	}
 
 	public Object readMessage()  {
@@ -437,24 +610,6 @@ public class UlogMAVLinkParser  {
 		return error;
 	}
 
-	private void applyMsg(Map<String, Object> update, MessageData msg) {
-		applyMsgAsName(update, msg, msg.format.name + "_" + msg.multiID);
-	}
-
-	private void applyMsgAsName(Map<String, Object> update, MessageData msg, String msg_name) {
-		final ArrayList<FieldFormat> fields = msg.format.fields;
-		for (int i = 0; i < fields.size(); i++)  {
-			FieldFormat field = fields.get(i);
-			if (field.isArray()) {
-				for (int j = 0; j < field.size; j++) {
-					update.put(msg_name + "." + field.name + "[" + j + "]", ((Object[]) msg.get(i))[j]);
-				}
-			} else {
-				update.put(msg_name + "." + field.name, msg.get(i));
-			}
-		}
-	}
-
 	final protected static char[] hexArray = "0123456789ABCDEF".toCharArray();
 	public static String bytesToHex(int[] bytes, int len) {
 		char[] hexChars = new char[len * 2];
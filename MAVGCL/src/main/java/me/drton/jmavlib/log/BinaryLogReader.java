@@ -9,17 +9,50 @@ import java.nio.channels.FileChannel;
 
 /**
  * User: ton Date: 03.06.13 Time: 14:51
+ *
+ * Reads either through a streaming heap buffer or through a memory mapped window of the file.
+ * In mapped mode the buffer limit marks the bytes made available so far, fillBuffer() extends it
+ * and remaps the window when a message crosses its end. Files larger than the window (1 GB) are
+ * mapped in chunks. If mapping fails the streaming buffer is used.
  */
 public abstract class BinaryLogReader implements LogReader {
+    private static final int MAP_WINDOW = 1 << 30;
+
     protected ByteBuffer buffer;
     protected FileChannel channel = null;
     protected long channelPosition = 0;
+    protected final String fileName;
+
+    private boolean mapped = false;
+    private long mapStart = 0;
+    private long fileSize = 0;
 
     public BinaryLogReader(String fileName) throws IOException {
-        buffer = ByteBuffer.allocate(65536);
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
-        buffer.flip();
+        this(fileName, true);
+    }
+
+    public BinaryLogReader(String fileName, boolean useMapping) throws IOException {
+        this.fileName = fileName;
         channel = new RandomAccessFile(fileName, "r").getChannel();
+        if (useMapping) {
+            try {
+                fileSize = channel.size();
+                map(0);
+                buffer.limit(0);
+                mapped = true;
+            } catch (IOException | UnsupportedOperationException e) {
+                System.err.println("Mapping " + fileName + " failed, using stream reader: " + e.getMessage());
+            }
+        }
+        if (!mapped) {
+            buffer = ByteBuffer.allocate(65536);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.flip();
+        }
+    }
+
+    public boolean isMapped() {
+        return mapped;
     }
 
     @Override
@@ -29,6 +62,19 @@ public abstract class BinaryLogReader implements LogReader {
     }
 
     public int fillBuffer() throws IOException {
+        if (mapped) {
+            int n = buffer.capacity() - buffer.limit();
+            if (n == 0) {
+                if (mapStart + buffer.capacity() >= fileSize) {
+                    throw new EOFException();
+                }
+                int remaining = buffer.remaining();
+                map(position());
+                n = buffer.capacity() - remaining;
+            }
+            buffer.limit(buffer.capacity());
+            return n;
+        }
         buffer.compact();
         int n = channel.read(buffer);
         buffer.flip();
@@ -41,6 +87,16 @@ public abstract class BinaryLogReader implements LogReader {
 
     public void fillBuffer(int required) throws IOException {
         if (buffer.remaining() < required) {
+            if (mapped) {
+                if (buffer.capacity() - buffer.position() < required) {
+                    map(position());
+                }
+                buffer.limit(buffer.capacity());
+                if (buffer.remaining() < required) {
+                    throw new EOFException();
+                }
+                return;
+            }
             buffer.compact();
             int n = channel.read(buffer);
             buffer.flip();
@@ -52,10 +108,24 @@ public abstract class BinaryLogReader implements LogReader {
     }
 
     protected long position() throws IOException {
+        if (mapped) {
+            return mapStart + buffer.position();
+        }
         return channelPosition - buffer.remaining();
     }
 
     protected int position(long pos) throws IOException {
+        if (mapped) {
+            if (pos >= fileSize) {
+                throw new EOFException();
+            }
+            if (pos < mapStart || pos > mapStart + buffer.capacity()) {
+                map(pos);
+            }
+            buffer.limit(buffer.capacity());
+            buffer.position((int) (pos - mapStart));
+            return buffer.remaining();
+        }
         buffer.clear();
         channel.position(pos);
         channelPosition = pos;
@@ -67,4 +137,28 @@ public abstract class BinaryLogReader implements LogReader {
         channelPosition += n;
         return n;
     }
+
+    /**
+     * Map a read only little endian view of the file region, null if the reader is not mapped or
+     * the region exceeds the window size. The view is independent of the reader position.
+     */
+    protected ByteBuffer map(long pos, long length) throws IOException {
+        if (!mapped || length > MAP_WINDOW) {
+            return null;
+        }
+        ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(length, fileSize - pos));
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        return buf;
+    }
+
+    protected long fileSize() throws IOException {
+        return mapped ? fileSize : channel.size();
+    }
+
+    private void map(long pos) throws IOException {
+        long size = Math.min(MAP_WINDOW, fileSize - pos);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        mapStart = pos;
+    }
 }
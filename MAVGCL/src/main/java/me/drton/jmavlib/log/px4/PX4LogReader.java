@@ -65,7 +65,11 @@ public class PX4LogReader extends BinaryLogReader {
 	}
 
 	public PX4LogReader(String fileName) throws IOException, FormatErrorException {
-		super(fileName);
+		this(fileName, true);
+	}
+
+	public PX4LogReader(String fileName, boolean useMapping) throws IOException, FormatErrorException {
+		super(fileName, useMapping);
 		readFormats();
 		updateStatistics();
 	}
@@ -0,0 +1,75 @@
+package me.drton.jmavlib.log.ulog;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Data messages of a contiguous part of the log in file order: message id, timestamp
+ * and the packed values of the bound fields. Replayed with next().
+ */
+public class DecodedRange {
+    private final FieldBinding[] bindings;
+    private int[] ids;
+    private long[] timestamps;
+    private double[] values;
+    private int count = 0;
+    private int valueCount = 0;
+
+    private int index = -1;
+    private int valueIndex = 0;
+
+    DecodedRange(FieldBinding[] bindings, int capacity) {
+        this.bindings = bindings;
+        this.ids = new int[capacity];
+        this.timestamps = new long[capacity];
+        this.values = new double[Math.max(16, capacity * 4)];
+    }
+
+    void add(int msgID, long timestamp) {
+        ids[count] = msgID;
+        timestamps[count] = timestamp;
+        count++;
+    }
+
+    void add(int msgID, long timestamp, FieldBinding binding, ByteBuffer buffer, int start) {
+        if (valueCount + binding.size() > values.length) {
+            values = Arrays.copyOf(values, Math.max(values.length * 2, valueCount + binding.size()));
+        }
+        valueCount = binding.decodePacked(buffer, start, values, valueCount);
+        add(msgID, timestamp);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Advance to the next message and write its bound fields into the slots.
+     *
+     * @return false if all messages have been replayed
+     */
+    public boolean next(double[] slots) {
+        if (index + 1 >= count) {
+            return false;
+        }
+        index++;
+        final int id = ids[index];
+        final FieldBinding binding = id >= 0 && id < bindings.length ? bindings[id] : null;
+        if (binding != null && !binding.isEmpty()) {
+            valueIndex = binding.apply(values, valueIndex, slots);
+        }
+        return true;
+    }
+
+    public long timestamp() {
+        return timestamps[index];
+    }
+
+    /**
+     * @return binding of the current message, null if the message has no bound fields
+     */
+    public FieldBinding binding() {
+        final int id = ids[index];
+        return id >= 0 && id < bindings.length ? bindings[id] : null;
+    }
+}
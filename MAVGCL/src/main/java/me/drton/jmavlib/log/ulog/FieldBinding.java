@@ -0,0 +1,219 @@
+package me.drton.jmavlib.log.ulog;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Decodes the bound fields of one subscription from a data message body directly
+ * into value slots. Field names follow applyMsgAsName: topic_multiID.field[index]
+ */
+public class FieldBinding {
+    private static final byte TYPE_NONE = 0;
+    private static final byte TYPE_FLOAT = 1;
+    private static final byte TYPE_DOUBLE = 2;
+    private static final byte TYPE_INT8 = 3;
+    private static final byte TYPE_UINT8 = 4;
+    private static final byte TYPE_INT16 = 5;
+    private static final byte TYPE_UINT16 = 6;
+    private static final byte TYPE_INT32 = 7;
+    private static final byte TYPE_UINT32 = 8;
+    private static final byte TYPE_INT64 = 9;
+
+    public final String name;
+
+    private final int timestampOffset;
+    private final int[] offsets;
+    private final byte[] types;
+    private final int[] slots;
+
+    private FieldBinding(String name, int timestampOffset, int[] offsets, byte[] types, int[] slots) {
+        this.name = name;
+        this.timestampOffset = timestampOffset;
+        this.offsets = offsets;
+        this.types = types;
+        this.slots = slots;
+    }
+
+    /**
+     * Resolve the fields of a (flattened) message format which have a slot assigned.
+     */
+    public static FieldBinding create(MessageFormat format, int multiID, Map<String, Integer> fieldSlots) {
+        final String msg_name = format.name + "_" + multiID;
+        int count = 0;
+        int[] offsets = new int[16];
+        byte[] types = new byte[16];
+        int[] slots = new int[16];
+        int timestampOffset = -1;
+        int offset = 0;
+
+        for (FieldFormat field : format.fields) {
+            final byte type = getType(field.type);
+            final int size = getSize(type);
+            if ("timestamp".equals(field.name) && type == TYPE_INT64) {
+                timestampOffset = offset;
+            }
+            if (field.size >= 0 && "char".equals(field.type)) {
+                offset += field.size;
+                continue;
+            }
+            final int n = field.size >= 0 ? field.size : 1;
+            for (int j = 0; j < n; j++) {
+                Integer slot = fieldSlots.get(field.isArray() ? msg_name + "." + field.name + "[" + j + "]"
+                                                             : msg_name + "." + field.name);
+                if (slot != null && type != TYPE_NONE) {
+                    if (count == slots.length) {
+                        offsets = Arrays.copyOf(offsets, count * 2);
+                        types = Arrays.copyOf(types, count * 2);
+                        slots = Arrays.copyOf(slots, count * 2);
+                    }
+                    offsets[count] = offset + j * size;
+                    types[count] = type;
+                    slots[count] = slot;
+                    count++;
+                }
+            }
+            offset += n * size;
+        }
+        return new FieldBinding(msg_name, timestampOffset, Arrays.copyOf(offsets, count),
+                                Arrays.copyOf(types, count), Arrays.copyOf(slots, count));
+    }
+
+    public boolean isEmpty() {
+        return slots.length == 0;
+    }
+
+    public boolean hasTimestamp() {
+        return timestampOffset >= 0;
+    }
+
+    /**
+     * Decode bound fields of the message body starting at the absolute buffer position start.
+     * The buffer position is not changed.
+     *
+     * @return timestamp of the message or -1 if the format has none
+     */
+    public long decode(ByteBuffer buffer, int start, double[] values) {
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] < values.length) {
+                values[slots[i]] = read(buffer, start + offsets[i], types[i]);
+            }
+        }
+        return timestampOffset < 0 ? -1 : buffer.getLong(start + timestampOffset);
+    }
+
+    /**
+     * Decode bound fields consecutively into out, starting at offset.
+     *
+     * @return offset behind the last written value
+     */
+    public int decodePacked(ByteBuffer buffer, int start, double[] out, int offset) {
+        for (int i = 0; i < slots.length; i++) {
+            out[offset++] = read(buffer, start + offsets[i], types[i]);
+        }
+        return offset;
+    }
+
+    /**
+     * Copy values written by decodePacked into their slots.
+     *
+     * @return offset behind the last read value
+     */
+    public int apply(double[] packed, int offset, double[] values) {
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] < values.length) {
+                values[slots[i]] = packed[offset];
+            }
+            offset++;
+        }
+        return offset;
+    }
+
+    public int size() {
+        return slots.length;
+    }
+
+    /**
+     * @return value slots written by this binding, in field order
+     */
+    public int[] getSlots() {
+        return slots;
+    }
+
+    private static double read(ByteBuffer buffer, int p, byte type) {
+        switch (type) {
+            case TYPE_FLOAT:
+                return buffer.getFloat(p);
+            case TYPE_DOUBLE:
+                return buffer.getDouble(p);
+            case TYPE_INT8:
+                return buffer.get(p);
+            case TYPE_UINT8:
+                return buffer.get(p) & 0xFF;
+            case TYPE_INT16:
+                return buffer.getShort(p);
+            case TYPE_UINT16:
+                return buffer.getShort(p) & 0xFFFF;
+            case TYPE_INT32:
+                return buffer.getInt(p);
+            case TYPE_UINT32:
+                return buffer.getInt(p) & 0xFFFFFFFFL;
+            default:
+                return buffer.getLong(p);
+        }
+    }
+
+    private static byte getType(String type) {
+        switch (type) {
+            case "float":
+                return TYPE_FLOAT;
+            case "double":
+                return TYPE_DOUBLE;
+            case "int8_t":
+            case "bool":
+                return TYPE_INT8;
+            case "uint8_t":
+            case "char":
+                return TYPE_UINT8;
+            case "int16_t":
+                return TYPE_INT16;
+            case "uint16_t":
+                return TYPE_UINT16;
+            case "int32_t":
+                return TYPE_INT32;
+            case "uint32_t":
+                return TYPE_UINT32;
+            case "int64_t":
+            case "uint64_t":
+                return TYPE_INT64;
+            default:
+                return TYPE_NONE;
+        }
+    }
+
+    private static int getSize(byte type) {
+        switch (type) {
+            case TYPE_FLOAT:
+            case TYPE_INT32:
+            case TYPE_UINT32:
+                return 4;
+            case TYPE_DOUBLE:
+            case TYPE_INT64:
+                return 8;
+            case TYPE_INT16:
+            case TYPE_UINT16:
+                return 2;
+            case TYPE_INT8:
+            case TYPE_UINT8:
+                return 1;
+            default:
+                // unsupported types are not consumed by FieldFormat.getValue either
+                return 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BINDING: name=%s, fields=%d", name, slots.length);
+    }
+}
@@ -5,6 +5,11 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 import javax.swing.JFileChooser;
@@ -49,6 +54,10 @@ public class ULogReader extends BinaryLogReader {
     /** all subscriptions. Index is the message id */
     private ArrayList<Subscription> messageSubscriptions = new ArrayList<Subscription>();
 
+    /** field decoders set up by bind(). Index is the message id */
+    private FieldBinding[] fieldBindings = new FieldBinding[0];
+    private FieldBinding lastBinding = null;
+
     private Map<String, String> fieldsList = null;
     private long sizeUpdates = -1;
     private long sizeMicroseconds = -1;
@@ -98,17 +107,26 @@ public class ULogReader extends BinaryLogReader {
     private ArrayList<SeekTime> seekTimes = null;
 
     private class SeekTime {
-        public SeekTime(long t, long pos) {
+        public SeekTime(long t, long pos, int id) {
             timestamp = t;
             position = pos;
+            msgID = id;
         }
 
         public long timestamp;
         public long position;
+        public int msgID;
     }
 
+    /** message id of the last DATA message read */
+    private int lastMsgID = -1;
+
     public ULogReader(String fileName) throws IOException, FormatErrorException {
-        super(fileName);
+        this(fileName, true);
+    }
+
+    public ULogReader(String fileName, boolean useMapping) throws IOException, FormatErrorException {
+        super(fileName, useMapping);
         parameterUpdates = new HashMap<String, List<ParamUpdate>>();
         updateStatistics();
     }
@@ -330,7 +348,7 @@ public class ULogReader extends BinaryLogReader {
                     dataStart = pos;
                 }
                 MessageData msgData = (MessageData) msg;
-                seekTimes.add(new SeekTime(msgData.timestamp, pos));
+                seekTimes.add(new SeekTime(msgData.timestamp, pos, lastMsgID));
 
                 if (timeStart < 0) {
                     timeStart = msgData.timestamp;
@@ -440,6 +458,147 @@ public class ULogReader extends BinaryLogReader {
         }
     }
 
+    /**
+     * Resolve the given fields to value slots for all subscriptions. Subsequent calls of
+     * readUpdate(double[]) decode only these fields.
+     *
+     * @param fieldSlots field name (as in getFields()) to slot index
+     */
+    public void bind(Map<String, Integer> fieldSlots) {
+        FieldBinding[] bindings = new FieldBinding[messageSubscriptions.size()];
+        for (int k = 0; k < messageSubscriptions.size(); ++k) {
+            Subscription s = messageSubscriptions.get(k);
+            if (s != null) {
+                bindings[k] = FieldBinding.create(s.format, s.multiID, fieldSlots);
+            }
+        }
+        fieldBindings = bindings;
+    }
+
+    /**
+     * Read the next data message and write its bound fields into the slots.
+     *
+     * @return timestamp of the data message
+     * @throws EOFException on end of stream
+     */
+    public long readUpdate(double[] values) throws IOException, FormatErrorException {
+        while (true) {
+            fillBuffer(HDRLEN);
+            long pos = position();
+            int s1 = buffer.get() & 0xFF;
+            int s2 = buffer.get() & 0xFF;
+            int msgSize = s1 + (256 * s2);
+            int msgType = buffer.get() & 0xFF;
+
+            if (currentAppendingOffsetIndex < appendedOffsets.size()) {
+                if (pos + HDRLEN + msgSize > appendedOffsets.get(currentAppendingOffsetIndex)) {
+                    position(appendedOffsets.get(currentAppendingOffsetIndex));
+                    ++currentAppendingOffsetIndex;
+                    continue;
+                }
+            }
+
+            try {
+                fillBuffer(msgSize);
+            } catch (EOFException e) {
+                errors.add(new FormatErrorException(pos, "Unexpected end of file"));
+                throw e;
+            }
+            int start = buffer.position();
+            buffer.position(start + msgSize);
+
+            if (msgType != MESSAGE_TYPE_DATA) {
+                continue;
+            }
+            int msgID = (buffer.get(start) & 0xFF) + (256 * (buffer.get(start + 1) & 0xFF));
+            FieldBinding binding = msgID < fieldBindings.length ? fieldBindings[msgID] : null;
+            if (binding == null) {
+                errors.add(new FormatErrorException(pos, "Unknown DATA subscription ID: " + msgID));
+                continue;
+            }
+            if (!binding.hasTimestamp()) {
+                errors.add(new FormatErrorException(pos, "Message " + binding.name + " has no timestamp field"));
+                continue;
+            }
+            lastBinding = binding;
+            return binding.decode(buffer, start + 2, values);
+        }
+    }
+
+    /**
+     * @return binding of the message last read by readUpdate(double[])
+     */
+    public FieldBinding getLastBinding() {
+        return lastBinding;
+    }
+
+    /**
+     * @return number of DATA messages in the index
+     */
+    public int getDataMessageCount() {
+        return seekTimes.size();
+    }
+
+    /**
+     * Decode DATA messages [from, to) of the index with the bound fields. Uses its own mapping
+     * or file channel, so disjoint ranges can be decoded concurrently. Messages without bound
+     * fields are taken from the index and not read.
+     */
+    public DecodedRange decodeRange(int from, int to) throws IOException {
+        final FieldBinding[] bindings = fieldBindings;
+        final DecodedRange range = new DecodedRange(bindings, to - from);
+        if (from >= to) {
+            return range;
+        }
+
+        long regionStart = seekTimes.get(from).position;
+        long regionEnd = to < seekTimes.size() ? seekTimes.get(to).position : fileSize();
+        ByteBuffer region = regionEnd > regionStart ? map(regionStart, regionEnd - regionStart) : null;
+        if (region != null) {
+            for (int i = from; i < to; i++) {
+                SeekTime sk = seekTimes.get(i);
+                FieldBinding binding = sk.msgID < bindings.length ? bindings[sk.msgID] : null;
+                if (binding == null || binding.isEmpty()) {
+                    range.add(sk.msgID, sk.timestamp);
+                } else {
+                    range.add(sk.msgID, sk.timestamp, binding, region, (int) (sk.position - regionStart) + HDRLEN + 2);
+                }
+            }
+            return range;
+        }
+
+        final ByteBuffer buf = ByteBuffer.allocate(1 << 20);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        buf.flip();
+        long bufStart = 0;
+
+        try (FileChannel ch = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            for (int i = from; i < to; i++) {
+                SeekTime sk = seekTimes.get(i);
+                FieldBinding binding = sk.msgID < bindings.length ? bindings[sk.msgID] : null;
+                if (binding == null || binding.isEmpty()) {
+                    range.add(sk.msgID, sk.timestamp);
+                    continue;
+                }
+                long rel = sk.position - bufStart;
+                if (rel < 0 || rel + HDRLEN > buf.limit() ||
+                        rel + HDRLEN + ((buf.get((int) rel) & 0xFF) + 256 * (buf.get((int) rel + 1) & 0xFF)) > buf.limit()) {
+                    buf.clear();
+                    while (buf.hasRemaining() && ch.read(buf, sk.position + buf.position()) > 0);
+                    buf.flip();
+                    bufStart = sk.position;
+                    rel = 0;
+                    int msgSize = (buf.get(0) & 0xFF) + 256 * (buf.get(1) & 0xFF);
+                    if (buf.limit() < HDRLEN + msgSize) {
+                        throw new EOFException();
+                    }
+                }
+                range.add(sk.msgID, sk.timestamp, binding, buf, (int) rel + HDRLEN + 2);
+            }
+        }
+        return range;
+    }
+
     @Override
     public Map<String, String> getFields() {
         return fieldsList;
@@ -494,6 +653,7 @@ public class ULogReader extends BinaryLogReader {
                         continue;
                     }
                     msg = new MessageData(subscription.format, buffer, subscription.multiID);
+                    lastMsgID = msgID;
                     break;
                 case MESSAGE_TYPE_FLAG_BITS:
                     msg = new MessageFlagBits(buffer, msgSize);